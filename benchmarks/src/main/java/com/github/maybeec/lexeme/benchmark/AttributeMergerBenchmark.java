@@ -0,0 +1,87 @@
+package com.github.maybeec.lexeme.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.maybeec.lexeme.ConflictHandlingType;
+import com.github.maybeec.lexeme.merge.attribute.AttributeMerger;
+import com.github.maybeec.lexeme.merge.attribute.AttributeMergerImpl;
+import com.github.maybeec.lexeme.mergeschema.Attribute;
+
+/**
+ * Measures {@link AttributeMergerImpl#merge(String, String, ConflictHandlingType)} for attachable and not attachable
+ * attributes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttributeMergerBenchmark {
+
+  /**
+   * The ConflictHandlingType of the merge
+   */
+  @Param({ "PATCHOVERWRITE", "PATCHATTACHOROVERWRITE", "BASEATTACHOROVERWRITE" })
+  public ConflictHandlingType conflictHandling;
+
+  /**
+   * Whether the merged attribute is attachable
+   */
+  @Param({ "true", "false" })
+  public boolean attachable;
+
+  /**
+   * The merger under test
+   */
+  private AttributeMerger merger;
+
+  /**
+   * Value of the base attribute
+   */
+  private String base;
+
+  /**
+   * Value of the patch attribute
+   */
+  private String patch;
+
+  /**
+   * Creates the merger and the merged values
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+
+    Attribute attribute = new Attribute();
+    attribute.setFor("class");
+    attribute.setAttachable(this.attachable);
+    attribute.setSeparationString(" ");
+    this.merger = new AttributeMergerImpl(attribute);
+    this.base = "header navigation";
+    this.patch = "highlighted";
+  }
+
+  /**
+   * Merges the values of base and patch
+   *
+   * @return the merged value
+   */
+  @Benchmark
+  public String merge() {
+
+    return this.merger.merge(this.base, this.patch, this.conflictHandling);
+  }
+}
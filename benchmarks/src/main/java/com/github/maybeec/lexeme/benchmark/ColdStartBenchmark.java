@@ -0,0 +1,91 @@
+package com.github.maybeec.lexeme.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.maybeec.lexeme.schemaprovider.CompiledMergeSchema;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProviderImpl;
+
+/**
+ * Measures the first loading of all MergeSchemas in a fresh JVM, as done by short-lived processes, from the XML
+ * documents and from their {@link CompiledMergeSchema binary forms}. Every fork measures a single loading. The binary
+ * forms are created by a separate process, thus the measuring JVM hasn't initialized JAXB before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class ColdStartBenchmark {
+
+  /**
+   * Whether the binary forms of the MergeSchemas are available
+   */
+  @Param({ "false", "true" })
+  public boolean compiled;
+
+  /**
+   * Copy of the MergeSchema directory loaded by the fork
+   */
+  private Path directory;
+
+  /**
+   * Copies the MergeSchema directory and compiles the MergeSchemas if requested
+   *
+   * @throws IOException if the MergeSchemas can't be copied or compiled
+   * @throws InterruptedException if interrupted while compiling
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException, InterruptedException {
+
+    this.directory = MergeSchemaDirectory.copy();
+    if (this.compiled) {
+      String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+      Process compiler = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+          CompiledMergeSchema.class.getName(), this.directory.toString()).inheritIO().start();
+      if (compiler.waitFor() != 0) {
+        throw new IOException("Could not compile the MergeSchemas in " + this.directory);
+      }
+    }
+  }
+
+  /**
+   * Deletes the copied MergeSchema directory
+   *
+   * @throws IOException if the directory can't be deleted
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+
+    MergeSchemaDirectory.delete(this.directory);
+  }
+
+  /**
+   * Creates a MergeSchemaProvider, which loads all MergeSchemas of the directory
+   *
+   * @return the created provider
+   */
+  @Benchmark
+  public MergeSchemaProvider load() {
+
+    return MergeSchemaProviderImpl.getProviderForPath(this.directory);
+  }
+}
@@ -0,0 +1,105 @@
+package com.github.maybeec.lexeme.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jdom2.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.maybeec.lexeme.benchmark.SyntheticDocuments.Language;
+import com.github.maybeec.lexeme.common.exception.ElementsCantBeMergedException;
+import com.github.maybeec.lexeme.merge.element.matcher.ElementComparator;
+import com.github.maybeec.lexeme.merge.element.matcher.ElementComparatorImpl;
+import com.github.maybeec.lexeme.mergeschema.Criterion;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProviderImpl;
+
+/**
+ * Measures {@link ElementComparatorImpl#compare(Element, Element)} with the criteria of the bundled MergeSchemas:
+ * attribute criteria (beans), ordered text criteria (dependencies), criteria selecting elements (tables) and no
+ * criteria at all (entities).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElementComparatorBenchmark {
+
+  /**
+   * Language of the compared elements
+   */
+  @Param({ "BEANS", "POM", "ORM", "XHTML" })
+  public Language language;
+
+  /**
+   * The comparator under test
+   */
+  private ElementComparator comparator;
+
+  /**
+   * Item of a base document
+   */
+  private Element element;
+
+  /**
+   * The matching item of a patch document
+   */
+  private Element matching;
+
+  /**
+   * Another item of a base document
+   */
+  private Element other;
+
+  /**
+   * Creates the comparator and the compared elements
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+
+    MergeSchemaProvider provider = MergeSchemaProviderImpl.getProviderForPath(MergeSchemaDirectory.get());
+    List<Criterion> criteria =
+        provider.getDeepCriterion(this.language.getItemName(), this.language.getNamespace().getURI());
+    this.comparator = new ElementComparatorImpl(criteria, provider);
+    this.element = SyntheticDocuments.createItem(this.language, 1, false);
+    this.matching = SyntheticDocuments.createItem(this.language, 1, true);
+    this.other = SyntheticDocuments.createItem(this.language, 2, false);
+  }
+
+  /**
+   * Compares two items matching each other
+   *
+   * @return the comparison result
+   * @throws ElementsCantBeMergedException if the elements can't be compared
+   */
+  @Benchmark
+  public boolean compareMatching() throws ElementsCantBeMergedException {
+
+    return this.comparator.compare(this.element, this.matching);
+  }
+
+  /**
+   * Compares two different items. Depending on the criteria of the MergeSchema they can match nevertheless
+   *
+   * @return the comparison result
+   * @throws ElementsCantBeMergedException if the elements can't be compared
+   */
+  @Benchmark
+  public boolean compareOther() throws ElementsCantBeMergedException {
+
+    return this.comparator.compare(this.element, this.other);
+  }
+}
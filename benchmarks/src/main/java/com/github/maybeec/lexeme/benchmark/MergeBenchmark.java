@@ -0,0 +1,106 @@
+package com.github.maybeec.lexeme.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jdom2.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.maybeec.lexeme.ConflictHandlingType;
+import com.github.maybeec.lexeme.LeXeMerger;
+import com.github.maybeec.lexeme.ValidationMode;
+import com.github.maybeec.lexeme.benchmark.SyntheticDocuments.Language;
+import com.github.maybeec.lexeme.common.exception.XMLMergeException;
+
+/**
+ * Measures {@link LeXeMerger#merge(Document, Document, ConflictHandlingType)} for documents of increasing size and
+ * overlap. The merge changes its input documents, thus every invocation merges fresh copies. {@link #copyDocuments()}
+ * measures the copying alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MergeBenchmark {
+
+  /**
+   * Language of the merged documents
+   */
+  @Param({ "BEANS", "POM", "ORM", "XHTML" })
+  public Language language;
+
+  /**
+   * Number of top level items per document
+   */
+  @Param({ "10", "100", "1000" })
+  public int size;
+
+  /**
+   * Ratio of patch items also contained in the base
+   */
+  @Param({ "0.1", "0.5", "0.9" })
+  public double overlap;
+
+  /**
+   * The merger under test
+   */
+  private LeXeMerger merger;
+
+  /**
+   * Base document, never merged itself
+   */
+  private Document base;
+
+  /**
+   * Patch document, never merged itself
+   */
+  private Document patch;
+
+  /**
+   * Creates the merger and the documents
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+
+    this.merger = new LeXeMerger(MergeSchemaDirectory.get());
+    this.merger.setValidationMode(ValidationMode.NONE);
+    this.base = SyntheticDocuments.createBase(this.language, this.size);
+    this.patch = SyntheticDocuments.createPatch(this.language, this.size, this.overlap);
+  }
+
+  /**
+   * Merges copies of base and patch
+   *
+   * @return the merge result
+   * @throws XMLMergeException if the documents can't be merged
+   */
+  @Benchmark
+  public Document merge() throws XMLMergeException {
+
+    return this.merger.merge(this.base.clone(), this.patch.clone(), ConflictHandlingType.PATCHOVERWRITE);
+  }
+
+  /**
+   * Copies base and patch as done by {@link #merge()}
+   *
+   * @return the copied patch
+   */
+  @Benchmark
+  public Document copyDocuments() {
+
+    this.base.clone();
+    return this.patch.clone();
+  }
+}
@@ -0,0 +1,81 @@
+package com.github.maybeec.lexeme.benchmark;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Locates the MergeSchemas used by the benchmarks. Defaults to the MergeSchemas bundled with LeXeMe, relative to the
+ * benchmarks module. Another directory can be set by the system property {@value #PROPERTY}.
+ */
+public final class MergeSchemaDirectory {
+
+  /**
+   * System property overriding the MergeSchema directory
+   */
+  public static final String PROPERTY = "lexeme.mergeSchemas";
+
+  /**
+   * MergeSchema directory if the system property isn't set
+   */
+  private static final String DEFAULT = "../src/main/resources/mergeSchemas";
+
+  /**
+   * Utility class
+   */
+  private MergeSchemaDirectory() {
+
+  }
+
+  /**
+   * Returns the MergeSchema directory
+   *
+   * @return {@link Path}
+   * @throws IllegalStateException if the directory doesn't exist
+   */
+  public static Path get() {
+
+    Path path = Paths.get(System.getProperty(PROPERTY, DEFAULT)).toAbsolutePath().normalize();
+    if (!Files.isDirectory(path)) {
+      throw new IllegalStateException("MergeSchema directory " + path + " not found. Run the benchmarks from the "
+          + "benchmarks module or set the system property " + PROPERTY);
+    }
+    return path;
+  }
+
+  /**
+   * Copies the MergeSchemas into a new temporary directory. LeXeMe keeps one MergeSchemaProvider per directory, thus a
+   * fresh copy is needed to measure the loading of the MergeSchemas
+   *
+   * @return the created directory
+   * @throws IOException if the MergeSchemas can't be copied
+   */
+  public static Path copy() throws IOException {
+
+    Path target = Files.createTempDirectory("lexeme-benchmark");
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(get(), "*.xml")) {
+      for (Path file : files) {
+        Files.copy(file, target.resolve(file.getFileName().toString()));
+      }
+    }
+    return target;
+  }
+
+  /**
+   * Deletes a directory created by {@link #copy()}
+   *
+   * @param directory the directory to delete
+   * @throws IOException if a file can't be deleted
+   */
+  public static void delete(Path directory) throws IOException {
+
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+}
@@ -0,0 +1,82 @@
+package com.github.maybeec.lexeme.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProviderImpl;
+import com.github.maybeec.lexeme.schemaprovider.ProviderRegistry;
+
+/**
+ * Measures the loading of all bundled MergeSchemas by {@link MergeSchemaProviderImpl}. MergeSchemaProviders are
+ * cached per directory, thus every iteration loads a fresh copy of the MergeSchema directory once. With lazy loading
+ * only the definitions of the MergeSchemas are read.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(3)
+public class ProviderLoadingBenchmark {
+
+  /**
+   * Copy of the MergeSchema directory loaded by the current iteration
+   */
+  private Path directory;
+
+  /**
+   * Whether the provider loads the MergeSchemas on first use of their namespaces
+   */
+  @Param({ "false", "true" })
+  public boolean lazyLoading;
+
+  /**
+   * Copies the MergeSchema directory
+   *
+   * @throws IOException if the MergeSchemas can't be copied
+   */
+  @Setup(Level.Iteration)
+  public void setUp() throws IOException {
+
+    this.directory = MergeSchemaDirectory.copy();
+    ProviderRegistry.getInstance().setLazyLoading(this.lazyLoading);
+  }
+
+  /**
+   * Deletes the copied MergeSchema directory
+   *
+   * @throws IOException if the directory can't be deleted
+   */
+  @TearDown(Level.Iteration)
+  public void tearDown() throws IOException {
+
+    MergeSchemaDirectory.delete(this.directory);
+  }
+
+  /**
+   * Creates a MergeSchemaProvider, which loads all MergeSchemas of the directory or reads their definitions
+   *
+   * @return the created provider
+   */
+  @Benchmark
+  public MergeSchemaProvider load() {
+
+    return MergeSchemaProviderImpl.getProviderForPath(this.directory);
+  }
+}
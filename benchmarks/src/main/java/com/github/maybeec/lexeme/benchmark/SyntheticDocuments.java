@@ -0,0 +1,245 @@
+package com.github.maybeec.lexeme.benchmark;
+
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.Namespace;
+
+/**
+ * Generates base and patch documents of the languages covered by the bundled MergeSchemas. A document consists of
+ * <i>size</i> top level items (beans, dependencies, entities or sections). The patch shares the first
+ * <i>overlap * size</i> items with the base, slightly modified, and adds new items for the rest. The documents are
+ * deterministic, thus results of different runs are comparable.
+ */
+public final class SyntheticDocuments {
+
+  /**
+   * The languages documents can be generated for
+   */
+  public enum Language {
+
+    /**
+     * Spring bean definitions
+     */
+    BEANS("http://www.springframework.org/schema/beans", "bean"),
+
+    /**
+     * Maven POMs
+     */
+    POM("http://maven.apache.org/POM/4.0.0", "dependency"),
+
+    /**
+     * JPA persistence ORM mappings
+     */
+    ORM("http://java.sun.com/xml/ns/persistence/orm", "entity"),
+
+    /**
+     * XHTML pages
+     */
+    XHTML("http://www.w3.org/1999/xhtml", "table");
+
+    /**
+     * Namespace of the language
+     */
+    private final Namespace namespace;
+
+    /**
+     * Name of a repeated element with a MergeSchema handling of its own
+     */
+    private final String itemName;
+
+    /**
+     * Creates a new Language
+     *
+     * @param namespaceUri namespace URI of the language
+     * @param itemName name of a repeated element with a MergeSchema handling of its own
+     */
+    private Language(String namespaceUri, String itemName) {
+
+      this.namespace = Namespace.getNamespace(namespaceUri);
+      this.itemName = itemName;
+    }
+
+    /**
+     * Returns the field 'namespace'
+     *
+     * @return value of namespace
+     */
+    public Namespace getNamespace() {
+
+      return this.namespace;
+    }
+
+    /**
+     * Returns the field 'itemName'
+     *
+     * @return value of itemName
+     */
+    public String getItemName() {
+
+      return this.itemName;
+    }
+  }
+
+  /**
+   * Utility class
+   */
+  private SyntheticDocuments() {
+
+  }
+
+  /**
+   * Creates a base document
+   *
+   * @param language language of the document
+   * @param size number of top level items
+   * @return {@link Document}
+   */
+  public static Document createBase(Language language, int size) {
+
+    Element root = createRoot(language);
+    Element container = getItemContainer(language, root);
+    for (int i = 0; i < size; i++) {
+      container.addContent(createItem(language, i, false));
+    }
+    return new Document(root);
+  }
+
+  /**
+   * Creates a patch for the base document of the same size
+   *
+   * @param language language of the document
+   * @param size number of top level items
+   * @param overlap ratio of items also contained in the base, between 0 and 1
+   * @return {@link Document}
+   */
+  public static Document createPatch(Language language, int size, double overlap) {
+
+    Element root = createRoot(language);
+    Element container = getItemContainer(language, root);
+    int shared = (int) Math.round(size * overlap);
+    for (int i = 0; i < shared; i++) {
+      container.addContent(createItem(language, i, true));
+    }
+    for (int i = size; i < 2 * size - shared; i++) {
+      container.addContent(createItem(language, i, true));
+    }
+    return new Document(root);
+  }
+
+  /**
+   * Creates a single item, e.g. to compare it with items of a document
+   *
+   * @param language language of the item
+   * @param index index of the item, determining its identity
+   * @param patch true for the variant of the patch document
+   * @return {@link Element}
+   */
+  public static Element createItem(Language language, int index, boolean patch) {
+
+    Namespace ns = language.getNamespace();
+    String version = patch ? "2" : "1";
+    switch (language) {
+      case BEANS:
+        Element bean = new Element("bean", ns).setAttribute("id", "bean" + index).setAttribute("class",
+            "com.example.Bean" + index);
+        for (int p = 0; p < 3; p++) {
+          bean.addContent(new Element("property", ns).setAttribute("name", "property" + p).setAttribute("value",
+              "value" + p + "." + version));
+        }
+        if (patch) {
+          bean.addContent(new Element("property", ns).setAttribute("name", "added").setAttribute("ref", "bean0"));
+        }
+        return bean;
+      case POM:
+        Element dependency = new Element("dependency", ns);
+        dependency.addContent(new Element("groupId", ns).setText("com.example"));
+        dependency.addContent(new Element("artifactId", ns).setText("artifact" + index));
+        dependency.addContent(new Element("version", ns).setText(version + ".0." + index));
+        if (index % 4 == 0) {
+          dependency.addContent(new Element("scope", ns).setText("test"));
+        }
+        return dependency;
+      case ORM:
+        Element entity = new Element("entity", ns).setAttribute("name", "Entity" + index).setAttribute("class",
+            "com.example.Entity" + index);
+        entity.addContent(new Element("table", ns).setAttribute("name", "TABLE_" + index));
+        Element attributes = new Element("attributes", ns);
+        attributes.addContent(new Element("id", ns).setAttribute("name", "id").addContent(
+            new Element("column", ns).setAttribute("name", "ID")));
+        for (int f = 0; f < 3; f++) {
+          attributes.addContent(new Element("basic", ns).setAttribute("name", "field" + f).addContent(
+              new Element("column", ns).setAttribute("name", "FIELD_" + f).setAttribute("length", version + "00")));
+        }
+        entity.addContent(attributes);
+        return entity;
+      case XHTML:
+        Element table = new Element("table", ns).setAttribute("id", "table" + index);
+        Element head = new Element("tr", ns);
+        head.addContent(new Element("th", ns).setText("Key " + index));
+        head.addContent(new Element("th", ns).setText("Value " + index));
+        table.addContent(new Element("thead", ns).addContent(head));
+        Element body = new Element("tbody", ns);
+        for (int r = 0; r < 3; r++) {
+          Element row = new Element("tr", ns);
+          row.addContent(new Element("td", ns).setText("key" + r));
+          row.addContent(new Element("td", ns).setText("value " + r + " of version " + version));
+          body.addContent(row);
+        }
+        table.addContent(body);
+        return table;
+      default:
+        throw new IllegalArgumentException("Unknown language " + language);
+    }
+  }
+
+  /**
+   * Creates the root element including the static parts of a document
+   *
+   * @param language language of the document
+   * @return the root {@link Element}
+   */
+  private static Element createRoot(Language language) {
+
+    Namespace ns = language.getNamespace();
+    switch (language) {
+      case BEANS:
+        return new Element("beans", ns);
+      case POM:
+        Element project = new Element("project", ns);
+        project.addContent(new Element("modelVersion", ns).setText("4.0.0"));
+        project.addContent(new Element("groupId", ns).setText("com.example"));
+        project.addContent(new Element("artifactId", ns).setText("synthetic"));
+        project.addContent(new Element("version", ns).setText("1.0.0"));
+        project.addContent(new Element("dependencies", ns));
+        return project;
+      case ORM:
+        return new Element("entity-mappings", ns).setAttribute("version", "2.0");
+      case XHTML:
+        Element html = new Element("html", ns);
+        html.addContent(new Element("head", ns).addContent(new Element("title", ns).setText("Synthetic")));
+        html.addContent(new Element("body", ns));
+        return html;
+      default:
+        throw new IllegalArgumentException("Unknown language " + language);
+    }
+  }
+
+  /**
+   * Returns the element the items of a document are added to
+   *
+   * @param language language of the document
+   * @param root the root element of the document
+   * @return {@link Element}
+   */
+  private static Element getItemContainer(Language language, Element root) {
+
+    switch (language) {
+      case POM:
+        return root.getChild("dependencies", language.getNamespace());
+      case XHTML:
+        return root.getChild("body", language.getNamespace());
+      default:
+        return root;
+    }
+  }
+}
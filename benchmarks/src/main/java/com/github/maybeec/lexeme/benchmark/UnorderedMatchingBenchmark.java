@@ -0,0 +1,102 @@
+package com.github.maybeec.lexeme.benchmark;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jdom2.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.maybeec.lexeme.benchmark.SyntheticDocuments.Language;
+import com.github.maybeec.lexeme.common.exception.ElementsCantBeMergedException;
+import com.github.maybeec.lexeme.merge.element.matcher.ElementComparator;
+import com.github.maybeec.lexeme.merge.element.matcher.ElementComparatorImpl;
+import com.github.maybeec.lexeme.mergeschema.Criterion;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProviderImpl;
+
+/**
+ * Measures unordered criteria on wide elements: a {@code <dependencies>} element is compared with a copy containing its
+ * dependencies in reverse order, by the dependencies themselves (compared via the nested criteria of maven.xml) or by
+ * their artifactIds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnorderedMatchingBenchmark {
+
+  /**
+   * XPath of the unordered criterion
+   */
+  @Param({ "./*", "./*/*[local-name()='artifactId']/text()" })
+  public String xpath;
+
+  /**
+   * Number of dependencies
+   */
+  @Param({ "10", "100", "1000" })
+  public int width;
+
+  /**
+   * The comparator under test
+   */
+  private ElementComparator comparator;
+
+  /**
+   * The base element
+   */
+  private Element base;
+
+  /**
+   * The base element with its dependencies in reverse order
+   */
+  private Element reversed;
+
+  /**
+   * Creates the comparator and the compared elements
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+
+    MergeSchemaProvider provider = MergeSchemaProviderImpl.getProviderForPath(MergeSchemaDirectory.get());
+    Criterion criterion = new Criterion();
+    criterion.setXpath(this.xpath);
+    criterion.setOrdered(false);
+    List<Criterion> criteria = new LinkedList<>();
+    criteria.add(criterion);
+    this.comparator = new ElementComparatorImpl(criteria, provider);
+
+    this.base = new Element("dependencies", Language.POM.getNamespace());
+    this.reversed = new Element("dependencies", Language.POM.getNamespace());
+    for (int i = 0; i < this.width; i++) {
+      this.base.addContent(SyntheticDocuments.createItem(Language.POM, i, false));
+      this.reversed.addContent(SyntheticDocuments.createItem(Language.POM, this.width - 1 - i, true));
+    }
+  }
+
+  /**
+   * Compares the element with its reversed copy
+   *
+   * @return the comparison result
+   * @throws ElementsCantBeMergedException if the elements can't be compared
+   */
+  @Benchmark
+  public boolean compareReversed() throws ElementsCantBeMergedException {
+
+    return this.comparator.compare(this.base, this.reversed);
+  }
+}
@@ -4,7 +4,7 @@ import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
 
 public final class LeXeMeFactory {
 
-  private static LeXeMeBuilder builder = null;
+  private static volatile LeXeMeBuilder builder = null;
 
   /**
    * Sets the field 'builder'.
@@ -31,10 +31,7 @@ public final class LeXeMeFactory {
    */
   public static LeXeMerger build(MergeSchemaProvider provider) {
 
-    if (builder == null) {
-      builder = new GenericLexemeBuilder();
-    }
-    return builder.build(provider);
+    return getBuilder().build(provider);
   }
 
   /**
@@ -46,10 +43,22 @@ public final class LeXeMeFactory {
    */
   public static LeXeMerger build(String pathToMergeSchema) {
 
-    if (builder == null) {
-      builder = new GenericLexemeBuilder();
+    return getBuilder().build(pathToMergeSchema);
+  }
+
+  /**
+   * Returns the builder to be used. Initializes a {@link GenericLexemeBuilder} if no builder has been set
+   *
+   * @return LeXeMeBuilder
+   */
+  private static LeXeMeBuilder getBuilder() {
+
+    LeXeMeBuilder b = builder;
+    if (b == null) {
+      b = new GenericLexemeBuilder();
+      builder = b;
     }
-    return builder.build(pathToMergeSchema);
+    return b;
   }
 
   /**
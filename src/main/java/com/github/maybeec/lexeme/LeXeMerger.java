@@ -1,11 +1,32 @@
 package com.github.maybeec.lexeme;
 
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.jdom2.Document;
 import org.jdom2.Element;
@@ -13,24 +34,40 @@ import org.jdom2.JDOMException;
 import org.jdom2.Namespace;
 import org.jdom2.input.SAXBuilder;
 import org.jdom2.input.sax.XMLReaders;
+import org.jdom2.output.Format;
+import org.jdom2.output.support.AbstractXMLOutputProcessor;
+import org.jdom2.output.support.XMLOutputProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.InputSource;
 
+import com.github.maybeec.lexeme.common.exception.ElementsCantBeMergedException;
 import com.github.maybeec.lexeme.common.exception.UnmatchingNamespacesException;
+import com.github.maybeec.lexeme.common.exception.ValidationException;
 import com.github.maybeec.lexeme.common.exception.XMLMergeException;
 import com.github.maybeec.lexeme.common.util.JDom2Util;
 import com.github.maybeec.lexeme.merge.element.ElementMerger;
 import com.github.maybeec.lexeme.merge.element.ElementMergerFactory;
-import com.github.maybeec.lexeme.mergeschema.Handling;
+import com.github.maybeec.lexeme.merge.element.ElementMergerImpl;
+import com.github.maybeec.lexeme.merge.element.HandlingPlan;
+import com.github.maybeec.lexeme.merge.element.MergePlan;
+import com.github.maybeec.lexeme.merge.element.StreamingMerger;
+import com.github.maybeec.lexeme.merge.element.matcher.ComparisonCache;
+import com.github.maybeec.lexeme.merge.element.matcher.ElementComparatorFactory;
+import com.github.maybeec.lexeme.merge.element.matcher.NodeEquivalence;
 import com.github.maybeec.lexeme.mergeschema.MergeSchema;
+import com.github.maybeec.lexeme.schemaprovider.MergePlanProvider;
 import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
 import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProviderImpl;
 import com.github.maybeec.lexeme.validator.DocumentValidator;
 import com.github.maybeec.lexeme.validator.DocumentValidatorFactory;
+import com.github.maybeec.lexeme.validator.ValidationStatistics;
 
 /**
  * The API of the language-aware XML Merger. Merges two XML documents of the same XML based language into one.
+ * <p>
+ * A LeXeMerger is thread-safe and can be shared between threads: every merge keeps its state in local variables, the
+ * MergeSchemas and their compiled plans are shared read-only. Changing the {@link ValidationMode} affects merges
+ * started afterwards.
  */
 public class LeXeMerger {
 
@@ -40,29 +77,67 @@ public class LeXeMerger {
   private final Logger logger = LoggerFactory.getLogger(LeXeMerger.class);
 
   /**
-   * the MergeSchema this XMLMerger works with
+   * Parser per thread. SAXBuilders aren't thread-safe, but reuse their configured parser
    */
-  private MergeSchema mergeSchema;
+  private static final ThreadLocal<SAXBuilder> builders = new ThreadLocal<SAXBuilder>() {
+
+    @Override
+    protected SAXBuilder initialValue() {
+
+      SAXBuilder builder = new SAXBuilder(XMLReaders.NONVALIDATING);
+      builder.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+      return builder;
+    }
+  };
 
   /**
-   * The root ElementMerger.
+   * Writes merge results. Stateless and thus shared by all threads
    */
-  private ElementMerger rootMerger;
+  private static final XMLOutputProcessor outputProcessor = new AbstractXMLOutputProcessor() {
+    // the default processing
+  };
+
+  /**
+   * Executor of the batches of all LeXeMergers, created on first use. Shared, thus the per thread caches (parsers,
+   * compiled XPath expressions, validators) of its threads are reused by later batches
+   */
+  private static volatile ExecutorService batchExecutor;
 
   /**
    * the mergeSchema provider used to retrieve the mergeSchema
    */
-  private MergeSchemaProvider provider;
+  private final MergeSchemaProvider provider;
+
+  /**
+   * Compiled MergeSchemas by namespace, used if the provider isn't a {@link MergePlanProvider}. A plan is replaced as
+   * soon as the provider returns another MergeSchema instance for its namespace
+   */
+  private final ConcurrentMap<String, MergePlan> mergePlans = new ConcurrentHashMap<>();
+
+  /**
+   * Specifies if and when the merge result will be validated
+   */
+  private volatile ValidationMode validationMode = ValidationMode.ALWAYS;
 
   /**
-   * Specifies if the merge result will be validated
+   * Whether merges consume the given elements and documents instead of copying their nodes
    */
-  private boolean validation = true;
+  private volatile boolean destructive;
 
   /**
-   * Default ConflictHandlingType
+   * Equivalence of the nodes selected by the criteria of the MergeSchemas
    */
-  private ConflictHandlingType conflictHandlingType = ConflictHandlingType.PATCHOVERWRITE;
+  private volatile NodeEquivalence nodeEquivalence = NodeEquivalence.SERIALIZED;
+
+  /**
+   * Validation counters of the merges of this LeXeMerger
+   */
+  private final ValidationStatistics validationStatistics = new ValidationStatistics();
+
+  /**
+   * Default ConflictHandlingType. {@link ConflictHandlingType#PATCHOVERWRITE} if not specified
+   */
+  private final ConflictHandlingType conflictHandlingType;
 
   /**
    * @param pathToMergeSchema String representing the path to a folder in which merge schemas are stored. This merge
@@ -72,6 +147,7 @@ public class LeXeMerger {
    */
   public LeXeMerger(String pathToMergeSchema) {
 
+    this.conflictHandlingType = ConflictHandlingType.PATCHOVERWRITE;
     if (pathToMergeSchema == null) {
       pathToMergeSchema = "./";
     }
@@ -87,6 +163,7 @@ public class LeXeMerger {
    */
   public LeXeMerger(Path pathToMergeSchema) {
 
+    this.conflictHandlingType = ConflictHandlingType.PATCHOVERWRITE;
     new Document();
     if (pathToMergeSchema == null) {
       Path path = Paths.get("./");
@@ -142,29 +219,105 @@ public class LeXeMerger {
    */
   public LeXeMerger(MergeSchemaProvider provider) {
 
+    this.conflictHandlingType = ConflictHandlingType.PATCHOVERWRITE;
     new Document();
     this.provider = provider;
-    this.validation = false;
+    this.validationMode = ValidationMode.NONE;
   }
 
   /**
-   * Returns the field 'validation'
+   * Checks whether merge results will be validated at all
    *
-   * @return boolean value of validation
+   * @return false if the {@link ValidationMode} is {@link ValidationMode#NONE}
    */
   public boolean isValidation() {
 
-    return this.validation;
+    return this.validationMode != ValidationMode.NONE;
   }
 
   /**
-   * Sets the field 'validation'.
+   * Enables or disables the validation of merge results
    *
-   * @param validation boolean new value of validation
+   * @param validation true for {@link ValidationMode#ALWAYS}, false for {@link ValidationMode#NONE}
    */
   public void setValidation(boolean validation) {
 
-    this.validation = validation;
+    this.validationMode = (validation ? ValidationMode.ALWAYS : ValidationMode.NONE);
+  }
+
+  /**
+   * Returns the field 'validationMode'
+   *
+   * @return value of validationMode
+   */
+  public ValidationMode getValidationMode() {
+
+    return this.validationMode;
+  }
+
+  /**
+   * Sets the field 'validationMode'.
+   *
+   * @param validationMode new value of validationMode
+   */
+  public void setValidationMode(ValidationMode validationMode) {
+
+    this.validationMode = validationMode;
+  }
+
+  /**
+   * Returns the field 'destructive'
+   *
+   * @return value of destructive
+   */
+  public boolean isDestructive() {
+
+    return this.destructive;
+  }
+
+  /**
+   * Sets the field 'destructive'. Destructive merges of {@link Element}s and {@link Document}s move the nodes of base
+   * and patch into the result instead of copying them, thus unchanged subtrees aren't allocated again. Base and patch
+   * are left incomplete and mustn't be used afterwards. Nodes of other namespaces are still copied. Merges of files,
+   * streams and readers always move the nodes of the documents they have parsed.
+   *
+   * @param destructive new value of destructive
+   */
+  public void setDestructive(boolean destructive) {
+
+    this.destructive = destructive;
+  }
+
+  /**
+   * Returns the field 'nodeEquivalence'
+   *
+   * @return value of nodeEquivalence
+   */
+  public NodeEquivalence getNodeEquivalence() {
+
+    return this.nodeEquivalence;
+  }
+
+  /**
+   * Sets the field 'nodeEquivalence'. Specifies when nodes selected by the criteria of the MergeSchemas are equivalent
+   * if the generic {@link ElementComparatorFactory} builder is used, {@link NodeEquivalence#SERIALIZED} by default. A
+   * custom builder decides on the equivalence itself.
+   *
+   * @param nodeEquivalence new value of nodeEquivalence
+   */
+  public void setNodeEquivalence(NodeEquivalence nodeEquivalence) {
+
+    this.nodeEquivalence = nodeEquivalence;
+  }
+
+  /**
+   * Returns the validation counters of the merges of this LeXeMerger
+   *
+   * @return {@link ValidationStatistics}
+   */
+  public ValidationStatistics getValidationStatistics() {
+
+    return this.validationStatistics;
   }
 
   /**
@@ -182,7 +335,63 @@ public class LeXeMerger {
   public Element merge(Element element1, Element element2, ConflictHandlingType conflictHandling)
       throws XMLMergeException {
 
+    return merge(element1, element2, conflictHandling, this.validationMode, this.destructive);
+  }
+
+  /**
+   * Merges two given XML documents represented by two {@link Element} object
+   *
+   * @param element1 {@link Element} root Element of the first xml document
+   * @param element2 {@link Element} root Element of the second xml document
+   * @param conflictHandling {@link ConflictHandlingType} specifying how conflicts will be handled during the merge
+   *        process
+   * @param mode specifies if the merge result will be validated
+   * @param consume whether the nodes of the elements may be moved into the result
+   * @return {@link Element}
+   * @throws XMLMergeException if the elements can't be merged
+   */
+  private Element merge(Element element1, Element element2, ConflictHandlingType conflictHandling,
+      ValidationMode mode, boolean consume) throws XMLMergeException {
+
     this.logger.debug("Starting merge process");
+    HandlingPlan rootPlan = getRootPlan(element1, element2, conflictHandling);
+    ElementMerger rootMerger = ElementMergerFactory.build(rootPlan, this.provider);
+    rootMerger.setRoot(true);
+    Element result;
+    // comparisons are cached for the duration of this merge only
+    ComparisonCache.open();
+    try {
+      if (rootMerger instanceof ElementMergerImpl) {
+        result = ((ElementMergerImpl) rootMerger).merge(element1, element2, conflictHandling, consume,
+            this.nodeEquivalence);
+      } else {
+        result = rootMerger.merge(element1, element2, conflictHandling);
+      }
+    } finally {
+      ComparisonCache.close();
+    }
+    if (mode.isValidating(conflictHandling)) {
+      validate(result);
+    } else {
+      this.validationStatistics.recordSkipped();
+    }
+    return result;
+  }
+
+  /**
+   * Checks that the root elements are of the same namespace, merges their schema locations and returns the compiled
+   * Handling of the root element
+   *
+   * @param element1 {@link Element} root Element of the first xml document
+   * @param element2 {@link Element} root Element of the second xml document
+   * @param conflictHandling {@link ConflictHandlingType} specifying how conflicts will be handled during the merge
+   *        process
+   * @return the {@link HandlingPlan} of the root element
+   * @throws XMLMergeException if the elements can't be merged
+   */
+  private HandlingPlan getRootPlan(Element element1, Element element2, ConflictHandlingType conflictHandling)
+      throws XMLMergeException {
+
     if (element1.getNamespaceURI() != null || element2.getNamespaceURI() != null) {
       if (!element1.getNamespaceURI().equals(element2.getNamespaceURI())) {
         throw new UnmatchingNamespacesException(String.format("URI of elements doesn't match. Found %s and %s ",
@@ -195,25 +404,55 @@ public class LeXeMerger {
       element1.setAttribute("schemaLocation", mergedSchemaLocation, JDom2Util.XSI);
       element2.setAttribute("schemaLocation", mergedSchemaLocation, JDom2Util.XSI);
     }
-    this.mergeSchema = this.provider.getMergeSchemaForNamespaceURI(element1.getNamespaceURI());
-    if (this.mergeSchema.isRoot()) {
-      this.rootMerger = ElementMergerFactory.build(this.mergeSchema, this.provider);
-    } else {
-      for (Handling h : this.mergeSchema.getHandling()) {
-        if (h.getFor().equals(element1.getName())) {
-          this.rootMerger = ElementMergerFactory.build(h, this.provider);
-        }
-      }
+    HandlingPlan rootPlan = getMergePlan(element1.getNamespaceURI()).getPlanForRoot(element1.getName());
+    if (rootPlan == null) {
+      throw new ElementsCantBeMergedException(String.format("The MergeSchema for %s contains no Handling for %s",
+          element1.getNamespaceURI(), element1.getName()));
     }
-    //
-    this.rootMerger.setRoot(true);
-    Element result = this.rootMerger.merge(element1, element2, conflictHandling);
+    return rootPlan;
+  }
+
+  /**
+   * Returns the compiled MergeSchema for a namespace. It is provided by a {@link MergePlanProvider}, otherwise it is
+   * compiled once per MergeSchema instance returned by the provider
+   *
+   * @param namespaceURI the namespace
+   * @return {@link MergePlan}
+   */
+  private MergePlan getMergePlan(String namespaceURI) {
+
+    if (this.provider instanceof MergePlanProvider) {
+      return ((MergePlanProvider) this.provider).getMergePlan(namespaceURI);
+    }
+    MergeSchema schema = this.provider.getMergeSchemaForNamespaceURI(namespaceURI);
+    MergePlan plan = this.mergePlans.get(namespaceURI);
+    if (plan == null || plan.getMergeSchema() != schema) {
+      plan = new MergePlan(schema, this.provider);
+      this.mergePlans.put(namespaceURI, plan);
+    }
+    return plan;
+  }
+
+  /**
+   * Validates a merge result strictly and records the validation time
+   *
+   * @param result the merge result
+   * @throws ValidationException if the result is invalid
+   */
+  private void validate(Element result) throws ValidationException {
+
     DocumentValidator docVal = DocumentValidatorFactory.build(this.provider);
-    if (this.validation) {
-      docVal.setStrict(true);
+    docVal.setStrict(true);
+    boolean failed = true;
+    long start = System.nanoTime();
+    try {
+      docVal.validate(result);
+      failed = false;
+    } finally {
+      long time = System.nanoTime() - start;
+      this.validationStatistics.recordValidation(time, failed);
+      this.logger.debug("Validation took {} ms", time / 1000000);
     }
-    docVal.validate(result);
-    return result;
   }
 
   /**
@@ -227,9 +466,26 @@ public class LeXeMerger {
    */
   public Document merge(Document doc1, Document doc2, ConflictHandlingType conflictHandling) throws XMLMergeException {
 
+    return merge(doc1, doc2, conflictHandling, this.destructive);
+  }
+
+  /**
+   * @see #merge(Element, Element, ConflictHandlingType)
+   * @param doc1 {@link Document} to be merged
+   * @param doc2 {@link Document} to be merged
+   * @return {@link Document}
+   * @param conflictHandling {@link ConflictHandlingType} specifying how conflicts will be handled during the merge
+   *        process
+   * @param consume whether the nodes of the documents may be moved into the result
+   * @throws XMLMergeException if the elements can't be merged
+   */
+  private Document merge(Document doc1, Document doc2, ConflictHandlingType conflictHandling, boolean consume)
+      throws XMLMergeException {
+
+    ValidationMode mode = this.validationMode;
     if (doc1.getDocType() != null || doc2.getDocType() != null) {
       this.logger.debug("found doctypes");
-      this.validation = false;
+      mode = ValidationMode.NONE;
       if (doc1.getRootElement().getNamespace().equals(Namespace.NO_NAMESPACE)
           && !doc2.getRootElement().getNamespace().equals(Namespace.NO_NAMESPACE)) {
         this.logger.debug("base doc is missing namespace. using {} from patch",
@@ -252,14 +508,15 @@ public class LeXeMerger {
         JDom2Util.getInstance().replaceNamespaceDeep(doc2.getRootElement(), Namespace.NO_NAMESPACE, publicId);
       }
     }
-    Element mergeResult = merge(doc1.getRootElement(), doc2.getRootElement(), conflictHandling);
+    Element mergeResult = merge(doc1.getRootElement(), doc2.getRootElement(), conflictHandling, mode, consume);
     if (mergeResult.getDocument() == null) {
       Document newRoot = new Document();
 
       newRoot.setRootElement(mergeResult);
       return newRoot;
     }
-    return merge(doc1.getRootElement(), doc2.getRootElement(), conflictHandling).getDocument();
+    // the result is already the root of a document, e.g. if a custom ElementMerger merges in place
+    return mergeResult.getDocument();
   }
 
   /**
@@ -277,21 +534,92 @@ public class LeXeMerger {
   public Document merge(File base, String patch, String charSet, ConflictHandlingType conflictHandling)
       throws XMLMergeException {
 
+    try (Reader baseReader = new InputStreamReader(Files.newInputStream(base.toPath()), charSet)) {
+      return merge(baseReader, new StringReader(patch), conflictHandling);
+    } catch (IOException e) {
+      this.logger.error("Caught unexcpected {}:{}", e.getClass().getName(), e.getMessage());
+      throw new XMLMergeException(e.getMessage());
+    }
+  }
+
+  /**
+   * Merges two XML files. The files are decoded while being parsed, without reading them into memory first.
+   *
+   * @see com.github.maybeec.lexeme.LeXeMerger#merge(Element, Element, ConflictHandlingType)
+   * @param base the base file
+   * @param patch the patch file
+   * @param charset charset of both files. Overrides the encoding declared in the files
+   * @param conflictHandling {@link ConflictHandlingType} specifying how conflicts will be handled during the merge
+   *        process. If null the default for this LeXeMerger will be used
+   * @return Document the merged result of base and patch
+   * @throws XMLMergeException when the Documents can't be properly merged
+   */
+  public Document merge(Path base, Path patch, Charset charset, ConflictHandlingType conflictHandling)
+      throws XMLMergeException {
+
+    try (InputStream baseStream = Files.newInputStream(base); InputStream patchStream = Files.newInputStream(patch)) {
+      return merge(baseStream, patchStream, charset, conflictHandling);
+    } catch (IOException e) {
+      this.logger.error("Caught unexcpected {}:{}", e.getClass().getName(), e.getMessage());
+      throw new XMLMergeException(e.getMessage());
+    }
+  }
+
+  /**
+   * Merges two XML documents read from streams. The streams are not closed.
+   *
+   * @see com.github.maybeec.lexeme.LeXeMerger#merge(Element, Element, ConflictHandlingType)
+   * @param base the base document
+   * @param patch the patch document
+   * @param charset charset of both streams. Overrides the encoding declared in the documents
+   * @param conflictHandling {@link ConflictHandlingType} specifying how conflicts will be handled during the merge
+   *        process. If null the default for this LeXeMerger will be used
+   * @return Document the merged result of base and patch
+   * @throws XMLMergeException when the Documents can't be properly merged
+   */
+  public Document merge(InputStream base, InputStream patch, Charset charset,
+      ConflictHandlingType conflictHandling) throws XMLMergeException {
+
+    return merge(new InputStreamReader(base, charset), new InputStreamReader(patch, charset), conflictHandling);
+  }
+
+  /**
+   * Merges two XML documents read from character streams. The readers are not closed.
+   *
+   * @see com.github.maybeec.lexeme.LeXeMerger#merge(Element, Element, ConflictHandlingType)
+   * @param base the base document
+   * @param patch the patch document
+   * @param conflictHandling {@link ConflictHandlingType} specifying how conflicts will be handled during the merge
+   *        process. If null the default for this LeXeMerger will be used
+   * @return Document the merged result of base and patch
+   * @throws XMLMergeException when the Documents can't be properly merged
+   */
+  public Document merge(Reader base, Reader patch, ConflictHandlingType conflictHandling) throws XMLMergeException {
+
     if (conflictHandling == null) {
       conflictHandling = this.conflictHandlingType;
     }
+    Document baseDoc = parse(base);
+    Document patchDoc = parse(patch);
+    // the documents are discarded afterwards
+    return merge(baseDoc, patchDoc, conflictHandling, true);
+  }
+
+  /**
+   * Parses a document without validation and without loading external DTDs
+   *
+   * @param reader the document
+   * @return the parsed {@link Document}
+   * @throws XMLMergeException if the document can't be read or parsed
+   */
+  private Document parse(Reader reader) throws XMLMergeException {
+
     try {
-      SAXBuilder builder = new SAXBuilder(XMLReaders.NONVALIDATING);
-      builder.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-      String baseString = JDom2Util.getInstance().readFile(base.getPath(), charSet);
-      Document baseDoc = builder.build(new InputSource(new BufferedReader(new StringReader(baseString))));
-      Document patchDoc = builder.build(new InputSource(new BufferedReader(new StringReader(patch))));
-      return merge(baseDoc, patchDoc, conflictHandling);
+      return builders.get().build(reader);
     } catch (IOException | JDOMException e) {
       this.logger.error("Caught unexcpected {}:{}", e.getClass().getName(), e.getMessage());
       throw new XMLMergeException(e.getMessage());
     }
-
   }
 
   /**
@@ -314,4 +642,272 @@ public class LeXeMerger {
     return resultString;
   }
 
+  /**
+   * Merges a given XML file with a patch and writes the result to a file
+   *
+   * @see #merge(File, String, String, ConflictHandlingType)
+   * @param base File
+   * @param patch String
+   * @param charSet charset of the file to be read and of the result
+   * @param conflictHandling {@link ConflictHandlingType} specifying how conflicts will be handled during the merge
+   *        process. If null the default for this LeXeMerger will be used
+   * @param target the file to be written. Will be created or overwritten
+   * @param format the {@link Format} of the result, its encoding is replaced by charSet. If null the raw format is used
+   * @throws XMLMergeException when the Documents can't be properly merged or the result can't be written
+   */
+  public void mergeTo(File base, String patch, String charSet, ConflictHandlingType conflictHandling, Path target,
+      Format format) throws XMLMergeException {
+
+    Document result = merge(base, patch, charSet, conflictHandling);
+    try (Writer writer = Files.newBufferedWriter(target, Charset.forName(charSet))) {
+      output(result, writer, getFormat(format, charSet));
+    } catch (IOException e) {
+      this.logger.error("Caught unexcpected {}:{}", e.getClass().getName(), e.getMessage());
+      throw new XMLMergeException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Merges a given XML file with a patch and writes the result to a stream
+   *
+   * @see #merge(File, String, String, ConflictHandlingType)
+   * @param base File
+   * @param patch String
+   * @param charSet charset of the file to be read and of the result
+   * @param conflictHandling {@link ConflictHandlingType} specifying how conflicts will be handled during the merge
+   *        process. If null the default for this LeXeMerger will be used
+   * @param out the target of the merge result. It is flushed but not closed
+   * @param format the {@link Format} of the result, its encoding is replaced by charSet. If null the raw format is used
+   * @throws XMLMergeException when the Documents can't be properly merged or the result can't be written
+   */
+  public void mergeTo(File base, String patch, String charSet, ConflictHandlingType conflictHandling,
+      OutputStream out, Format format) throws XMLMergeException {
+
+    Document result = merge(base, patch, charSet, conflictHandling);
+    try {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(out, Charset.forName(charSet)));
+      output(result, writer, getFormat(format, charSet));
+    } catch (IOException e) {
+      this.logger.error("Caught unexcpected {}:{}", e.getClass().getName(), e.getMessage());
+      throw new XMLMergeException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Merges a given XML file with a patch and writes the result to a character stream
+   *
+   * @see #merge(File, String, String, ConflictHandlingType)
+   * @param base File
+   * @param patch String
+   * @param charSet charset of the file to be read
+   * @param conflictHandling {@link ConflictHandlingType} specifying how conflicts will be handled during the merge
+   *        process. If null the default for this LeXeMerger will be used
+   * @param out the target of the merge result. It is flushed but not closed
+   * @param format the {@link Format} of the result. Its encoding should be the one of out. If null the raw format with
+   *        charSet is used
+   * @throws XMLMergeException when the Documents can't be properly merged or the result can't be written
+   */
+  public void mergeTo(File base, String patch, String charSet, ConflictHandlingType conflictHandling, Writer out,
+      Format format) throws XMLMergeException {
+
+    Document result = merge(base, patch, charSet, conflictHandling);
+    try {
+      output(result, out, format == null ? getFormat(null, charSet) : format);
+    } catch (IOException e) {
+      this.logger.error("Caught unexcpected {}:{}", e.getClass().getName(), e.getMessage());
+      throw new XMLMergeException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Returns the format of a result written with the given charset
+   *
+   * @param format the requested {@link Format}, null for the raw format
+   * @param charSet the charset of the result
+   * @return a {@link Format} declaring charSet
+   */
+  private Format getFormat(Format format, String charSet) {
+
+    return (format == null ? Format.getRawFormat() : format.clone()).setEncoding(charSet);
+  }
+
+  /**
+   * Writes a merge result and flushes the target
+   *
+   * @param result the merged {@link Document}
+   * @param out the target
+   * @param format the {@link Format} of the result
+   * @throws IOException if the result can't be written
+   */
+  private void output(Document result, Writer out, Format format) throws IOException {
+
+    outputProcessor.process(out, format, result);
+    out.flush();
+  }
+
+  /**
+   * Merges a given XML file with a patch and writes the result to a stream. The children of the base root are read and
+   * merged one after the other, so the base doesn't need to fit into memory, whereas the patch does. The result equals
+   * the one of {@link #mergeInString(File, String, String, ConflictHandlingType)}. A custom {@link ElementMerger} for
+   * the root element is not used. Results which have to be validated according to the {@link ValidationMode} and
+   * documents declaring a DOCTYPE are merged in memory, as the result has to be complete before it can be validated.
+   *
+   * @param base File
+   * @param patch String
+   * @param charSet charset of the file to be read and of the result
+   * @param conflictHandling {@link ConflictHandlingType} specifying how conflicts will be handled during the merge
+   *        process. If null the default for this LeXeMerger will be used
+   * @param out the target of the merge result. It is flushed but not closed
+   * @throws XMLMergeException when the Documents can't be properly merged or the result can't be written
+   */
+  public void mergeStreaming(File base, String patch, String charSet, ConflictHandlingType conflictHandling,
+      OutputStream out) throws XMLMergeException {
+
+    if (conflictHandling == null) {
+      conflictHandling = this.conflictHandlingType;
+    }
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, Charset.forName(charSet)));
+    Document patchDoc = parse(new StringReader(patch));
+    try (StreamingMerger merger = new StreamingMerger(base.toPath(), Charset.forName(charSet), this.provider)) {
+      if (this.validationMode.isValidating(conflictHandling) || merger.hasDocType()
+          || patchDoc.getDocType() != null) {
+        this.logger.debug("result has to be validated or found doctypes, merging in memory");
+        Document baseDoc;
+        try (Reader baseReader = new InputStreamReader(Files.newInputStream(base.toPath()), charSet)) {
+          baseDoc = parse(baseReader);
+        }
+        // the documents are discarded afterwards
+        Document result = merge(baseDoc, patchDoc, conflictHandling, true);
+        output(result, writer, getFormat(null, charSet));
+      } else {
+        Element patchRoot = patchDoc.getRootElement();
+        HandlingPlan rootPlan = getRootPlan(merger.getRoot(), patchRoot, conflictHandling);
+        merger.merge(rootPlan, patchRoot, conflictHandling, this.nodeEquivalence, writer, charSet);
+        this.validationStatistics.recordSkipped();
+      }
+      writer.flush();
+    } catch (IOException e) {
+      this.logger.error("Caught unexcpected {}:{}", e.getClass().getName(), e.getMessage());
+      throw new XMLMergeException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Merges a batch of files with their patches in parallel. The jobs share this LeXeMerger, i.e. its MergeSchemaProvider
+   * and the compiled MergeSchemas. A failing job doesn't abort the batch, its exception is reported in its result. The
+   * jobs are executed on a shared pool of daemon threads, one per available processor, whose threads are kept for
+   * following batches. An {@link Error} of a job is rethrown and cancels the remaining jobs.
+   *
+   * @see #mergeAll(Collection, ExecutorService)
+   * @param jobs the {@link MergeJob}s to be executed
+   * @return a {@link MergeJobResult} for every job in the iteration order of jobs
+   * @throws InterruptedException if the current thread has been interrupted while waiting for the results. Remaining
+   *         jobs are cancelled
+   */
+  public List<MergeJobResult> mergeAll(Collection<MergeJob> jobs) throws InterruptedException {
+
+    return mergeAll(jobs, getBatchExecutor());
+  }
+
+  /**
+   * Merges a batch of files with their patches on the given executor. The jobs share this LeXeMerger, i.e. its
+   * MergeSchemaProvider and the compiled MergeSchemas. A failing job doesn't abort the batch, its exception is reported
+   * in its result. An {@link Error} of a job is rethrown and cancels the remaining jobs. The executor isn't shut down.
+   *
+   * @param jobs the {@link MergeJob}s to be executed
+   * @param executor {@link ExecutorService} executing the jobs
+   * @return a {@link MergeJobResult} for every job in the iteration order of jobs
+   * @throws InterruptedException if the current thread has been interrupted while waiting for the results. Remaining
+   *         jobs are cancelled
+   */
+  public List<MergeJobResult> mergeAll(Collection<MergeJob> jobs, ExecutorService executor)
+      throws InterruptedException {
+
+    this.logger.debug("Starting batch of {} merge jobs", jobs.size());
+    List<MergeJob> jobList = new ArrayList<>(jobs);
+    List<Future<MergeJobResult>> futures = new ArrayList<>(jobList.size());
+    List<MergeJobResult> results = new ArrayList<>(jobList.size());
+    try {
+      for (final MergeJob job : jobList) {
+        futures.add(executor.submit(new Callable<MergeJobResult>() {
+
+          @Override
+          public MergeJobResult call() {
+
+            return execute(job);
+          }
+        }));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          results.add(futures.get(i).get());
+        } catch (ExecutionException e) {
+          // execute(MergeJob) catches all exceptions, errors like an OutOfMemoryError aren't a failure of a single job
+          if (e.getCause() instanceof Error) {
+            throw (Error) e.getCause();
+          }
+          results.add(new MergeJobResult(jobList.get(i), null, new XMLMergeException(
+              "Unexpected " + e.getCause().getClass().getName() + ": " + e.getCause().getMessage(), e)));
+        }
+      }
+    } finally {
+      if (results.size() < futures.size()) {
+        for (Future<MergeJobResult> future : futures) {
+          future.cancel(true);
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Returns the executor of the batches. It is created once per JVM and its idle threads terminate after a minute
+   *
+   * @return {@link ExecutorService}
+   */
+  private static ExecutorService getBatchExecutor() {
+
+    ExecutorService executor = batchExecutor;
+    if (executor == null) {
+      synchronized (LeXeMerger.class) {
+        executor = batchExecutor;
+        if (executor == null) {
+          int threads = Runtime.getRuntime().availableProcessors();
+          ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+
+                  Thread t = new Thread(r, "lexeme-batch-merger");
+                  t.setDaemon(true);
+                  return t;
+                }
+              });
+          pool.allowCoreThreadTimeOut(true);
+          executor = pool;
+          batchExecutor = executor;
+        }
+      }
+    }
+    return executor;
+  }
+
+  /**
+   * Executes a single {@link MergeJob}
+   *
+   * @param job the job to be executed
+   * @return {@link MergeJobResult} containing either the merged document or the exception the merge failed with
+   */
+  private MergeJobResult execute(MergeJob job) {
+
+    try {
+      Document result = merge(job.getBase(), job.getPatch(), job.getCharSet(), job.getConflictHandling());
+      return new MergeJobResult(job, result, null);
+    } catch (XMLMergeException | RuntimeException e) {
+      this.logger.warn("Merge of {} failed with {}:{}", job.getBase(), e.getClass().getName(), e.getMessage());
+      return new MergeJobResult(job, null, e);
+    }
+  }
+
 }
@@ -0,0 +1,93 @@
+package com.github.maybeec.lexeme;
+
+import java.io.File;
+
+/**
+ * A single merge of a base file with a patch, used by the batch API {@link LeXeMerger#mergeAll(java.util.Collection)}.
+ * Immutable.
+ */
+public final class MergeJob {
+
+  /**
+   * The base file
+   */
+  private final File base;
+
+  /**
+   * The patch document as String
+   */
+  private final String patch;
+
+  /**
+   * Charset of the base file
+   */
+  private final String charSet;
+
+  /**
+   * {@link ConflictHandlingType} of the merge. If null the default of the LeXeMerger will be used
+   */
+  private final ConflictHandlingType conflictHandling;
+
+  /**
+   * Creates a new merge job
+   *
+   * @param base the base file
+   * @param patch the patch document as String
+   * @param charSet charset of the base file
+   * @param conflictHandling {@link ConflictHandlingType} specifying how conflicts will be handled during the merge
+   *        process. If null the default for the executing LeXeMerger will be used
+   */
+  public MergeJob(File base, String patch, String charSet, ConflictHandlingType conflictHandling) {
+
+    this.base = base;
+    this.patch = patch;
+    this.charSet = charSet;
+    this.conflictHandling = conflictHandling;
+  }
+
+  /**
+   * Returns the field 'base'
+   *
+   * @return value of base
+   */
+  public File getBase() {
+
+    return this.base;
+  }
+
+  /**
+   * Returns the field 'patch'
+   *
+   * @return value of patch
+   */
+  public String getPatch() {
+
+    return this.patch;
+  }
+
+  /**
+   * Returns the field 'charSet'
+   *
+   * @return value of charSet
+   */
+  public String getCharSet() {
+
+    return this.charSet;
+  }
+
+  /**
+   * Returns the field 'conflictHandling'
+   *
+   * @return value of conflictHandling. Can be null
+   */
+  public ConflictHandlingType getConflictHandling() {
+
+    return this.conflictHandling;
+  }
+
+  @Override
+  public String toString() {
+
+    return "MergeJob[" + this.base + "]";
+  }
+}
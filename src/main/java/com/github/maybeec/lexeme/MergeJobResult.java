@@ -0,0 +1,78 @@
+package com.github.maybeec.lexeme;
+
+import org.jdom2.Document;
+
+/**
+ * The outcome of a {@link MergeJob}: either the merged document or the exception the merge failed with. Immutable.
+ */
+public final class MergeJobResult {
+
+  /**
+   * The executed job
+   */
+  private final MergeJob job;
+
+  /**
+   * The merge result. Null if the merge failed
+   */
+  private final Document result;
+
+  /**
+   * The exception the merge failed with. Null if the merge succeeded
+   */
+  private final Exception error;
+
+  /**
+   * Creates a new result
+   *
+   * @param job the executed job
+   * @param result the merged document, null if the merge failed
+   * @param error the exception the merge failed with, null if the merge succeeded
+   */
+  MergeJobResult(MergeJob job, Document result, Exception error) {
+
+    this.job = job;
+    this.result = result;
+    this.error = error;
+  }
+
+  /**
+   * Returns the field 'job'
+   *
+   * @return value of job
+   */
+  public MergeJob getJob() {
+
+    return this.job;
+  }
+
+  /**
+   * Returns the field 'result'
+   *
+   * @return the merged {@link Document} or null if the merge failed
+   */
+  public Document getResult() {
+
+    return this.result;
+  }
+
+  /**
+   * Returns the field 'error'
+   *
+   * @return the {@link Exception} the merge failed with or null if the merge succeeded
+   */
+  public Exception getError() {
+
+    return this.error;
+  }
+
+  /**
+   * Checks whether the merge succeeded
+   *
+   * @return true if a result is available
+   */
+  public boolean isSuccessful() {
+
+    return this.error == null;
+  }
+}
@@ -0,0 +1,39 @@
+package com.github.maybeec.lexeme;
+
+/**
+ * Specifies if and when a LeXeMerger validates its merge results
+ */
+public enum ValidationMode {
+
+  /**
+   * Merge results won't be validated
+   */
+  NONE,
+  /**
+   * Merge results will only be validated if the {@link ConflictHandlingType} of the merge is validating, i.e. one of the
+   * *VALIDATE types. An invalid result causes a ValidationException
+   */
+  LAZY,
+  /**
+   * Every merge result will be validated. An invalid result causes a ValidationException
+   */
+  ALWAYS;
+
+  /**
+   * Checks whether a merge with the given {@link ConflictHandlingType} has to be validated in this mode
+   *
+   * @param conflictHandling {@link ConflictHandlingType} of the merge
+   * @return true if the merge result has to be validated
+   */
+  public boolean isValidating(ConflictHandlingType conflictHandling) {
+
+    switch (this) {
+      case ALWAYS:
+        return true;
+      case LAZY:
+        return conflictHandling != null && conflictHandling.isValidating();
+      default:
+        return false;
+    }
+  }
+}
@@ -46,7 +46,12 @@ public class JDom2Util {
   /**
    * Singleton instance
    */
-  private static JDom2Util instance = null;
+  private static final JDom2Util instance = new JDom2Util();
+
+  /**
+   * Outputter used by {@link #parseString(Object)}. Its format is never changed, thus it can be shared by all threads
+   */
+  private final XMLOutputter outputter = new XMLOutputter();
 
   /**
    * Singleton constructor
@@ -62,9 +67,6 @@ public class JDom2Util {
    */
   public static JDom2Util getInstance() {
 
-    if (instance == null) {
-      instance = new JDom2Util();
-    }
     return instance;
   }
 
@@ -115,15 +117,14 @@ public class JDom2Util {
    */
   public String parseString(Object e) {
 
-    XMLOutputter element2String = new XMLOutputter();
     if (e instanceof Element) {
-      return element2String.outputString((Element) e);
+      return this.outputter.outputString((Element) e);
     }
     if (e instanceof Text) {
-      return element2String.outputString((Text) e);
+      return this.outputter.outputString((Text) e);
     }
     if (e instanceof Document) {
-      return element2String.outputString((Document) e);
+      return this.outputter.outputString((Document) e);
     }
     if (e instanceof org.jdom2.Attribute) {
       Attribute a = (org.jdom2.Attribute) e;
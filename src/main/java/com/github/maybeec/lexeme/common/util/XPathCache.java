@@ -0,0 +1,213 @@
+package com.github.maybeec.lexeme.common.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdom2.Namespace;
+import org.jdom2.filter.Filters;
+import org.jdom2.xpath.XPathExpression;
+import org.jdom2.xpath.XPathFactory;
+
+/**
+ * Singleton cache of compiled XPath expressions. Expressions are identified by their String and the namespaces they are
+ * compiled with. The cache is thread-safe: the Jaxen navigator of a compiled expression isn't, thus every thread
+ * compiles and keeps its own instances. The returned expressions are shared between all callers of a thread, thus they
+ * must not be altered (e.g. by setting variable values) and must not be passed to other threads.
+ */
+public class XPathCache {
+
+  /**
+   * Singleton instance
+   */
+  private static final XPathCache instance = new XPathCache();
+
+  /**
+   * The compiled expressions of the current thread
+   */
+  private final ThreadLocal<Expressions> expressions = new ThreadLocal<Expressions>() {
+
+    @Override
+    protected Expressions initialValue() {
+
+      return new Expressions();
+    }
+  };
+
+  /**
+   * Incremented on {@link #clear()}. The expressions of a thread are discarded if they belong to an older generation
+   */
+  private final AtomicInteger generation = new AtomicInteger();
+
+  /**
+   * Number of lookups answered from the cache
+   */
+  private final AtomicLong hits = new AtomicLong();
+
+  /**
+   * Number of lookups which required a compilation
+   */
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Singleton constructor
+   */
+  private XPathCache() {
+
+  }
+
+  /**
+   * Getter to the used XPathCache instance
+   *
+   * @return {@link XPathCache}
+   */
+  public static XPathCache getInstance() {
+
+    return instance;
+  }
+
+  /**
+   * Returns the compiled expression for the given XPath, compiles it on the first request
+   *
+   * @param expression {@link String} XPath expression
+   * @param namespaces {@link Namespace}s the prefixes in the expression refer to
+   * @return {@link XPathExpression} shared instance
+   * @throws IllegalArgumentException if the expression can't be compiled
+   */
+  public XPathExpression<Object> compile(String expression, Namespace... namespaces) {
+
+    Map<Key, XPathExpression<Object>> compiledExpressions = getExpressions();
+    Key key = new Key(expression, namespaces);
+    XPathExpression<Object> compiled = compiledExpressions.get(key);
+    if (compiled != null) {
+      this.hits.incrementAndGet();
+      return compiled;
+    }
+    this.misses.incrementAndGet();
+    compiled = XPathFactory.instance().compile(expression, Filters.fpassthrough(), null, namespaces);
+    compiledExpressions.put(key, compiled);
+    return compiled;
+  }
+
+  /**
+   * Returns the number of lookups answered from the cache
+   *
+   * @return long
+   */
+  public long getHitCount() {
+
+    return this.hits.get();
+  }
+
+  /**
+   * Returns the number of lookups which required a compilation
+   *
+   * @return long
+   */
+  public long getMissCount() {
+
+    return this.misses.get();
+  }
+
+  /**
+   * Returns the number of expressions cached for the current thread
+   *
+   * @return int
+   */
+  public int size() {
+
+    return getExpressions().size();
+  }
+
+  /**
+   * Removes all compiled expressions of all threads and resets the counters
+   */
+  public void clear() {
+
+    this.generation.incrementAndGet();
+    this.hits.set(0);
+    this.misses.set(0);
+  }
+
+  /**
+   * Returns the expressions of the current thread, discards them if the cache has been cleared in the meantime
+   *
+   * @return {@link Map} of the compiled expressions
+   */
+  private Map<Key, XPathExpression<Object>> getExpressions() {
+
+    Expressions threadExpressions = this.expressions.get();
+    int currentGeneration = this.generation.get();
+    if (threadExpressions.generation != currentGeneration) {
+      threadExpressions.compiled.clear();
+      threadExpressions.generation = currentGeneration;
+    }
+    return threadExpressions.compiled;
+  }
+
+  /**
+   * The compiled expressions of a single thread
+   */
+  private static final class Expressions {
+
+    /**
+     * the compiled expressions
+     */
+    private final Map<Key, XPathExpression<Object>> compiled = new HashMap<>();
+
+    /**
+     * generation of the cache the expressions belong to
+     */
+    private int generation;
+  }
+
+  /**
+   * Identifies an expression by its String and namespace context
+   */
+  private static final class Key {
+
+    /**
+     * the XPath expression
+     */
+    private final String expression;
+
+    /**
+     * prefix and URI of every namespace
+     */
+    private final String[] namespaces;
+
+    /**
+     * Creates a new key
+     *
+     * @param expression the XPath expression
+     * @param namespaces the namespace context
+     */
+    Key(String expression, Namespace[] namespaces) {
+
+      this.expression = expression;
+      this.namespaces = new String[namespaces.length * 2];
+      for (int i = 0; i < namespaces.length; i++) {
+        this.namespaces[2 * i] = namespaces[i].getPrefix();
+        this.namespaces[2 * i + 1] = namespaces[i].getURI();
+      }
+    }
+
+    @Override
+    public int hashCode() {
+
+      return 31 * this.expression.hashCode() + Arrays.hashCode(this.namespaces);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return this.expression.equals(other.expression) && Arrays.equals(this.namespaces, other.namespaces);
+    }
+  }
+}
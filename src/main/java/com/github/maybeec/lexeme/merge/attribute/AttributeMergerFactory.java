@@ -4,7 +4,7 @@ import com.github.maybeec.lexeme.mergeschema.Attribute;
 
 public final class AttributeMergerFactory {
 
-  private static AttributeMergerBuilder builder = null;
+  private static volatile AttributeMergerBuilder builder = null;
 
   /**
    * Sets the field 'builder'.
@@ -28,11 +28,22 @@ public final class AttributeMergerFactory {
    */
   public static AttributeMerger build(Attribute attribute) {
 
-    if (builder == null) {
-      builder = new GenericAttributeMergerBuilder();
-    }
+    return getBuilder().build(attribute);
+  }
 
-    return builder.build(attribute);
+  /**
+   * Returns the builder to be used. Initializes a {@link GenericAttributeMergerBuilder} if no builder has been set
+   *
+   * @return AttributeMergerBuilder
+   */
+  private static AttributeMergerBuilder getBuilder() {
+
+    AttributeMergerBuilder b = builder;
+    if (b == null) {
+      b = new GenericAttributeMergerBuilder();
+      builder = b;
+    }
+    return b;
   }
 
 }
@@ -10,7 +10,7 @@ public final class ElementMergerFactory {
   /**
    * The ElementMergerBuilder to be used
    */
-  private static ElementMergerBuilder builder = null;
+  private static volatile ElementMergerBuilder builder = null;
 
   /**
    * private constructor to prevent instances
@@ -38,10 +38,7 @@ public final class ElementMergerFactory {
    */
   public static ElementMerger build(Handling handling, MergeSchemaProvider provider) {
 
-    if (builder == null) {
-      builder = new GenericElementMergerBuilder();
-    }
-    return builder.build(handling, provider);
+    return getBuilder().build(handling, provider);
   }
 
   /**
@@ -54,16 +51,61 @@ public final class ElementMergerFactory {
    */
   public static ElementMerger build(List<Handling> scope, Handling handling, MergeSchemaProvider provider) {
 
-    if (builder == null) {
-      builder = new GenericElementMergerBuilder();
+    return getBuilder().build(scope, handling, provider);
+  }
+
+  /**
+   * Builds and returns an ElementMerger instance for a compiled Handling. Builders which aren't a
+   * {@link PlanElementMergerBuilder} are invoked with the Handling of the plan and, for nested plans, the scope of the
+   * parent element
+   *
+   * @param plan the {@link HandlingPlan} to be used
+   * @param provider the schema provider
+   * @return ElementMerger
+   */
+  public static ElementMerger build(HandlingPlan plan, MergeSchemaProvider provider) {
+
+    ElementMergerBuilder b = getBuilder();
+    if (b instanceof PlanElementMergerBuilder) {
+      return ((PlanElementMergerBuilder) b).build(plan, provider);
     }
-    return builder.build(scope, handling, provider);
+    if (plan.isRoot()) {
+      return b.build(plan.getHandling(), provider);
+    }
+    return b.build(plan.getParentScope(), plan.getHandling(), provider);
+  }
+
+  /**
+   * Returns whether the built ElementMerger instances can be shared, i.e. whether the generic builder is used. A custom
+   * builder is invoked for every merged element
+   *
+   * @return true if no custom builder has been set
+   */
+  public static boolean isReusable() {
+
+    ElementMergerBuilder b = builder;
+    return b == null || b instanceof GenericElementMergerBuilder;
+  }
+
+  /**
+   * Returns the builder to be used. Initializes a {@link GenericElementMergerBuilder} if no builder has been set
+   *
+   * @return ElementMergerBuilder
+   */
+  private static ElementMergerBuilder getBuilder() {
+
+    ElementMergerBuilder b = builder;
+    if (b == null) {
+      b = new GenericElementMergerBuilder();
+      builder = b;
+    }
+    return b;
   }
 
   /**
    * Generic builder
    */
-  static final class GenericElementMergerBuilder implements ElementMergerBuilder {
+  static final class GenericElementMergerBuilder implements PlanElementMergerBuilder {
 
     @Override
     public ElementMerger build(Handling handling, MergeSchemaProvider provider) {
@@ -77,5 +119,11 @@ public final class ElementMergerFactory {
       return new ElementMergerImpl(handling, scope, provider);
     }
 
+    @Override
+    public ElementMerger build(HandlingPlan plan, MergeSchemaProvider provider) {
+
+      return new ElementMergerImpl(plan, provider);
+    }
+
   }
 }
@@ -11,7 +11,6 @@ import org.jdom2.Content;
 import org.jdom2.Element;
 import org.jdom2.Text;
 import org.jdom2.xpath.XPathExpression;
-import org.jdom2.xpath.XPathFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,16 +21,19 @@ import com.github.maybeec.lexeme.common.exception.ElementsCantBeMergedException;
 import com.github.maybeec.lexeme.common.exception.MultipleInstancesOfUniqueElementException;
 import com.github.maybeec.lexeme.common.exception.XMLMergeException;
 import com.github.maybeec.lexeme.common.util.JDom2Util;
+import com.github.maybeec.lexeme.common.util.XPathCache;
 import com.github.maybeec.lexeme.merge.attribute.AttributeMergerFactory;
 import com.github.maybeec.lexeme.merge.element.matcher.ElementComparator;
 import com.github.maybeec.lexeme.merge.element.matcher.ElementComparatorFactory;
+import com.github.maybeec.lexeme.merge.element.matcher.NodeEquivalence;
 import com.github.maybeec.lexeme.mergeschema.Attribute;
 import com.github.maybeec.lexeme.mergeschema.Handling;
 import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
 
 /**
  * Implementation of {@link ElementMerger}. Merges two {@link Element} objects into one according to the handling given
- * at construction.
+ * at construction. The state of a merge is kept per call, thus an ElementMergerImpl is thread-safe and is reused for all
+ * elements of its {@link HandlingPlan}.
  */
 public class ElementMergerImpl implements ElementMerger {
 
@@ -40,44 +42,26 @@ public class ElementMergerImpl implements ElementMerger {
    */
   private static Logger logger = LoggerFactory.getLogger(ElementMergerImpl.class);
 
-  /**
-   * Id to identify this object in the logger output
-   */
-  private String logId = "";
-
   /**
    * The Handling object containing the structural information if the elements to be merged
    */
   private Handling handling;
 
   /**
-   * Contains the current local Handling object scope. An handling object is added to the scope if it describes the
-   * rules for a new Element or if it's overriding the rules of an Handling object already in the scope. The scope
-   * represents the node set of /ancestor-or-self::/sibling-or-self:: of the current Handling tree
+   * The compiled Handling containing the local Handling object scope and the attribute rules
    */
-  private List<Handling> handlingScopeList;
+  private HandlingPlan plan;
 
   /**
    * The MergeSchemaProvider used to provide MergeSchema for given namespaces
    */
   private MergeSchemaProvider provider;
 
-  /**
-   * The current namespaceURI
-   */
-  private String myNamespace;
-
   /**
    * The namespace of an referenced MergeSchema. Can be null if not used
    */
   private String referencedNamespace = "";
 
-  /**
-   * List of already used unique handlings. will refer to a new list on every
-   * {@link #merge(Element, Element, ConflictHandlingType)} call
-   */
-  private List<Handling> usedUniqueHandlingList;
-
   /**
    * Initializes the ElementMergerImpl object with an Handling object specifying the merge rules for an element
    *
@@ -87,18 +71,7 @@ public class ElementMergerImpl implements ElementMerger {
    */
   public ElementMergerImpl(Handling handling, MergeSchemaProvider provider) {
 
-    logger.debug("Instanciate Handling for {}", handling.getFor());
-    this.handling = handling;
-    this.handlingScopeList = new LinkedList<>();
-    this.handlingScopeList.addAll(handling.getHandling()); // getHandling() returns a live list
-    this.provider = provider;
-    // if a reference exists
-    if (!handling.getScopeRef().equals("")) {
-      logger.debug("Found MergeSchema reference: {}@{}", handling.getScopeRef(),
-          (handling.getNamespaceRef().equals("") ? "local" : handling.getNamespaceRef()));
-      this.referencedNamespace = handling.getNamespaceRef();
-      this.handlingScopeList.addAll(getScopeFromRef(handling.getScopeRef(), handling.getNamespaceRef()));
-    }
+    this(HandlingPlan.compile(handling, null, provider), provider);
   }
 
   /**
@@ -110,33 +83,58 @@ public class ElementMergerImpl implements ElementMerger {
    */
   ElementMergerImpl(Handling handling, List<Handling> scope, MergeSchemaProvider provider) {
 
-    logger.debug("Instanciate Handling for {}", handling.getFor());
-    this.handling = handling;
-    this.handlingScopeList = createScope(scope, handling);
+    this(HandlingPlan.compile(handling, scope, null, provider), provider);
+  }
+
+  /**
+   * Initializes the ElementMergerImpl object with a compiled Handling
+   *
+   * @param plan {@link HandlingPlan} containing the merge rules for a specific element
+   * @param provider {@link MergeSchemaProvider} to provide the merge process of different namespaces with the used
+   *        mergeSchema object
+   */
+  public ElementMergerImpl(HandlingPlan plan, MergeSchemaProvider provider) {
+
+    logger.debug("Instanciate Handling for {}", plan.getHandling().getFor());
+    this.plan = plan;
+    this.handling = plan.getHandling();
     this.provider = provider;
-    // if a reference exists
-    if (!handling.getScopeRef().equals("")) {
-      logger.debug("Found MergeSchema reference: {}@{}", handling.getScopeRef(),
-          (handling.getNamespaceRef().equals("") ? "local" : handling.getNamespaceRef()));
-      this.referencedNamespace = handling.getNamespaceRef();
-      this.handlingScopeList.addAll(getScopeFromRef(handling.getScopeRef(), handling.getNamespaceRef()));
-    }
+    this.referencedNamespace = plan.getReferencedNamespace();
   }
 
   @Override
   public Element merge(Element element1, Element element2, ConflictHandlingType conflictHandling)
       throws XMLMergeException {
 
-    this.myNamespace = element1.getNamespaceURI();
-    this.logId = this.handling.getFor() + "@" + this.myNamespace + ": ";
+    return merge(element1, element2, conflictHandling, false, NodeEquivalence.SERIALIZED);
+  }
+
+  /**
+   * Merges two {@link Element} objects into one. A destructive merge moves the nodes of the merged elements into the
+   * result instead of copying them, thus unchanged subtrees aren't allocated again. The merged elements are left
+   * incomplete and mustn't be used afterwards, and base and patch must be distinct. Nested merges of the same
+   * MergeSchema are destructive as well.
+   *
+   * @param element1 {@link Element} the base element
+   * @param element2 {@link Element} the patch element
+   * @param conflictHandling {@link ConflictHandlingType} the way conflicts should be handled.
+   * @param destructive whether the nodes of the merged elements may be moved into the result
+   * @param equivalence {@link NodeEquivalence} of the nodes selected by criteria, used if the generic builder of the
+   *        {@link ElementComparatorFactory} is used
+   * @return {@link Element} not null.
+   * @throws XMLMergeException if the elements can't be merged
+   */
+  public Element merge(Element element1, Element element2, ConflictHandlingType conflictHandling,
+      boolean destructive, NodeEquivalence equivalence) throws XMLMergeException {
+
+    MergeState mergeState = startMerge(element1, destructive, equivalence);
 
     // Compute the text processing flags
-    final boolean attachableText = (conflictHandling.isAttachable() && this.handling.isAttachableText());
-    final boolean useBaseText = conflictHandling.isBasePrefering() || attachableText;
-    final boolean usePatchText = !conflictHandling.isBasePrefering() || attachableText;
+    final boolean useBaseText = isUsingBaseText(conflictHandling);
+    final boolean usePatchText = isUsingPatchText(conflictHandling);
 
-    logger.debug("{}:Text nodes from base will {}be used", this.logId, (useBaseText ? "" : "not "));
-    logger.debug("{}:Text nodes from patch will {}be used", this.logId, (usePatchText ? "" : "not "));
+    logger.debug("{}:Text nodes from base will {}be used", mergeState.logId, (useBaseText ? "" : "not "));
+    logger.debug("{}:Text nodes from patch will {}be used", mergeState.logId, (usePatchText ? "" : "not "));
 
     if (!useBaseText) {
       for (Iterator<Content> iterator = element1.getContent().iterator(); iterator.hasNext();) {
@@ -157,22 +155,8 @@ public class ElementMergerImpl implements ElementMerger {
 
     // Setup
     Element mergedElement = new Element(element1.getName(), element1.getNamespace());
-    this.usedUniqueHandlingList = new LinkedList<>(); // stores Handling objects with
-    // .isUnique=true to keep track of
-    // elements declared as unique
-    mergeAttributes(element1, element2, mergedElement, conflictHandling);
+    mergeAttributes(element1, element2, mergedElement, conflictHandling, mergeState);
 
-    // adding all base elements and texts (depending on the conflict handling) to the merge result as a
-    // ,skeleton'
-    for (Content node : element1.getContent()) {
-      if (node instanceof Text) {
-        if (useBaseText) {
-          mergedElement.addContent(node.clone());
-        }
-      } else {
-        mergedElement.addContent(node.clone());
-      }
-    }
     // computing the relative ,,position'' of the documents to each other
     String firstMatchableElementFromPatch = null;
     RelativeState state = RelativeState.FIRSTELEMENTFROMBASE;
@@ -187,15 +171,22 @@ public class ElementMergerImpl implements ElementMerger {
     } else {
       state = RelativeState.EMPTYBASE;
     }
-    logger.debug("{} is in state {}", this.logId, state.name());
+    logger.debug("{} is in state {}", mergeState.logId, state.name());
+    // adding all base elements and texts (depending on the conflict handling) to the merge result as a
+    // ,skeleton'. Texts have already been removed if they aren't used
+    if (destructive) {
+      mergedElement.addContent(element1.removeContent());
+    } else {
+      for (Content node : element1.getContent()) {
+        mergedElement.addContent(node.clone());
+      }
+    }
     // If the base is empty //
     if (state.equals(RelativeState.EMPTYBASE)) {
-      for (Content node : element2.getContent()) {
-        if (node instanceof Text) {
-          if (usePatchText) {
-            mergedElement.addContent(node.clone());
-          }
-        } else {
+      if (destructive) {
+        mergedElement.addContent(element2.removeContent());
+      } else {
+        for (Content node : element2.getContent()) {
           mergedElement.addContent(node.clone());
         }
       }
@@ -214,77 +205,141 @@ public class ElementMergerImpl implements ElementMerger {
       }
     }
     // Finds a match for base nodes from the patch nodes and merges them if possible
-    matchAndMergeNodes(mergedElement.getContent().listIterator(), patchContent, usePatchText, conflictHandling);
+    matchAndMergeNodes(mergedElement.getContent().listIterator(), patchContent, usePatchText, conflictHandling,
+        mergeState);
+
+    if (destructive) {
+      // detach the remaining patch nodes at once
+      element2.removeContent();
+    }
+    addPatchNodes(mergedElement.getContent(), patchContent, firstMatchableElementFromPatch, destructive);
+
+    // #25 end
+    verifyUniqueness(mergedElement, mergeState);
+    return mergedElement;
+  }
 
-    ListIterator<Content> resultIterator = mergedElement.getContent().listIterator();
+  /**
+   * Returns the given node for adding it to the result
+   *
+   * @param node a node of a merged element
+   * @param destructive whether the node may be moved
+   * @return the detached node if destructive, a copy otherwise
+   */
+  private static Content take(Content node, boolean destructive) {
+
+    return destructive ? node.detach() : node.clone();
+  }
+
+  /**
+   * Initializes the state of a merge of the given base element
+   *
+   * @param base the base element
+   * @param destructive whether the nodes of the merged elements may be moved into the result
+   * @param equivalence {@link NodeEquivalence} of the nodes selected by criteria
+   * @return the {@link MergeState} of the merge
+   */
+  MergeState startMerge(Element base, boolean destructive, NodeEquivalence equivalence) {
+
+    return new MergeState(base.getNamespaceURI(), base.getName() + "@" + base.getNamespaceURI() + ": ",
+        destructive, equivalence);
+  }
+
+  /**
+   * Checks whether text nodes from the base will be used
+   *
+   * @param conflictHandling the {@link ConflictHandlingType} of the merge
+   * @return true if the text nodes of the base are kept
+   */
+  boolean isUsingBaseText(ConflictHandlingType conflictHandling) {
+
+    return conflictHandling.isBasePrefering() || (conflictHandling.isAttachable() && this.handling.isAttachableText());
+  }
+
+  /**
+   * Checks whether text nodes from the patch will be used
+   *
+   * @param conflictHandling the {@link ConflictHandlingType} of the merge
+   * @return true if the text nodes of the patch are added
+   */
+  boolean isUsingPatchText(ConflictHandlingType conflictHandling) {
+
+    return !conflictHandling.isBasePrefering()
+        || (conflictHandling.isAttachable() && this.handling.isAttachableText());
+  }
+
+  /**
+   * Adds the patch nodes which haven't been matched to the merged content. Patch nodes preceding the first patch
+   * element named like the first base element are added in front, the others below the last node of the group of base
+   * nodes they follow. The remaining ones are appended.
+   *
+   * @param resultContent the merged content consisting of the (merged) base nodes
+   * @param patchContent the patch nodes which haven't been matched. Added nodes are removed
+   * @param firstMatchableElementFromPatch name of the first base element if it is preceded by other nodes in the
+   *        patch, null otherwise
+   * @param destructive whether the patch nodes are moved instead of copied
+   */
+  static void addPatchNodes(List<Content> resultContent, List<Content> patchContent,
+      String firstMatchableElementFromPatch, boolean destructive) {
+
+    ListIterator<Content> resultIterator = resultContent.listIterator();
     ListIterator<Content> patchIterator = patchContent.listIterator();
-    switch (state) {
-      case FIRSTELEMENTFROMPATCH:
-        // Align all nodes ,,above'' the element in the patch those tag is present in base and patch in
-        // the result element.
-        // firstMatchableElementFromPatch isn't null at this point
-        while (patchIterator.hasNext()) {
-          Content currentPatchNode = patchIterator.next();
-          if (currentPatchNode instanceof Element
-              && ((Element) currentPatchNode).getName().equals(firstMatchableElementFromPatch)) {
-            // leave the while loop and undo the last next() call in patch
-            patchIterator.previous();
-            break;
-          } else {
-            // add to the result and remove from the patch
-            resultIterator.add(currentPatchNode.clone());
-            patchIterator.remove();
-          }
+    if (firstMatchableElementFromPatch != null) {
+      // Align all nodes ,,above'' the element in the patch those tag is present in base and patch in
+      // the result element.
+      while (patchIterator.hasNext()) {
+        Content currentPatchNode = patchIterator.next();
+        if (currentPatchNode instanceof Element
+            && ((Element) currentPatchNode).getName().equals(firstMatchableElementFromPatch)) {
+          // leave the while loop and undo the last next() call in patch
+          patchIterator.previous();
+          break;
+        } else {
+          // add to the result and remove from the patch
+          resultIterator.add(take(currentPatchNode, destructive));
+          patchIterator.remove();
         }
-        //$FALL-THROUGH$
-      case FIRSTELEMENTFROMBASE:
-        // Now both trees are ,,aligned'' and the accumulation of patch elements below base elements
-        // will start
-        while (resultIterator.hasNext()) {
-          // Patch nodes will be listed BELOW base nodes
-          Content lastGroupNode = getLastNodeFromGroup(resultIterator);
-          while (patchIterator.hasNext()) {
-            Content currentPatchNode = patchIterator.next();
-            if ((lastGroupNode instanceof Element) && (currentPatchNode instanceof Element)) {
-              Element lastGroupElement = (Element) lastGroupNode;
-              Element currentPatchElement = (Element) currentPatchNode;
-              boolean sameName = lastGroupElement.getName().equals(currentPatchElement.getName());
-              /*
-               * The second condition covers the follwing case: <base> <a/> <c/> </base> <patch> <a/> <b/> <c/> </patch>
-               */
-              if (sameName || (peekFor(lastGroupElement.getName(), patchIterator)
-                  && lastGroupElement.getName().equals(currentPatchElement.getName()))) {
-                resultIterator.add(currentPatchElement.clone());
-                patchIterator.remove();
-                continue;
-              } else {
-                break;
-              }
-            } else {
-              resultIterator.previous(); // added as a bug fix. I have absolutely no idea why I
-                                         // even need this since the javadoc of add() clearly states
-                                         // that the node will be inserted BEFORE the current cursor
-
-              resultIterator.add(currentPatchNode.clone());
-              patchIterator.remove();
-            }
+      }
+    }
+    // Now both trees are ,,aligned'' and the accumulation of patch elements below base elements
+    // will start
+    while (resultIterator.hasNext()) {
+      // Patch nodes will be listed BELOW base nodes
+      Content lastGroupNode = getLastNodeFromGroup(resultIterator);
+      while (patchIterator.hasNext()) {
+        Content currentPatchNode = patchIterator.next();
+        if ((lastGroupNode instanceof Element) && (currentPatchNode instanceof Element)) {
+          Element lastGroupElement = (Element) lastGroupNode;
+          Element currentPatchElement = (Element) currentPatchNode;
+          boolean sameName = lastGroupElement.getName().equals(currentPatchElement.getName());
+          /*
+           * The second condition covers the follwing case: <base> <a/> <c/> </base> <patch> <a/> <b/> <c/> </patch>
+           */
+          if (sameName || (peekFor(lastGroupElement.getName(), patchIterator)
+              && lastGroupElement.getName().equals(currentPatchElement.getName()))) {
+            resultIterator.add(take(currentPatchElement, destructive));
+            patchIterator.remove();
+            continue;
+          } else {
+            break;
           }
+        } else {
+          resultIterator.previous(); // added as a bug fix. I have absolutely no idea why I
+                                     // even need this since the javadoc of add() clearly states
+                                     // that the node will be inserted BEFORE the current cursor
+
+          resultIterator.add(take(currentPatchNode, destructive));
+          patchIterator.remove();
         }
-        //$FALL-THROUGH$
-      case EMPTYBASE:
-      default:
+      }
     }
 
     // add the left over patch nodes
     if (!patchContent.isEmpty()) {
       for (Content c : patchContent) {
-        mergedElement.addContent(c.clone());
+        resultContent.add(take(c, destructive));
       }
     }
-
-    // #25 end
-    verifyUniqueness(mergedElement);
-    return mergedElement;
   }
 
   /**
@@ -297,8 +352,7 @@ public class ElementMergerImpl implements ElementMerger {
    */
   public static boolean evaluateWhereString(Element element, String where) throws XPathExpressionException {
 
-    XPathFactory factory = XPathFactory.instance();
-    XPathExpression<Object> xpath = factory.compile(where);
+    XPathExpression<Object> xpath = XPathCache.getInstance().compile(where);
     List<Object> result = xpath.evaluate(element);
     if (result.contains(false)) {
       return false;
@@ -306,69 +360,37 @@ public class ElementMergerImpl implements ElementMerger {
     return true;
   }
 
-  /**
-   * Creates a list of Handling objects to be used on the child elements of the element this Handling is describing
-   *
-   * @param parentHandlingScope List<Handling> handling List of the parent Handling object
-   * @param ownHandling the Handling object of this object
-   * @return List containing Handling objects
-   */
-  private List<Handling> createScope(List<Handling> parentHandlingScope, Handling ownHandling) {
-
-    // Identify all Handlings that will be replaced
-    List<Handling> replacement = new LinkedList<>();
-    for (Handling parent : parentHandlingScope) {
-      for (Handling child : ownHandling.getHandling()) {
-        if (parent.getFor().equals(child.getFor()) && parent.getWhere().equals(child.getWhere())) {
-          replacement.add(parent);
-          break;
-        }
-      }
-    }
-
-    // The new scope is based on the old one
-    List<Handling> scope = new LinkedList<>();
-    scope.addAll(parentHandlingScope);
-
-    // Remove the replaced handling objects from the return list
-    for (Handling parent : replacement) {
-      scope.remove(parent);
-    }
-
-    scope.addAll(ownHandling.getHandling());
-    return scope;
-  }
-
   /**
    * Returns the Handling object to be used on a given Element
    *
    * @param element Element for which the Handling object should be returned
+   * @param mergeState the state of the current merge
    * @return Handling
    * @throws ElementsCantBeMergedException when the where-statement can't be parsed
    */
-  private Handling getHandlingFromScopeForElement(Element element) throws ElementsCantBeMergedException {
+  private Handling getHandlingFromScopeForElement(Element element, MergeState mergeState)
+      throws ElementsCantBeMergedException {
 
     try {
-      logger.debug("{}: Searching for {}", this.logId, element.getName());
-      for (Handling handling : this.handlingScopeList) {
-        if (handling.getFor().equals(element.getName()) && evaluateWhereString(element, handling.getWhere())) {
-          if (handling.isUnique()) {
-            this.usedUniqueHandlingList.add(handling);
-          }
-          logger.debug("{}: Found handling for {}", this.logId, handling.getFor());
-          return handling;
+      logger.debug("{}: Searching for {}", mergeState.logId, element.getName());
+      Handling handling = this.plan.findHandling(element);
+      if (handling != null) {
+        if (handling.isUnique()) {
+          mergeState.usedUniqueHandlings.add(handling);
         }
+        logger.debug("{}: Found handling for {}", mergeState.logId, handling.getFor());
+        return handling;
       }
-      logger.debug("{}: Found no Handling object for {}. Default used", this.logId, element.getName());
-      Handling defaultHandling = getDefaultHandlingFor(element.getName(), this.myNamespace);
+      logger.debug("{}: Found no Handling object for {}. Default used", mergeState.logId, element.getName());
+      Handling defaultHandling = this.plan.getDefaultHandling(element.getName(), mergeState.namespace);
 
       if (defaultHandling.isUnique()) {
-        this.usedUniqueHandlingList.add(defaultHandling);
+        mergeState.usedUniqueHandlings.add(defaultHandling);
       }
       return defaultHandling;
     } catch (XPathExpressionException e) {
       String message = String.format(
-          "%s: Caught unexpected XPathExpressionException. Probaply the 'where'-statement is corrupt:%s", this.logId,
+          "%s: Caught unexpected XPathExpressionException. Probaply the 'where'-statement is corrupt:%s", mergeState.logId,
           e.getMessage());
 
       logger.error(message);
@@ -380,35 +402,19 @@ public class ElementMergerImpl implements ElementMerger {
    * Returns the Attribute object from the Handling object of this object for a given attribute name
    *
    * @param name String
+   * @param mergeState the state of the current merge
    * @return Attribute object
    */
-  private Attribute getAttributeForName(String name) {
+  private Attribute getAttributeForName(String name, MergeState mergeState) {
 
-    for (Attribute attribute : this.handling.getAttribute()) {
-      if (attribute.getFor().equals(name)) {
-        return attribute;
-      }
+    Attribute attribute = this.plan.getAttribute(name);
+    if (attribute != null) {
+      return attribute;
     }
-    logger.debug("{}: Found no Attribute object for {}. Default used", this.logId, name);
+    logger.debug("{}: Found no Attribute object for {}. Default used", mergeState.logId, name);
     return getDefaultAttributeFor(name);
   }
 
-  /**
-   * Returns the default Handling object for the given name
-   *
-   * @param elementName String name of the element the Handling object will describe
-   * @return Handling &lt;Handling for="$name" unique="false">&lt;DefaultCriterion.../>&lt;/>
-   * @param namespace {@link String} the namespace URI
-   */
-  private Handling getDefaultHandlingFor(String elementName, String namespace) {
-
-    Handling handling = new Handling();
-    handling.getCriterion().add(this.provider.getDefaultCriterion(namespace));
-    handling.setFor(elementName);
-    return handling;
-
-  }
-
   /**
    * Returns the default Attribute object for the given name.
    *
@@ -432,59 +438,6 @@ public class ElementMergerImpl implements ElementMerger {
 
   }
 
-  /**
-   * Creates an Handling scope from another MergeSchema
-   *
-   * @param scopeRef the referenced Handling in another MergeSchema
-   * @param namespaceRef the namespace of the other MergeSchema
-   * @return {@link List}&lt;Handling>
-   */
-  List<Handling> getScopeFromRef(String scopeRef, String namespaceRef) {
-
-    List<Handling> result = new LinkedList<>();
-    // If no namespace is provided it'll be assumed that the reference is located in this MergeSchema
-    if (namespaceRef.equals("")) {
-      namespaceRef = this.myNamespace;
-    }
-
-    List<Handling> pathToLabeledHandling = recursiveHandlingPath(
-        this.provider.getMergeSchemaForNamespaceURI(namespaceRef), scopeRef);
-    // follow the Handling path and create the scope as in the algorithm would
-    for (Handling h : pathToLabeledHandling) {
-      result = createScope(result, h);
-    }
-    return result;
-  }
-
-  /**
-   * Searches a given Handling tree for an Handling with the given label and return the path to it
-   *
-   * @param handling Handling to be started at
-   * @param label of the required Handling
-   * @return {@link List}&lt;Handling> with the input Handling on top and the required Handling as last element
-   */
-  private List<Handling> recursiveHandlingPath(Handling handling, String label) {
-
-    List<Handling> result = new LinkedList<>();
-    if (handling.getLabel().equals(label)) { // recursion end
-      result.add(handling);
-      return result;
-    }
-    for (Handling h : handling.getHandling()) {// Recursion
-      List<Handling> recursiveResult = recursiveHandlingPath(h, label);
-      if (recursiveResult.isEmpty()) {
-        continue;
-      }
-      // If the labeled Handling is in the current path add this Handling to the result and append the
-      // recursionResult (which isn't empty since the labeled Handling is in it's path)
-      result.add(h);
-      result.addAll(recursiveResult);
-    }
-
-    return result;
-
-  }
-
   /**
    * Finds for each node retrieved by the Iterator a match in the patchContent (if there is one) and merges the two
    * elements afterwards. Textnodes AFTER a match in the patchContent will be added below the merged result. The match
@@ -494,99 +447,146 @@ public class ElementMergerImpl implements ElementMerger {
    * @param patchContent List of nodes in the patch. Can be altered.
    * @param conflictHandlingType for the nested merge process
    * @param usePatchText boolean if the text nodes from the patch document can be used
+   * @param mergeState the state of the current merge
    * @throws XMLMergeException when something somewhere goes wrong. Can be thrown by the recursive call of
    *         {@link #merge(Element, Element, ConflictHandlingType)} or a new {@link LeXeMerger} instance
    */
   private void matchAndMergeNodes(ListIterator<Content> resultIterator, List<Content> patchContent,
-      boolean usePatchText, ConflictHandlingType conflictHandlingType) throws XMLMergeException {
+      boolean usePatchText, ConflictHandlingType conflictHandlingType, MergeState mergeState)
+      throws XMLMergeException {
 
+    PatchIndex patchIndex = new PatchIndex(patchContent);
     // For each node in the base
     for (; resultIterator.hasNext();) {
-      // result of the search. Will be a merged element or a text node
-      Content nestedMergeResult = null;
-      // List containing text nodes following a potential match element from the patch
-      List<Text> followingTexts = new LinkedList<>();
       // current base node
       Content resultNode = resultIterator.next();
-      // for each node in the patch
-      for (ListIterator<Content> patchIterator = patchContent.listIterator(); patchIterator.hasNext();) {
-        // current patch node
-        Content patchNode = patchIterator.next();
-        boolean matchFound = false;
-        // if the base node is an element and the patch node is of the same type
-        if (resultNode instanceof Element && patchNode instanceof Element) {
-          // casts to Elements
-          Element resultElement = (Element) resultNode;
-          Element patchElement = (Element) patchNode;
-          boolean foreignNamespace = !(resultElement.getNamespaceURI().equals(this.myNamespace)
-              || resultElement.getNamespaceURI().equals(this.referencedNamespace));
-          // if they share the same namespace continue. Otherwise go to the next patch node
-          if (resultElement.getNamespace().equals(patchElement.getNamespace())) {
-            // retrieve a fitting Handling object
-            Handling usedHandling = getHandlingFromScopeForElement(resultElement);
-            // make a Comparator from the Handling
-            ElementComparator comparator = ElementComparatorFactory.build(usedHandling.getCriterion(), this.provider);
-            // If they match continue. Otherwise go to the next patch node
-            if (comparator.compare(resultElement, patchElement) || foreignNamespace) {
-              // remove the found match from the patchContent
-              patchIterator.remove();
-              matchFound = true;
-              // Decide if the elements are in the current or inherited namespace OR from
-              // another namespace
-              if (!foreignNamespace) {
-                // If yes: Create a new ElementMerger element and invoke merge()
-                ElementMerger nestedMerger = ElementMergerFactory.build(this.handlingScopeList, usedHandling,
-                    this.provider);
-                nestedMergeResult = nestedMerger.merge(resultElement, patchElement, conflictHandlingType);
-              } else {
-                // If no: Create a new LeXeMerger instance and invoce merge()
-                LeXeMerger nestedMerger = LeXeMeFactory.build(this.provider);
-                nestedMergeResult = nestedMerger.merge(resultElement, patchElement, conflictHandlingType);
-              }
-            }
-          }
-        }
-        // If the base and the patch node are Text objects
-        if (resultNode instanceof Text && patchNode instanceof Text) {
-          // cast to Text objects
-          Text resultText = (Text) resultNode;
-          Text patchText = (Text) patchNode;
-          // If they have the same normalised value they're considered the same
-          if (resultText.getTextNormalize().equals(patchText.getTextNormalize())) {
-            // Normalise the text node for a prettier output
-            resultText.setText(resultText.getTextNormalize());
-            patchIterator.remove();
-            matchFound = true;
-          }
-        }
-        // If a match has been found add all the text nodes below the match to the result list
-        while (usePatchText && patchIterator.hasNext() && matchFound) {
-          Content nextPatchNode = patchIterator.next();
-          if (nextPatchNode instanceof Text) {
-            followingTexts.add((Text) nextPatchNode.clone());
-            patchIterator.remove();
-          } else {
-            break;
-          }
-        }
-        // if a match has been found leave the patches for loop
-        if (matchFound) {
-          break;
-        }
-      }
+      NodeMatch match = matchNode(resultNode, patchContent, patchIndex, usePatchText, mergeState);
       // if some merge has been performed replace the base node with the merge result.
-      if (nestedMergeResult != null) {
-        resultIterator.set(nestedMergeResult);
+      if (match.getPatchElement() != null) {
+        resultIterator.set(mergeMatch((Element) resultNode, match, conflictHandlingType, mergeState));
       }
       // If a merge/match has been performed add the following text nodes. If no node is contained in
       // followingTexts or the ConflictHandlingType is BASEOVERWRITE nothing happens here.
-      if (usePatchText) {
-        for (Text t : followingTexts) {
-          resultIterator.add(t);
+      for (Text t : match.getFollowingTexts()) {
+        resultIterator.add(t);
+      }
+    }
+
+  }
+
+  /**
+   * Finds a match for a base node in the patchContent (if there is one). The match and the text nodes following it in
+   * the patch are removed from the patchContent. A matching text node from the base is normalised.
+   *
+   * @param resultNode the base node
+   * @param patchContent List of nodes in the patch. Can be altered.
+   * @param patchIndex index over the patchContent
+   * @param usePatchText boolean if the text nodes from the patch document can be used
+   * @param mergeState the state of the current merge
+   * @return {@link NodeMatch} describing the match
+   * @throws ElementsCantBeMergedException if the base node can't be compared
+   */
+  NodeMatch matchNode(Content resultNode, List<Content> patchContent, PatchIndex patchIndex, boolean usePatchText,
+      MergeState mergeState) throws ElementsCantBeMergedException {
+
+    NodeMatch match = new NodeMatch();
+    // iterator of the patch positioned behind the found match
+    ListIterator<Content> patchIterator = null;
+    // if the base node is an element search for a patch element of the same namespace
+    if (resultNode instanceof Element && patchIndex.containsNamespace((Element) resultNode)) {
+      Element resultElement = (Element) resultNode;
+      match.foreignNamespace = !(resultElement.getNamespaceURI().equals(mergeState.namespace)
+          || resultElement.getNamespaceURI().equals(this.referencedNamespace));
+      // retrieve a fitting Handling object
+      match.handling = getHandlingFromScopeForElement(resultElement, mergeState);
+      // the Comparator for the Handling
+      ElementComparator comparator = this.plan.getComparator(match.handling, mergeState.equivalence);
+      // elements of another namespace are matched with the first element of their namespace
+      Element patchElement = match.foreignNamespace ? patchIndex.findFirstInNamespace(resultElement)
+          : patchIndex.findMatch(resultElement, match.handling, comparator);
+      if (patchElement != null) {
+        // remove the found match from the patchContent
+        patchIterator = positionBehind(patchContent, patchElement);
+        patchIterator.remove();
+        patchIndex.consume(patchElement);
+        match.patchElement = patchElement;
+      }
+    }
+    // If the base node is a Text object search for a Text with the same normalised value
+    if (resultNode instanceof Text) {
+      Text resultText = (Text) resultNode;
+      for (ListIterator<Content> iterator = patchContent.listIterator(); iterator.hasNext();) {
+        Content patchNode = iterator.next();
+        // If they have the same normalised value they're considered the same
+        if (patchNode instanceof Text && resultText.getTextNormalize().equals(((Text) patchNode).getTextNormalize())) {
+          // Normalise the text node for a prettier output
+          resultText.setText(resultText.getTextNormalize());
+          iterator.remove();
+          patchIterator = iterator;
+          break;
         }
       }
     }
+    // If a match has been found add all the text nodes below the match to the result list
+    while (usePatchText && patchIterator != null && patchIterator.hasNext()) {
+      Content nextPatchNode = patchIterator.next();
+      if (nextPatchNode instanceof Text) {
+        match.followingTexts.add((Text) nextPatchNode.clone());
+        patchIterator.remove();
+      } else {
+        break;
+      }
+    }
+    return match;
+  }
+
+  /**
+   * Merges a base element with its match from the patch
+   *
+   * @param resultElement the base element
+   * @param match the match of the base element found by
+   *        {@link #matchNode(Content, List, PatchIndex, boolean, MergeState)}
+   * @param conflictHandlingType for the nested merge process
+   * @param mergeState the state of the current merge
+   * @return the merged element
+   * @throws XMLMergeException when something somewhere goes wrong. Can be thrown by the recursive call of
+   *         {@link #merge(Element, Element, ConflictHandlingType)} or a new {@link LeXeMerger} instance
+   */
+  Element mergeMatch(Element resultElement, NodeMatch match, ConflictHandlingType conflictHandlingType,
+      MergeState mergeState) throws XMLMergeException {
+
+    // Decide if the elements are in the current or inherited namespace OR from
+    // another namespace
+    if (!match.foreignNamespace) {
+      // If yes: Get the ElementMerger of the Handling and invoke merge()
+      ElementMerger nestedMerger = this.plan.child(match.handling).getMerger(this.provider);
+      if (nestedMerger instanceof ElementMergerImpl) {
+        return ((ElementMergerImpl) nestedMerger).merge(resultElement, match.patchElement, conflictHandlingType,
+            mergeState.destructive, mergeState.equivalence);
+      }
+      return nestedMerger.merge(resultElement, match.patchElement, conflictHandlingType);
+    } else {
+      // If no: Create a new LeXeMerger instance and invoce merge()
+      LeXeMerger nestedMerger = LeXeMeFactory.build(this.provider);
+      nestedMerger.setNodeEquivalence(mergeState.equivalence);
+      return nestedMerger.merge(resultElement, match.patchElement, conflictHandlingType);
+    }
+  }
+
+  /**
+   * Returns an iterator over the given list which has just returned the given node
+   *
+   * @param list the list containing the node
+   * @param node the node to be positioned at
+   * @return {@link ListIterator} on which remove() removes the node
+   */
+  private ListIterator<Content> positionBehind(List<Content> list, Content node) {
 
+    ListIterator<Content> iterator = list.listIterator();
+    while (iterator.next() != node) {
+      // just step forwards
+    }
+    return iterator;
   }
 
   /**
@@ -596,8 +596,10 @@ public class ElementMergerImpl implements ElementMerger {
    * @param patch patch element
    * @param result result element. Attributes will be altered
    * @param conflictHandling the conflictHandlingtype
+   * @param mergeState the state of the current merge
    */
-  private void mergeAttributes(Element base, Element patch, Element result, ConflictHandlingType conflictHandling) {
+  void mergeAttributes(Element base, Element patch, Element result, ConflictHandlingType conflictHandling,
+      MergeState mergeState) {
 
     for (org.jdom2.Attribute attribute : JDom2Util.getInstance().getUniqueAttributes(base, patch)) {
 
@@ -605,7 +607,7 @@ public class ElementMergerImpl implements ElementMerger {
       org.jdom2.Attribute patchAttribute = patch.getAttribute(attribute.getName(), attribute.getNamespace());
       String baseAttributeValue = (baseAttribute == null ? null : baseAttribute.getValue());
       String patchAttributeValue = (patchAttribute == null ? null : patchAttribute.getValue());
-      String mergedAttributeValue = AttributeMergerFactory.build(getAttributeForName(attribute.getName()))
+      String mergedAttributeValue = AttributeMergerFactory.build(getAttributeForName(attribute.getName(), mergeState))
           .merge(baseAttributeValue, patchAttributeValue, conflictHandling);
       result.setAttribute(attribute.getName(), mergedAttributeValue, attribute.getNamespace());
     }
@@ -616,27 +618,22 @@ public class ElementMergerImpl implements ElementMerger {
    * @param iterator with hasNext() == true. Iterator position will change
    * @return the last node from the current group. i.e. the last <a> element from a consecutive group of <a> elements
    */
-  private Content getLastNodeFromGroup(ListIterator<Content> iterator) {
+  private static Content getLastNodeFromGroup(ListIterator<Content> iterator) {
 
     Content currentNode = iterator.next();
-    if (iterator.hasNext()) {
+    // iterative, as groups can be arbitrary long
+    while (iterator.hasNext()) {
       Content nextNode = iterator.next();
-      if (nextNode.getClass().equals(currentNode.getClass())) {
-        if (nextNode instanceof Element) {
-          Element currentElement = (Element) currentNode;
-          Element nextElement = (Element) nextNode;
-          if (!nextElement.getName().equals(currentElement.getName())) {
-            return currentNode;
-          }
-        }
-        iterator.previous();
-        return getLastNodeFromGroup(iterator);
-      } else {
+      if (!nextNode.getClass().equals(currentNode.getClass())) {
         return currentNode;
       }
-    } else {
-      return currentNode;
+      if (nextNode instanceof Element
+          && !((Element) nextNode).getName().equals(((Element) currentNode).getName())) {
+        return currentNode;
+      }
+      currentNode = nextNode;
     }
+    return currentNode;
   }
 
   /**
@@ -647,36 +644,37 @@ public class ElementMergerImpl implements ElementMerger {
    *        Position of the iterator will be the same as before
    * @return true if an element with tag ,,name'' exists in the list of iterator
    */
-  private boolean peekFor(String name, ListIterator<Content> iterator) {
+  private static boolean peekFor(String name, ListIterator<Content> iterator) {
 
-    if (iterator.hasNext()) {
-      // take a step forwards
+    boolean result = false;
+    int steps = 0;
+    // take steps forwards until an element with the searched name is found
+    while (iterator.hasNext()) {
       Content currentNode = iterator.next();
-      boolean result;
-      // if the current node is an element with the searched name return true
+      steps++;
       if (currentNode instanceof Element && ((Element) currentNode).getName().equals(name)) {
         result = true;
-      } else { // otherwise look at the next node
-        result = peekFor(name, iterator);
+        break;
       }
-      // take a step backwards
+    }
+    // and the same number of steps backwards
+    for (; steps > 0; steps--) {
       iterator.previous();
-      return result;
-    } else {// at the end of the list obviously there was no such element
-      return false;
     }
-
+    return result;
   }
 
   /**
    * Checks if unique elements occur at most once in the merge result
    *
    * @param mergedElement the element to be checked
+   * @param mergeState the state of the merge
    * @throws MultipleInstancesOfUniqueElementException if an unique element occurs more than once
    */
-  private void verifyUniqueness(Element mergedElement) throws MultipleInstancesOfUniqueElementException {
+  void verifyUniqueness(Element mergedElement, MergeState mergeState)
+      throws MultipleInstancesOfUniqueElementException {
 
-    for (Handling h : this.usedUniqueHandlingList) {
+    for (Handling h : mergeState.usedUniqueHandlings) {
       int counter = 0;
       if (!h.isUnique()) {
         continue;
@@ -692,6 +690,100 @@ public class ElementMergerImpl implements ElementMerger {
     }
   }
 
+  /**
+   * The state of a single call of
+   * {@link ElementMergerImpl#merge(Element, Element, ConflictHandlingType, boolean, NodeEquivalence)}
+   */
+  static final class MergeState {
+
+    /**
+     * The namespace URI of the base element
+     */
+    private final String namespace;
+
+    /**
+     * Id to identify the merge in the logger output
+     */
+    private final String logId;
+
+    /**
+     * Whether the nodes of the merged elements may be moved into the result
+     */
+    private final boolean destructive;
+
+    /**
+     * Equivalence of the nodes selected by criteria
+     */
+    private final NodeEquivalence equivalence;
+
+    /**
+     * Handling objects with .isUnique=true to keep track of elements declared as unique
+     */
+    private final List<Handling> usedUniqueHandlings = new LinkedList<>();
+
+    /**
+     * Creates the state of a merge
+     *
+     * @param namespace the namespace URI of the base element
+     * @param logId id to identify the merge in the logger output
+     * @param destructive whether the nodes of the merged elements may be moved into the result
+     * @param equivalence equivalence of the nodes selected by criteria
+     */
+    MergeState(String namespace, String logId, boolean destructive, NodeEquivalence equivalence) {
+
+      this.namespace = namespace;
+      this.logId = logId;
+      this.destructive = destructive;
+      this.equivalence = equivalence;
+    }
+  }
+
+  /**
+   * The match of a base node in the patch
+   */
+  static final class NodeMatch {
+
+    /**
+     * The Handling used for the base element
+     */
+    private Handling handling;
+
+    /**
+     * Whether the base element is of another namespace
+     */
+    private boolean foreignNamespace;
+
+    /**
+     * The matching patch element, null if there is none
+     */
+    private Element patchElement;
+
+    /**
+     * Copies of the patch text nodes following the match
+     */
+    private final List<Text> followingTexts = new LinkedList<>();
+
+    /**
+     * Returns the field 'patchElement'
+     *
+     * @return value of patchElement, null if no patch element matches
+     */
+    Element getPatchElement() {
+
+      return this.patchElement;
+    }
+
+    /**
+     * Returns the field 'followingTexts'
+     *
+     * @return value of followingTexts
+     */
+    List<Text> getFollowingTexts() {
+
+      return this.followingTexts;
+    }
+  }
+
   /**
    * describes the state the two input elements are in relation to each other
    */
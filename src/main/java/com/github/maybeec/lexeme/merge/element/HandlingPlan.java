@@ -0,0 +1,514 @@
+package com.github.maybeec.lexeme.merge.element;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.xpath.XPathExpressionException;
+
+import org.jdom2.Element;
+import org.jdom2.xpath.XPathExpression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.maybeec.lexeme.common.util.XPathCache;
+import com.github.maybeec.lexeme.merge.element.matcher.ElementComparator;
+import com.github.maybeec.lexeme.merge.element.matcher.ElementComparatorFactory;
+import com.github.maybeec.lexeme.merge.element.matcher.NodeEquivalence;
+import com.github.maybeec.lexeme.mergeschema.Attribute;
+import com.github.maybeec.lexeme.mergeschema.Criterion;
+import com.github.maybeec.lexeme.mergeschema.Handling;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
+
+/**
+ * Immutable, compiled form of a {@link Handling} in the context of its parent Handling scope. Contains the resolved
+ * Handling scope for the child elements (including referenced scopes), the Attribute rules by name and the
+ * where-clauses of the scope which can be compiled. Plans for child elements are compiled on first use and shared
+ * afterwards, thus a plan tree is only built once per MergeSchema. The same holds for the {@link ElementMerger} of a plan
+ * and the {@link ElementComparator} of each Handling in the scope as long as the generic builders of their factories are
+ * used. Plans are thread-safe, the compiled where-clauses are taken from the per thread {@link XPathCache}.
+ */
+public final class HandlingPlan {
+
+  /**
+   * Used to log errors, warnings or information about this object or its processes
+   */
+  private static Logger logger = LoggerFactory.getLogger(HandlingPlan.class);
+
+  /**
+   * The Handling this plan has been compiled from
+   */
+  private final Handling handling;
+
+  /**
+   * The Handling scope of the parent element. Empty for root handlings
+   */
+  private final List<Handling> parentScope;
+
+  /**
+   * Whether the Handling is used on root elements, i.e. has no parent scope
+   */
+  private final boolean root;
+
+  /**
+   * The namespace of the MergeSchema this plan belongs to. Local scope references are resolved against it
+   */
+  private final String namespace;
+
+  /**
+   * The namespace of an referenced MergeSchema. Empty if not used
+   */
+  private final String referencedNamespace;
+
+  /**
+   * The Handling scope for the child elements. An handling object is added to the scope if it describes the rules for a
+   * new Element or if it's overriding the rules of an Handling object already in the scope. The scope represents the
+   * node set of /ancestor-or-self::/sibling-or-self:: of the current Handling tree
+   */
+  private final List<Handling> scope;
+
+  /**
+   * The scope grouped by element name. Keeps the order of the scope
+   */
+  private final Map<String, List<Handling>> scopeByName;
+
+  /**
+   * The Handling objects of the scope whose where-clause can be compiled
+   */
+  private final Set<Handling> compilableWheres;
+
+  /**
+   * The first Attribute rule of the Handling for each attribute name
+   */
+  private final Map<String, Attribute> attributes;
+
+  /**
+   * Plans for the Handling objects of the scope
+   */
+  private final ConcurrentMap<Handling, HandlingPlan> children = new ConcurrentHashMap<>();
+
+  /**
+   * Default Handling objects for elements without Handling in the scope, by default criterion. They don't name an
+   * element, thus one is shared by all elements whose namespaces have the same default criterion
+   */
+  private final ConcurrentMap<String, Handling> defaultHandlings = new ConcurrentHashMap<>();
+
+  /**
+   * The default Handling objects of {@link #defaultHandlings}. Their plans and comparators are shared like those of the
+   * scope
+   */
+  private final Set<Handling> sharedDefaults = Collections
+      .newSetFromMap(new ConcurrentHashMap<Handling, Boolean>());
+
+  /**
+   * Comparators for the Handling objects used on child elements per equivalence of the selected nodes
+   */
+  private final ConcurrentMap<NodeEquivalence, ConcurrentMap<Handling, ElementComparator>> comparators =
+      new ConcurrentHashMap<>();
+
+  /**
+   * The ElementMerger for this plan. Null until first use
+   */
+  private volatile ElementMerger merger;
+
+  /**
+   * The MergeSchemaProvider used to resolve references
+   */
+  private final MergeSchemaProvider provider;
+
+  /**
+   * Compiles a plan
+   *
+   * @param handling the Handling to be compiled
+   * @param parentScope the Handling scope of the parent element. Empty for root handlings
+   * @param root whether the Handling is used on root elements
+   * @param namespace the namespace of the MergeSchema containing the Handling. Can be null
+   * @param provider {@link MergeSchemaProvider} to resolve scope references
+   */
+  private HandlingPlan(Handling handling, List<Handling> parentScope, boolean root, String namespace,
+      MergeSchemaProvider provider) {
+
+    logger.debug("Compiling Handling for {}", handling.getFor());
+    this.handling = handling;
+    this.parentScope = parentScope;
+    this.root = root;
+    this.namespace = namespace;
+    this.provider = provider;
+    List<Handling> scopeList = createScope(parentScope, handling);
+    // if a reference exists
+    if (!handling.getScopeRef().equals("")) {
+      logger.debug("Found MergeSchema reference: {}@{}", handling.getScopeRef(),
+          (handling.getNamespaceRef().equals("") ? "local" : handling.getNamespaceRef()));
+      this.referencedNamespace = handling.getNamespaceRef();
+      scopeList.addAll(getScopeFromRef(handling.getScopeRef(), handling.getNamespaceRef()));
+    } else {
+      this.referencedNamespace = "";
+    }
+    this.scope = Collections.unmodifiableList(scopeList);
+
+    Map<String, List<Handling>> byName = new HashMap<>();
+    Set<Handling> wheres = Collections.newSetFromMap(new IdentityHashMap<Handling, Boolean>());
+    for (Handling h : scopeList) {
+      List<Handling> named = byName.get(h.getFor());
+      if (named == null) {
+        named = new LinkedList<>();
+        byName.put(h.getFor(), named);
+      }
+      named.add(h);
+      try {
+        XPathCache.getInstance().compile(h.getWhere());
+        wheres.add(h);
+        for (Criterion c : h.getCriterion()) {
+          XPathCache.getInstance().compile(c.getXpath());
+        }
+      } catch (IllegalArgumentException e) {
+        logger.debug("Could not precompile the XPath expressions of Handling {}: {}", h.getFor(), e.getMessage());
+      }
+    }
+    this.scopeByName = byName;
+    this.compilableWheres = wheres;
+
+    Map<String, Attribute> attributeMap = new LinkedHashMap<>();
+    for (Attribute attribute : handling.getAttribute()) {
+      if (!attributeMap.containsKey(attribute.getFor())) {
+        attributeMap.put(attribute.getFor(), attribute);
+      }
+    }
+    this.attributes = Collections.unmodifiableMap(attributeMap);
+  }
+
+  /**
+   * Compiles a plan for a root Handling, i.e. a Handling without a parent scope
+   *
+   * @param handling the Handling to be compiled
+   * @param namespace the namespace of the MergeSchema containing the Handling. Can be null
+   * @param provider {@link MergeSchemaProvider} to resolve scope references
+   * @return {@link HandlingPlan}
+   */
+  public static HandlingPlan compile(Handling handling, String namespace, MergeSchemaProvider provider) {
+
+    return new HandlingPlan(handling, Collections.<Handling> emptyList(), true, namespace, provider);
+  }
+
+  /**
+   * Compiles a plan for a nested Handling
+   *
+   * @param handling the Handling to be compiled
+   * @param parentScope the Handling scope of the parent element
+   * @param namespace the namespace of the MergeSchema containing the Handling. Can be null
+   * @param provider {@link MergeSchemaProvider} to resolve scope references
+   * @return {@link HandlingPlan}
+   */
+  public static HandlingPlan compile(Handling handling, List<Handling> parentScope, String namespace,
+      MergeSchemaProvider provider) {
+
+    return new HandlingPlan(handling, parentScope, false, namespace, provider);
+  }
+
+  /**
+   * Returns the plan for a Handling used on a child element. Plans of Handling objects from the scope and of shared
+   * default Handling objects returned by {@link #getDefaultHandling(String, String)} are compiled once and shared,
+   * plans of other Handling objects are compiled on every call
+   *
+   * @param childHandling the Handling of the child element
+   * @return {@link HandlingPlan}
+   */
+  public HandlingPlan child(Handling childHandling) {
+
+    HandlingPlan plan = this.children.get(childHandling);
+    if (plan != null) {
+      return plan;
+    }
+    plan = new HandlingPlan(childHandling, this.scope, false, this.namespace, this.provider);
+    if (isShared(childHandling)) {
+      HandlingPlan concurrent = this.children.putIfAbsent(childHandling, plan);
+      if (concurrent != null) {
+        plan = concurrent;
+      }
+    }
+    return plan;
+  }
+
+  /**
+   * Returns the ElementMerger for this plan. It's built once and shared if the generic builder of the
+   * {@link ElementMergerFactory} is used and the provider is the provider of this plan, otherwise a new one is built on
+   * every call
+   *
+   * @param mergeProvider the provider of the merge
+   * @return {@link ElementMerger}
+   */
+  public ElementMerger getMerger(MergeSchemaProvider mergeProvider) {
+
+    if (mergeProvider != this.provider || !ElementMergerFactory.isReusable()) {
+      return ElementMergerFactory.build(this, mergeProvider);
+    }
+    ElementMerger m = this.merger;
+    if (m == null) {
+      m = ElementMergerFactory.build(this, mergeProvider);
+      this.merger = m;
+    }
+    return m;
+  }
+
+  /**
+   * Returns the ElementComparator for the criteria of a Handling used on a child element. It's built once per
+   * equivalence and shared if the generic builder of the {@link ElementComparatorFactory} is used and the Handling is
+   * from the scope or a shared default Handling, otherwise a new one is built on every call
+   *
+   * @param childHandling the Handling of the child element
+   * @param equivalence the {@link NodeEquivalence} of the selected nodes, used by the generic builder only
+   * @return {@link ElementComparator}
+   */
+  public ElementComparator getComparator(Handling childHandling, NodeEquivalence equivalence) {
+
+    if (!ElementComparatorFactory.isReusable() || !isShared(childHandling)) {
+      return ElementComparatorFactory.build(childHandling.getCriterion(), this.provider, equivalence);
+    }
+    ConcurrentMap<Handling, ElementComparator> equivalent = this.comparators.get(equivalence);
+    if (equivalent == null) {
+      equivalent = new ConcurrentHashMap<>();
+      ConcurrentMap<Handling, ElementComparator> concurrent = this.comparators.putIfAbsent(equivalence, equivalent);
+      if (concurrent != null) {
+        equivalent = concurrent;
+      }
+    }
+    ElementComparator comparator = equivalent.get(childHandling);
+    if (comparator == null) {
+      comparator = ElementComparatorFactory.build(childHandling.getCriterion(), this.provider, equivalence);
+      ElementComparator concurrent = equivalent.putIfAbsent(childHandling, comparator);
+      if (concurrent != null) {
+        comparator = concurrent;
+      }
+    }
+    return comparator;
+  }
+
+  /**
+   * Returns the default Handling for child elements without Handling in the scope. As long as the generic builder of
+   * the {@link ElementMergerFactory} is used, the Handling doesn't name the element and is created once per default
+   * criterion, thus the number of shared default Handling objects is bounded by the MergeSchemas. Otherwise a new
+   * Handling naming the element is created on every call
+   *
+   * @param elementName name of the element the Handling will describe
+   * @param elementNamespace the namespace URI whose default criterion is used
+   * @return Handling &lt;Handling for="$name" unique="false">&lt;DefaultCriterion.../>&lt;/>
+   */
+  public Handling getDefaultHandling(String elementName, String elementNamespace) {
+
+    Criterion criterion = this.provider.getDefaultCriterion(elementNamespace);
+    if (!ElementMergerFactory.isReusable()) {
+      Handling handling = new Handling();
+      handling.getCriterion().add(criterion);
+      handling.setFor(elementName);
+      return handling;
+    }
+    String key = criterion.getXpath() + "\n" + criterion.isOrdered();
+    Handling handling = this.defaultHandlings.get(key);
+    if (handling == null) {
+      handling = new Handling();
+      handling.getCriterion().add(criterion);
+      Handling concurrent = this.defaultHandlings.putIfAbsent(key, handling);
+      if (concurrent != null) {
+        handling = concurrent;
+      } else {
+        this.sharedDefaults.add(handling);
+      }
+    }
+    return handling;
+  }
+
+  /**
+   * Checks whether the plan and the comparators of a Handling are shared, i.e. whether it's from the scope or one of
+   * the shared default Handling objects
+   *
+   * @param childHandling the Handling of a child element
+   * @return true if the Handling is shared
+   */
+  private boolean isShared(Handling childHandling) {
+
+    List<Handling> named = this.scopeByName.get(childHandling.getFor());
+    return (named != null && named.contains(childHandling)) || this.sharedDefaults.contains(childHandling);
+  }
+
+  /**
+   * Returns the first Handling of the scope applicable for the given element
+   *
+   * @param element the {@link Element} a Handling is searched for
+   * @return {@link Handling} or null if the scope doesn't contain an applicable Handling
+   * @throws XPathExpressionException if a where-clause can't be evaluated
+   */
+  public Handling findHandling(Element element) throws XPathExpressionException {
+
+    List<Handling> named = this.scopeByName.get(element.getName());
+    if (named == null) {
+      return null;
+    }
+    for (Handling h : named) {
+      boolean applicable;
+      if (this.compilableWheres.contains(h)) {
+        XPathExpression<Object> where = XPathCache.getInstance().compile(h.getWhere());
+        applicable = !where.evaluate(element).contains(false);
+      } else {
+        applicable = ElementMergerImpl.evaluateWhereString(element, h.getWhere());
+      }
+      if (applicable) {
+        return h;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the Attribute rule for the given attribute name
+   *
+   * @param name of the attribute
+   * @return {@link Attribute} or null if the Handling doesn't specify the attribute
+   */
+  public Attribute getAttribute(String name) {
+
+    return this.attributes.get(name);
+  }
+
+  /**
+   * Returns the field 'handling'
+   *
+   * @return value of handling
+   */
+  public Handling getHandling() {
+
+    return this.handling;
+  }
+
+  /**
+   * Returns the field 'referencedNamespace'
+   *
+   * @return value of referencedNamespace. Empty if no scope is referenced
+   */
+  public String getReferencedNamespace() {
+
+    return this.referencedNamespace;
+  }
+
+  /**
+   * Returns the field 'parentScope'
+   *
+   * @return the Handling objects of the parent element's scope. Empty for root handlings
+   */
+  public List<Handling> getParentScope() {
+
+    return this.parentScope;
+  }
+
+  /**
+   * Returns the field 'root'
+   *
+   * @return true if the Handling is used on root elements
+   */
+  public boolean isRoot() {
+
+    return this.root;
+  }
+
+  /**
+   * Returns the field 'scope'
+   *
+   * @return unmodifiable list of the Handling objects which can be used on child elements
+   */
+  public List<Handling> getScope() {
+
+    return this.scope;
+  }
+
+  /**
+   * Creates a list of Handling objects to be used on the child elements of the element this Handling is describing
+   *
+   * @param parentHandlingScope List<Handling> handling List of the parent Handling object
+   * @param ownHandling the Handling object of this object
+   * @return List containing Handling objects
+   */
+  private static List<Handling> createScope(List<Handling> parentHandlingScope, Handling ownHandling) {
+
+    // Identify all Handlings that will be replaced
+    List<Handling> replacement = new LinkedList<>();
+    for (Handling parent : parentHandlingScope) {
+      for (Handling child : ownHandling.getHandling()) {
+        if (parent.getFor().equals(child.getFor()) && parent.getWhere().equals(child.getWhere())) {
+          replacement.add(parent);
+          break;
+        }
+      }
+    }
+
+    // The new scope is based on the old one
+    List<Handling> scope = new LinkedList<>();
+    scope.addAll(parentHandlingScope);
+
+    // Remove the replaced handling objects from the return list
+    for (Handling parent : replacement) {
+      scope.remove(parent);
+    }
+
+    scope.addAll(ownHandling.getHandling());
+    return scope;
+  }
+
+  /**
+   * Creates an Handling scope from another MergeSchema
+   *
+   * @param scopeRef the referenced Handling in another MergeSchema
+   * @param namespaceRef the namespace of the other MergeSchema. If empty the namespace of this plan is used
+   * @return {@link List}&lt;Handling>
+   */
+  private List<Handling> getScopeFromRef(String scopeRef, String namespaceRef) {
+
+    List<Handling> result = new LinkedList<>();
+    // If no namespace is provided it'll be assumed that the reference is located in this MergeSchema
+    if (namespaceRef.equals("")) {
+      namespaceRef = this.namespace;
+    }
+
+    List<Handling> pathToLabeledHandling = recursiveHandlingPath(
+        this.provider.getMergeSchemaForNamespaceURI(namespaceRef), scopeRef);
+    // follow the Handling path and create the scope as in the algorithm would
+    for (Handling h : pathToLabeledHandling) {
+      result = createScope(result, h);
+    }
+    return result;
+  }
+
+  /**
+   * Searches a given Handling tree for an Handling with the given label and return the path to it
+   *
+   * @param handling Handling to be started at
+   * @param label of the required Handling
+   * @return {@link List}&lt;Handling> with the input Handling on top and the required Handling as last element
+   */
+  private static List<Handling> recursiveHandlingPath(Handling handling, String label) {
+
+    List<Handling> result = new LinkedList<>();
+    if (handling.getLabel().equals(label)) { // recursion end
+      result.add(handling);
+      return result;
+    }
+    for (Handling h : handling.getHandling()) {// Recursion
+      List<Handling> recursiveResult = recursiveHandlingPath(h, label);
+      if (recursiveResult.isEmpty()) {
+        continue;
+      }
+      // If the labeled Handling is in the current path add this Handling to the result and append the
+      // recursionResult (which isn't empty since the labeled Handling is in it's path)
+      result.add(h);
+      result.addAll(recursiveResult);
+    }
+
+    return result;
+
+  }
+}
@@ -0,0 +1,80 @@
+package com.github.maybeec.lexeme.merge.element;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.maybeec.lexeme.mergeschema.Handling;
+import com.github.maybeec.lexeme.mergeschema.MergeSchema;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
+
+/**
+ * Immutable, compiled form of a {@link MergeSchema}. Provides the {@link HandlingPlan} for the root element of a
+ * document. A MergePlan is compiled once per MergeSchema and shared by all merges of its namespaces.
+ */
+public final class MergePlan {
+
+  /**
+   * The compiled MergeSchema
+   */
+  private final MergeSchema mergeSchema;
+
+  /**
+   * Plan of the MergeSchema itself. Used if the MergeSchema is a root MergeSchema
+   */
+  private final HandlingPlan rootPlan;
+
+  /**
+   * Plans of the top level Handling objects by element name. Used if the MergeSchema is no root MergeSchema
+   */
+  private final Map<String, HandlingPlan> topLevelPlans;
+
+  /**
+   * Compiles a MergeSchema
+   *
+   * @param mergeSchema the {@link MergeSchema} to be compiled
+   * @param provider {@link MergeSchemaProvider} to resolve scope references
+   */
+  public MergePlan(MergeSchema mergeSchema, MergeSchemaProvider provider) {
+
+    this.mergeSchema = mergeSchema;
+    String namespace = (mergeSchema.getDefinition() == null ? null : mergeSchema.getDefinition().getNamespace());
+    if (mergeSchema.isRoot()) {
+      this.rootPlan = HandlingPlan.compile(mergeSchema, namespace, provider);
+      this.topLevelPlans = Collections.emptyMap();
+    } else {
+      this.rootPlan = null;
+      Map<String, HandlingPlan> plans = new LinkedHashMap<>();
+      for (Handling h : mergeSchema.getHandling()) {
+        // the last Handling for an element name is used
+        plans.put(h.getFor(), HandlingPlan.compile(h, namespace, provider));
+      }
+      this.topLevelPlans = Collections.unmodifiableMap(plans);
+    }
+  }
+
+  /**
+   * Returns the plan to be used for a root element
+   *
+   * @param elementName the name of the root element
+   * @return {@link HandlingPlan} or null if the MergeSchema is no root MergeSchema and doesn't contain a Handling for
+   *         the element
+   */
+  public HandlingPlan getPlanForRoot(String elementName) {
+
+    if (this.rootPlan != null) {
+      return this.rootPlan;
+    }
+    return this.topLevelPlans.get(elementName);
+  }
+
+  /**
+   * Returns the field 'mergeSchema'
+   *
+   * @return value of mergeSchema
+   */
+  public MergeSchema getMergeSchema() {
+
+    return this.mergeSchema;
+  }
+}
@@ -0,0 +1,235 @@
+package com.github.maybeec.lexeme.merge.element;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jdom2.Content;
+import org.jdom2.Element;
+
+import com.github.maybeec.lexeme.common.exception.ElementsCantBeMergedException;
+import com.github.maybeec.lexeme.merge.element.matcher.ElementComparator;
+import com.github.maybeec.lexeme.merge.element.matcher.IndexableElementComparator;
+import com.github.maybeec.lexeme.mergeschema.Criterion;
+import com.github.maybeec.lexeme.mergeschema.Handling;
+
+/**
+ * Hash index over the child elements of a patch element. The index is built lazily per element name, namespace and
+ * criteria and buckets the patch elements by the matching key of an {@link IndexableElementComparator}. Every lookup
+ * returns the same element a sequential search over the remaining patch content would return: the first element in
+ * document order which matches.
+ */
+class PatchIndex {
+
+  /**
+   * Document position of every patch node at construction
+   */
+  private final Map<Content, Integer> positions = new IdentityHashMap<>();
+
+  /**
+   * Patch elements which have already been matched
+   */
+  private final Set<Content> consumed = Collections.newSetFromMap(new IdentityHashMap<Content, Boolean>());
+
+  /**
+   * Number of not yet matched patch elements per namespace URI
+   */
+  private final Map<String, Integer> namespaceCounts = new HashMap<>();
+
+  /**
+   * Buckets per element name, namespace and criteria
+   */
+  private final Map<List<String>, Buckets> buckets = new HashMap<>();
+
+  /**
+   * The patch content in document order
+   */
+  private final List<Content> patchContent;
+
+  /**
+   * Creates a new index for the given patch content
+   *
+   * @param patchContent the patch nodes in document order. Elements have to be consumed through
+   *        {@link #consume(Element)} when they are removed from this list
+   */
+  PatchIndex(List<Content> patchContent) {
+
+    this.patchContent = patchContent;
+    int position = 0;
+    for (Content c : patchContent) {
+      this.positions.put(c, position++);
+      if (c instanceof Element) {
+        String uri = ((Element) c).getNamespaceURI();
+        Integer count = this.namespaceCounts.get(uri);
+        this.namespaceCounts.put(uri, count == null ? 1 : count + 1);
+      }
+    }
+  }
+
+  /**
+   * Checks whether an unmatched patch element exists in the namespace of the given element
+   *
+   * @param element {@link Element} of which the namespace is considered
+   * @return true if at least one unmatched patch element shares the namespace
+   */
+  boolean containsNamespace(Element element) {
+
+    Integer count = this.namespaceCounts.get(element.getNamespaceURI());
+    return count != null && count > 0;
+  }
+
+  /**
+   * Marks the given patch element as matched
+   *
+   * @param element the matched patch element
+   */
+  void consume(Element element) {
+
+    if (this.consumed.add(element)) {
+      String uri = element.getNamespaceURI();
+      this.namespaceCounts.put(uri, this.namespaceCounts.get(uri) - 1);
+    }
+  }
+
+  /**
+   * Returns the first unmatched patch element in the namespace of the given base element
+   *
+   * @param base the base element
+   * @return the first patch {@link Element} sharing the namespace of base, null if there is none
+   */
+  Element findFirstInNamespace(Element base) {
+
+    for (Content c : this.patchContent) {
+      if (c instanceof Element && ((Element) c).getNamespace().equals(base.getNamespace())) {
+        return (Element) c;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the first unmatched patch element which matches the given base element
+   *
+   * @param base the base element
+   * @param handling the {@link Handling} used for the base element
+   * @param comparator the {@link ElementComparator} created from the handling's criteria
+   * @return the first matching patch {@link Element}, null if there is none
+   * @throws ElementsCantBeMergedException if the comparator fails
+   */
+  Element findMatch(Element base, Handling handling, ElementComparator comparator)
+      throws ElementsCantBeMergedException {
+
+    if (comparator instanceof IndexableElementComparator) {
+      IndexableElementComparator indexable = (IndexableElementComparator) comparator;
+      Object key = indexable.getMatchingKey(base);
+      if (key != null) {
+        Buckets b = getBuckets(base, handling.getCriterion(), indexable);
+        Element keyedCandidate = b.firstUnconsumed(key);
+        int limit = (keyedCandidate == null ? Integer.MAX_VALUE : this.positions.get(keyedCandidate));
+        // patch elements which couldn't be keyed have to be compared the usual way if they precede the candidate
+        for (Element unkeyed : b.unkeyed) {
+          if (this.positions.get(unkeyed) > limit) {
+            break;
+          }
+          if (!this.consumed.contains(unkeyed) && comparator.compare(base, unkeyed)) {
+            return unkeyed;
+          }
+        }
+        return keyedCandidate;
+      }
+    }
+    for (Content c : this.patchContent) {
+      if (c instanceof Element) {
+        Element patch = (Element) c;
+        if (base.getNamespace().equals(patch.getNamespace()) && comparator.compare(base, patch)) {
+          return patch;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the buckets for the element name, namespace and criteria, creates them if necessary
+   *
+   * @param base the base element
+   * @param criteria the criteria of the used handling
+   * @param comparator comparator to compute the keys
+   * @return {@link Buckets}
+   */
+  private Buckets getBuckets(Element base, List<Criterion> criteria, IndexableElementComparator comparator) {
+
+    List<String> signature = new LinkedList<>();
+    signature.add(base.getName());
+    signature.add(base.getNamespaceURI());
+    for (Criterion c : criteria) {
+      signature.add(c.getXpath() + "|" + c.isOrdered());
+    }
+    Buckets b = this.buckets.get(signature);
+    if (b == null) {
+      b = new Buckets();
+      for (Content c : this.patchContent) {
+        if (c instanceof Element) {
+          Element patch = (Element) c;
+          if (patch.getName().equals(base.getName()) && patch.getNamespace().equals(base.getNamespace())) {
+            Object key = comparator.getMatchingKey(patch);
+            if (key == null) {
+              b.unkeyed.add(patch);
+            } else {
+              List<Element> bucket = b.keyed.get(key);
+              if (bucket == null) {
+                bucket = new LinkedList<>();
+                b.keyed.put(key, bucket);
+              }
+              bucket.add(patch);
+            }
+          }
+        }
+      }
+      this.buckets.put(signature, b);
+    }
+    return b;
+  }
+
+  /**
+   * The patch elements of one name, namespace and criteria grouped by their matching keys
+   */
+  private class Buckets {
+
+    /**
+     * patch elements per key in document order
+     */
+    private final Map<Object, List<Element>> keyed = new HashMap<>();
+
+    /**
+     * patch elements without a key in document order
+     */
+    private final List<Element> unkeyed = new LinkedList<>();
+
+    /**
+     * Returns the first unmatched element with the given key and drops matched ones on the way
+     *
+     * @param key the matching key
+     * @return {@link Element} or null
+     */
+    private Element firstUnconsumed(Object key) {
+
+      List<Element> bucket = this.keyed.get(key);
+      if (bucket == null) {
+        return null;
+      }
+      while (!bucket.isEmpty()) {
+        Element head = bucket.get(0);
+        if (!PatchIndex.this.consumed.contains(head)) {
+          return head;
+        }
+        bucket.remove(0);
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package com.github.maybeec.lexeme.merge.element;
+
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
+
+/**
+ * An {@link ElementMergerBuilder} which builds ElementMergers from compiled Handling objects. The
+ * {@link ElementMergerFactory} passes the {@link HandlingPlan}s of a merge to builders implementing this interface, other
+ * builders are invoked with the Handling and its scope.
+ */
+public interface PlanElementMergerBuilder extends ElementMergerBuilder {
+
+  /**
+   * Builds and returns an ElementMerger instance for a compiled Handling
+   *
+   * @param plan the {@link HandlingPlan} to be used
+   * @param provider the schema provider
+   * @return ElementMerger
+   */
+  ElementMerger build(HandlingPlan plan, MergeSchemaProvider provider);
+
+}
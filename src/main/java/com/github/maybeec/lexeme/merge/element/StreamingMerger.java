@@ -0,0 +1,486 @@
+package com.github.maybeec.lexeme.merge.element;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.jdom2.CDATA;
+import org.jdom2.Content;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.Namespace;
+import org.jdom2.Text;
+import org.jdom2.input.StAXStreamBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.maybeec.lexeme.ConflictHandlingType;
+import com.github.maybeec.lexeme.common.exception.XMLMergeException;
+import com.github.maybeec.lexeme.merge.element.ElementMergerImpl.MergeState;
+import com.github.maybeec.lexeme.merge.element.ElementMergerImpl.NodeMatch;
+import com.github.maybeec.lexeme.merge.element.matcher.ComparisonCache;
+import com.github.maybeec.lexeme.merge.element.matcher.NodeEquivalence;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
+
+/**
+ * Merges a base file with a patch element and writes the result straight to a {@link Writer}. The base is read twice
+ * with StAX: the first pass matches the children of the base root one after the other with the patch children, the
+ * second pass merges them with their matches and writes them out. Thus only one child of the base root is materialised
+ * at a time, whereas the patch is held in memory. The result equals the one of {@link ElementMergerImpl} for the root
+ * element written with the raw format of {@link org.jdom2.output.XMLOutputter}.
+ */
+public class StreamingMerger implements Closeable {
+
+  /**
+   * Used to log errors, warnings or information about this object or its processes
+   */
+  private static Logger logger = LoggerFactory.getLogger(StreamingMerger.class);
+
+  /**
+   * Property of the JDK StAX implementation enabling CDATA events
+   */
+  private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+  /**
+   * Factory of the StAX readers. Neither coalescing nor loading DTDs
+   */
+  private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+  /**
+   * The base file
+   */
+  private final Path base;
+
+  /**
+   * Charset of the base file
+   */
+  private final Charset charset;
+
+  /**
+   * The MergeSchemaProvider used to provide MergeSchema for given namespaces
+   */
+  private final MergeSchemaProvider provider;
+
+  /**
+   * Reader of the current pass over the base
+   */
+  private BaseReader reader;
+
+  /**
+   * The base root element without content
+   */
+  private final Element root;
+
+  /**
+   * Opens the base file and reads its root element
+   *
+   * @param base the base file
+   * @param charset charset of the base file
+   * @param provider {@link MergeSchemaProvider} to provide the merge process of different namespaces with the used
+   *        mergeSchema object
+   * @throws XMLMergeException if the base can't be read
+   */
+  public StreamingMerger(Path base, Charset charset, MergeSchemaProvider provider) throws XMLMergeException {
+
+    this.base = base;
+    this.charset = charset;
+    this.provider = provider;
+    this.reader = new BaseReader();
+    this.root = this.reader.readRoot();
+  }
+
+  /**
+   * Returns the root element of the base. It has the attributes and namespace declarations but no content of the base
+   * root and can be altered before merging.
+   *
+   * @return the root element of the base
+   */
+  public Element getRoot() {
+
+    return this.root;
+  }
+
+  /**
+   * Checks whether the base declares a document type, which the streaming merge ignores
+   *
+   * @return true if the base has a DOCTYPE declaration
+   */
+  public boolean hasDocType() {
+
+    return this.reader.docType;
+  }
+
+  /**
+   * Merges the base with the patch and writes the result including an XML declaration
+   *
+   * @param rootPlan the {@link HandlingPlan} of the root element
+   * @param patchRoot the root element of the patch. Its content is moved into the result
+   * @param conflictHandling the {@link ConflictHandlingType} of the merge
+   * @param equivalence the {@link NodeEquivalence} of the nodes selected by criteria
+   * @param out the target. It is flushed but not closed
+   * @param encoding the encoding to be declared
+   * @throws XMLMergeException if the documents can't be merged or the base can't be read
+   */
+  public void merge(HandlingPlan rootPlan, Element patchRoot, ConflictHandlingType conflictHandling,
+      NodeEquivalence equivalence, Writer out, String encoding) throws XMLMergeException {
+
+    ElementMergerImpl rootMerger = new ElementMergerImpl(rootPlan, this.provider);
+    // the base children and the patch aren't used after the merge
+    MergeState mergeState = rootMerger.startMerge(this.root, true, equivalence);
+    boolean useBaseText = rootMerger.isUsingBaseText(conflictHandling);
+    boolean usePatchText = rootMerger.isUsingPatchText(conflictHandling);
+    if (!usePatchText) {
+      for (Iterator<Content> iterator = patchRoot.getContent().iterator(); iterator.hasNext();) {
+        if (iterator.next() instanceof Text) {
+          iterator.remove();
+        }
+      }
+    }
+    // the merged root containing placeholders for the base elements
+    Element shape = new Element(this.root.getName(), this.root.getNamespace());
+    rootMerger.mergeAttributes(this.root, patchRoot, shape, conflictHandling, mergeState);
+    List<Content> patchContent = new LinkedList<>(patchRoot.getContent());
+    PatchIndex patchIndex = new PatchIndex(patchContent);
+    Map<Content, NodeMatch> matches = new IdentityHashMap<>();
+
+    try {
+      // first pass: match the base nodes, nodes preceding the first base element are matched once it is known. The
+      // evaluations of the patch nodes are cached for the whole pass, those of a base node are dropped once it is matched
+      List<Content> pending = new LinkedList<>();
+      Element firstBaseElement = null;
+      ComparisonCache.open();
+      try {
+        for (Content node = this.reader.nextChild(); node != null; node = this.reader.nextChild()) {
+          if (node instanceof Text && !useBaseText) {
+            continue;
+          }
+          if (node instanceof Element && firstBaseElement == null) {
+            firstBaseElement = new Element(((Element) node).getName(), ((Element) node).getNamespace());
+            for (Content pendingNode : pending) {
+              matchNode(rootMerger, mergeState, shape, pendingNode, pendingNode, patchContent, patchIndex,
+                  usePatchText);
+            }
+            pending = null;
+          }
+          if (firstBaseElement == null) {
+            pending.add(node);
+          } else if (node instanceof Element) {
+            Element placeholder = new Element(((Element) node).getName(), ((Element) node).getNamespace());
+            matches.put(placeholder,
+                matchNode(rootMerger, mergeState, shape, node, placeholder, patchContent, patchIndex, usePatchText));
+            ComparisonCache.forget((Element) node);
+          } else {
+            matchNode(rootMerger, mergeState, shape, node, node, patchContent, patchIndex, usePatchText);
+          }
+        }
+      } finally {
+        ComparisonCache.close();
+      }
+      this.reader.close();
+
+      if (firstBaseElement == null) {
+        logger.debug("{} is in state EMPTYBASE", this.root.getName());
+        for (Content node : pending) {
+          shape.addContent(node);
+        }
+        shape.addContent(patchRoot.removeContent());
+      } else {
+        String firstMatchableElementFromPatch = null;
+        Element firstPatchElement = patchRoot.getChild(firstBaseElement.getName(), firstBaseElement.getNamespace());
+        if (patchRoot.getChildren().indexOf(firstPatchElement) > 0) {
+          firstMatchableElementFromPatch = firstPatchElement.getName();
+        }
+        patchRoot.removeContent();
+        ElementMergerImpl.addPatchNodes(shape.getContent(), patchContent, firstMatchableElementFromPatch, true);
+        rootMerger.verifyUniqueness(shape, mergeState);
+      }
+
+      // second pass: merge the base elements with their matches and write the result. The merges of the base elements
+      // compare disjoint subtrees, thus the cached evaluations are dropped after each base element
+      this.reader = new BaseReader();
+      this.reader.readRoot();
+      StreamingOutputProcessor processor = new StreamingOutputProcessor(out, encoding);
+      processor.writeStart(shape);
+      ComparisonCache.open();
+      try {
+        for (Content node : shape.getContent()) {
+          NodeMatch match = matches.get(node);
+          if (match == null) {
+            processor.writeContent(node);
+          } else {
+            Element baseElement = this.reader.nextElement();
+            if (match.getPatchElement() != null) {
+              baseElement = rootMerger.mergeMatch(baseElement, match, conflictHandling, mergeState);
+              ComparisonCache.clear();
+            }
+            processor.writeContent(baseElement);
+          }
+        }
+      } finally {
+        ComparisonCache.close();
+      }
+      processor.writeEnd();
+    } catch (IOException e) {
+      throw new XMLMergeException("Couldn't write the merge result: " + e.getMessage(), e);
+    } finally {
+      this.reader.close();
+    }
+  }
+
+  /**
+   * Matches a base node with the patch and adds it followed by the patch text nodes belonging to it to the merged root
+   *
+   * @param rootMerger the merger of the root element
+   * @param mergeState the state of the merge of the root element
+   * @param shape the merged root
+   * @param node the base node
+   * @param resultNode the node to be added for the base node
+   * @param patchContent the patch nodes which haven't been matched
+   * @param patchIndex index over the patchContent
+   * @param usePatchText boolean if the text nodes from the patch document can be used
+   * @return the {@link NodeMatch} of the base node
+   * @throws XMLMergeException if the base node can't be compared
+   */
+  private NodeMatch matchNode(ElementMergerImpl rootMerger, MergeState mergeState, Element shape, Content node,
+      Content resultNode, List<Content> patchContent, PatchIndex patchIndex, boolean usePatchText)
+      throws XMLMergeException {
+
+    NodeMatch match = rootMerger.matchNode(node, patchContent, patchIndex, usePatchText, mergeState);
+    shape.addContent(resultNode);
+    for (Text text : match.getFollowingTexts()) {
+      shape.addContent(text);
+    }
+    return match;
+  }
+
+  @Override
+  public void close() {
+
+    this.reader.close();
+  }
+
+  /**
+   * Creates the factory of the StAX readers
+   *
+   * @return {@link XMLInputFactory}
+   */
+  private static XMLInputFactory createInputFactory() {
+
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    // the JDK implementation reports CDATA sections as characters by default
+    if (factory.isPropertySupported(REPORT_CDATA)) {
+      factory.setProperty(REPORT_CDATA, true);
+    }
+    return factory;
+  }
+
+  /**
+   * Joins adjacent text nodes, as the StAX reader may split texts which are reported at once by SAX
+   *
+   * @param element the element whose content will be joined recursively
+   */
+  private static void joinTexts(Element element) {
+
+    Text previous = null;
+    for (ListIterator<Content> iterator = element.getContent().listIterator(); iterator.hasNext();) {
+      Content node = iterator.next();
+      if (node instanceof Text && !(node instanceof CDATA)) {
+        if (previous != null) {
+          previous.append((Text) node);
+          iterator.remove();
+        } else {
+          previous = (Text) node;
+        }
+      } else {
+        previous = null;
+        if (node instanceof Element) {
+          joinTexts((Element) node);
+        }
+      }
+    }
+  }
+
+  /**
+   * A pass over the children of the base root
+   */
+  private final class BaseReader {
+
+    /**
+     * The underlying character stream
+     */
+    private final Reader in;
+
+    /**
+     * The StAX reader
+     */
+    private final XMLStreamReader stream;
+
+    /**
+     * Builds the children of the base root
+     */
+    private final StAXStreamBuilder builder = new StAXStreamBuilder();
+
+    /**
+     * Whether a DOCTYPE declaration has been read
+     */
+    private boolean docType;
+
+    /**
+     * Whether the reader is closed
+     */
+    private boolean closed;
+
+    /**
+     * Opens the base file
+     *
+     * @throws XMLMergeException if the base can't be opened
+     */
+    BaseReader() throws XMLMergeException {
+
+      try {
+        this.in = Files.newBufferedReader(StreamingMerger.this.base, StreamingMerger.this.charset);
+      } catch (IOException e) {
+        throw new XMLMergeException("Couldn't read " + StreamingMerger.this.base + ": " + e.getMessage(), e);
+      }
+      try {
+        this.stream = INPUT_FACTORY.createXMLStreamReader(this.in);
+      } catch (XMLStreamException e) {
+        close();
+        throw wrap(e);
+      }
+    }
+
+    /**
+     * Reads up to the start tag of the root element
+     *
+     * @return the root element without content
+     * @throws XMLMergeException if the base can't be read
+     */
+    Element readRoot() throws XMLMergeException {
+
+      try {
+        while (this.stream.next() != XMLStreamConstants.START_ELEMENT) {
+          if (this.stream.getEventType() == XMLStreamConstants.DTD) {
+            this.docType = true;
+          }
+        }
+        Element element = new Element(this.stream.getLocalName(),
+            Namespace.getNamespace(this.stream.getPrefix(), this.stream.getNamespaceURI()));
+        for (int i = 0; i < this.stream.getAttributeCount(); i++) {
+          element.setAttribute(this.stream.getAttributeLocalName(i), this.stream.getAttributeValue(i),
+              Namespace.getNamespace(this.stream.getAttributePrefix(i), this.stream.getAttributeNamespace(i)));
+        }
+        for (int i = 0; i < this.stream.getNamespaceCount(); i++) {
+          element.addNamespaceDeclaration(
+              Namespace.getNamespace(this.stream.getNamespacePrefix(i), this.stream.getNamespaceURI(i)));
+        }
+        this.stream.next();
+        return element;
+      } catch (XMLStreamException e) {
+        close();
+        throw wrap(e);
+      }
+    }
+
+    /**
+     * Reads the next child of the root element. Adjacent texts are joined.
+     *
+     * @return the next child, null behind the last one
+     * @throws XMLMergeException if the base can't be read
+     */
+    Content nextChild() throws XMLMergeException {
+
+      try {
+        int event = this.stream.getEventType();
+        if (event == XMLStreamConstants.END_ELEMENT) {
+          return null;
+        }
+        if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE) {
+          StringBuilder text = new StringBuilder(this.stream.getText());
+          event = this.stream.next();
+          while (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE) {
+            text.append(this.stream.getText());
+            event = this.stream.next();
+          }
+          return new Text(text.toString());
+        }
+        Content child = this.builder.fragment(this.stream);
+        if (child instanceof Element) {
+          joinTexts((Element) child);
+        }
+        return child;
+      } catch (XMLStreamException | JDOMException e) {
+        close();
+        throw wrap(e);
+      }
+    }
+
+    /**
+     * Reads the next element child of the root element, skipping other nodes
+     *
+     * @return the next element
+     * @throws XMLMergeException if the base can't be read or has changed since the first pass
+     */
+    Element nextElement() throws XMLMergeException {
+
+      for (Content node = nextChild(); node != null; node = nextChild()) {
+        if (node instanceof Element) {
+          return (Element) node;
+        }
+      }
+      throw new XMLMergeException("The base " + StreamingMerger.this.base + " has been changed during the merge");
+    }
+
+    /**
+     * Wraps an exception of the XML parsing
+     *
+     * @param e the exception
+     * @return {@link XMLMergeException}
+     */
+    private XMLMergeException wrap(Exception e) {
+
+      logger.error("Caught unexcpected {}:{}", e.getClass().getName(), e.getMessage());
+      return new XMLMergeException(e.getMessage(), e);
+    }
+
+    /**
+     * Closes the reader. Further calls have no effect
+     */
+    void close() {
+
+      if (this.closed) {
+        return;
+      }
+      this.closed = true;
+      try {
+        if (this.stream != null) {
+          this.stream.close();
+        }
+      } catch (XMLStreamException e) {
+        logger.warn("Couldn't close the reader of {}: {}", StreamingMerger.this.base, e.getMessage());
+      }
+      try {
+        this.in.close();
+      } catch (IOException e) {
+        logger.warn("Couldn't close {}: {}", StreamingMerger.this.base, e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.github.maybeec.lexeme.merge.element;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+
+import org.jdom2.Attribute;
+import org.jdom2.Content;
+import org.jdom2.Element;
+import org.jdom2.Namespace;
+import org.jdom2.output.Format;
+import org.jdom2.output.support.AbstractXMLOutputProcessor;
+import org.jdom2.output.support.FormatStack;
+import org.jdom2.util.NamespaceStack;
+
+/**
+ * Writes a document piecewise: the start tag of the root element, its content node by node and the end tag. The output
+ * equals the output of {@link org.jdom2.output.XMLOutputter} for the whole document in the raw format, but the content
+ * of the root element doesn't need to be in memory at once.
+ */
+class StreamingOutputProcessor extends AbstractXMLOutputProcessor {
+
+  /**
+   * The target
+   */
+  private final Writer out;
+
+  /**
+   * Format of the output
+   */
+  private final FormatStack fstack;
+
+  /**
+   * Namespaces in scope
+   */
+  private final NamespaceStack nstack = new NamespaceStack();
+
+  /**
+   * The root element
+   */
+  private Element root;
+
+  /**
+   * Whether content has been written into the root element
+   */
+  private boolean hasContent;
+
+  /**
+   * Creates a new processor writing in the raw format
+   *
+   * @param out the target
+   * @param encoding the encoding declared in the XML declaration, escaping characters which can't be encoded
+   */
+  StreamingOutputProcessor(Writer out, String encoding) {
+
+    this.out = out;
+    this.fstack = new FormatStack(Format.getRawFormat().setEncoding(encoding));
+  }
+
+  /**
+   * Writes the XML declaration and the start tag of the root element
+   *
+   * @param rootElement the root element. Its content is ignored
+   * @throws IOException if the output fails
+   */
+  void writeStart(Element rootElement) throws IOException {
+
+    this.root = rootElement;
+    printDeclaration(this.out, this.fstack);
+    this.nstack.push(rootElement);
+    write(this.out, "<");
+    write(this.out, rootElement.getQualifiedName());
+    for (Namespace ns : this.nstack.addedForward()) {
+      printNamespace(this.out, this.fstack, ns);
+    }
+    if (rootElement.hasAttributes()) {
+      for (Attribute attribute : rootElement.getAttributes()) {
+        printAttribute(this.out, this.fstack, attribute);
+      }
+    }
+  }
+
+  /**
+   * Writes a node of the content of the root element
+   *
+   * @param content the node
+   * @throws IOException if the output fails
+   */
+  void writeContent(Content content) throws IOException {
+
+    if (!this.hasContent) {
+      write(this.out, ">");
+      this.hasContent = true;
+    }
+    printContent(this.out, this.fstack, this.nstack,
+        buildWalker(this.fstack, Collections.singletonList(content), true));
+  }
+
+  /**
+   * Writes the end tag of the root element and flushes the output
+   *
+   * @throws IOException if the output fails
+   */
+  void writeEnd() throws IOException {
+
+    if (this.hasContent) {
+      write(this.out, "</");
+      write(this.out, this.root.getQualifiedName());
+      write(this.out, ">");
+    } else {
+      write(this.out, " />");
+    }
+    this.nstack.pop();
+    write(this.out, this.fstack.getLineSeparator());
+    this.out.flush();
+  }
+}
@@ -0,0 +1,213 @@
+package com.github.maybeec.lexeme.merge.element.matcher;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jdom2.Element;
+
+/**
+ * Caches the evaluated criteria, fingerprints and comparison results of elements for the duration of a single merge.
+ * The cache of a merge is bound to the merging thread: it is opened by {@link #open()} before and released by
+ * {@link #close()} after the merge. Nested merges, e.g. of elements of another namespace, share the cache of the
+ * outermost merge. Without an open cache {@link ElementComparatorImpl} doesn't cache anything.
+ * <p>
+ * Entries are bound to the identity of the elements. This is sound as the merge process compares base elements and
+ * patch elements before it changes them, and criteria are evaluated on the subtrees of the compared elements.
+ */
+public final class ComparisonCache {
+
+  /**
+   * The cache of the merge running in the current thread
+   */
+  private static final ThreadLocal<ComparisonCache> current = new ThreadLocal<>();
+
+  /**
+   * Number of nested merges using this cache
+   */
+  private int depth;
+
+  /**
+   * The evaluations by criteria (see {@link ElementComparatorImpl}) and element
+   */
+  private final Map<String, Map<Element, Evaluation>> evaluations = new HashMap<>();
+
+  /**
+   * Creates a new cache
+   */
+  private ComparisonCache() {
+
+  }
+
+  /**
+   * Opens the cache of a merge in the current thread. Every call has to be followed by a call of {@link #close()}
+   */
+  public static void open() {
+
+    ComparisonCache cache = current.get();
+    if (cache == null) {
+      cache = new ComparisonCache();
+      current.set(cache);
+    }
+    cache.depth++;
+  }
+
+  /**
+   * Closes the cache opened by the last call of {@link #open()}. Releases the cache if the outermost merge is finished
+   */
+  public static void close() {
+
+    ComparisonCache cache = current.get();
+    if (cache != null && --cache.depth == 0) {
+      current.remove();
+    }
+  }
+
+  /**
+   * Removes the cached evaluations of an element, e.g. if a streaming merge discards the element. The results of
+   * comparisons with the element as patch element remain cached. Does nothing without an open cache
+   *
+   * @param element the element which won't be compared anymore
+   */
+  public static void forget(Element element) {
+
+    ComparisonCache cache = current.get();
+    if (cache != null) {
+      for (Map<Element, Evaluation> criteriaEvaluations : cache.evaluations.values()) {
+        criteriaEvaluations.remove(element);
+      }
+    }
+  }
+
+  /**
+   * Removes all cached evaluations of the merge running in the current thread, e.g. if a streaming merge continues with
+   * unrelated elements. Does nothing without an open cache
+   */
+  public static void clear() {
+
+    ComparisonCache cache = current.get();
+    if (cache != null) {
+      cache.evaluations.clear();
+    }
+  }
+
+  /**
+   * Returns the cache of the merge running in the current thread
+   *
+   * @return {@link ComparisonCache} or null if no merge is running
+   */
+  static ComparisonCache getCurrent() {
+
+    return current.get();
+  }
+
+  /**
+   * Returns the cached evaluation of criteria for an element
+   *
+   * @param criteria key of the criteria
+   * @param element the evaluated element
+   * @return {@link Evaluation} or null if not cached
+   */
+  Evaluation getEvaluation(String criteria, Element element) {
+
+    Map<Element, Evaluation> criteriaEvaluations = this.evaluations.get(criteria);
+    return criteriaEvaluations == null ? null : criteriaEvaluations.get(element);
+  }
+
+  /**
+   * Caches the evaluation of criteria for an element
+   *
+   * @param criteria key of the criteria
+   * @param element the evaluated element
+   * @param evaluation the evaluation
+   */
+  void putEvaluation(String criteria, Element element, Evaluation evaluation) {
+
+    Map<Element, Evaluation> criteriaEvaluations = this.evaluations.get(criteria);
+    if (criteriaEvaluations == null) {
+      criteriaEvaluations = new IdentityHashMap<>();
+      this.evaluations.put(criteria, criteriaEvaluations);
+    }
+    criteriaEvaluations.put(element, evaluation);
+  }
+
+  /**
+   * The nodes an element's criteria evaluate to, its fingerprint and the results of its comparisons with other elements
+   * by these criteria
+   */
+  static final class Evaluation {
+
+    /**
+     * The evaluated nodes per criterion
+     */
+    private final List<List<Object>> nodes;
+
+    /**
+     * Fingerprint of the nodes. Elements matching by the criteria have equal fingerprints. Null if unknown
+     */
+    private final Object fingerprint;
+
+    /**
+     * Results of the comparisons with patch elements. Created on demand
+     */
+    private Map<Element, Boolean> results;
+
+    /**
+     * Creates a new evaluation
+     *
+     * @param nodes the evaluated nodes per criterion
+     * @param fingerprint the fingerprint of the nodes, null if unknown
+     */
+    Evaluation(List<List<Object>> nodes, Object fingerprint) {
+
+      this.nodes = nodes;
+      this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Returns the field 'nodes'
+     *
+     * @return value of nodes
+     */
+    List<List<Object>> getNodes() {
+
+      return this.nodes;
+    }
+
+    /**
+     * Returns the field 'fingerprint'
+     *
+     * @return value of fingerprint, null if unknown
+     */
+    Object getFingerprint() {
+
+      return this.fingerprint;
+    }
+
+    /**
+     * Returns the result of a former comparison with a patch element
+     *
+     * @param patch the patch element
+     * @return the result or null if not compared yet
+     */
+    Boolean getResult(Element patch) {
+
+      return this.results == null ? null : this.results.get(patch);
+    }
+
+    /**
+     * Caches the result of a comparison with a patch element
+     *
+     * @param patch the patch element
+     * @param result the result of the comparison
+     */
+    void putResult(Element patch, boolean result) {
+
+      if (this.results == null) {
+        this.results = new IdentityHashMap<>();
+      }
+      this.results.put(patch, result);
+    }
+  }
+}
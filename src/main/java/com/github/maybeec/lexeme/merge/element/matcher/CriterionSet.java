@@ -1,13 +1,17 @@
 package com.github.maybeec.lexeme.merge.element.matcher;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import com.github.maybeec.lexeme.mergeschema.Criterion;
 
 /**
  * Node of a tree structure. The tree resembles the Handling tree of a MergeSchema. Each CriterionSet has child nodes, a
- * name for which element it applies and the Criterion elements for an Element with that name
+ * name for which element it applies and the Criterion elements for an Element with that name. The criteria of the whole
+ * subtree are indexed by element name on the first lookup via {@link #findCriteria(String)}, thus the subtree should be
+ * complete by then. Adding a child discards the index of this node.
  */
 public class CriterionSet {
 
@@ -26,6 +30,11 @@ public class CriterionSet {
    */
   private final List<Criterion> criteria;
 
+  /**
+   * The criteria of the subtree by element name. Created on demand
+   */
+  private volatile Map<String, List<Criterion>> index;
+
   /**
    * Constructor
    *
@@ -76,6 +85,57 @@ public class CriterionSet {
   public void addChild(CriterionSet c) {
 
     this.children.add(c);
+    this.index = null;
+  }
+
+  /**
+   * Returns the criteria for elements with the given name. If several nodes of the subtree apply to that name, the
+   * first one in depth-first order wins
+   *
+   * @param elementName name of the element
+   * @return List of Criterion objects or null if no node of the subtree applies to the name
+   * @throws IllegalStateException if the name isn't found before a node without name in depth-first order
+   */
+  public List<Criterion> findCriteria(String elementName) {
+
+    Map<String, List<Criterion>> currentIndex = this.index;
+    if (currentIndex == null) {
+      currentIndex = new HashMap<>();
+      if (!addToIndex(currentIndex, this)) {
+        currentIndex.put(null, null);
+      }
+      this.index = currentIndex;
+    }
+    List<Criterion> result = currentIndex.get(elementName);
+    if (result == null && currentIndex.containsKey(null)) {
+      throw new IllegalStateException("The CriterionSet tree contains a node without name before any node for "
+          + elementName);
+    }
+    return result;
+  }
+
+  /**
+   * Adds the criteria of a subtree to an index in depth-first order, keeping the first criteria per name. Stops at the
+   * first node without name
+   *
+   * @param index the index to fill
+   * @param criterionSet root of the subtree
+   * @return false if a node without name has been found
+   */
+  private static boolean addToIndex(Map<String, List<Criterion>> index, CriterionSet criterionSet) {
+
+    if (criterionSet.getName() == null) {
+      return false;
+    }
+    if (criterionSet.getCriteria() != null && !index.containsKey(criterionSet.getName())) {
+      index.put(criterionSet.getName(), criterionSet.getCriteria());
+    }
+    for (CriterionSet child : criterionSet.getChildren()) {
+      if (!addToIndex(index, child)) {
+        return false;
+      }
+    }
+    return true;
   }
 
 }
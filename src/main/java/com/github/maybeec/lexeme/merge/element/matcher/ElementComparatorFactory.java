@@ -10,7 +10,7 @@ public final class ElementComparatorFactory {
   /**
    * used builder
    */
-  static ElementComparatorBuilder builder = null;
+  static volatile ElementComparatorBuilder builder = null;
 
   /**
    * Sets the field 'builder'.
@@ -38,10 +38,53 @@ public final class ElementComparatorFactory {
    */
   public static ElementComparator build(List<Criterion> criterionList, MergeSchemaProvider provider) {
 
-    if (builder == null) {
-      builder = new GenericElementComparatorBuilder();
+    return getBuilder().build(criterionList, provider);
+  }
+
+  /**
+   * Returns an implementation of an {@link ElementComparator} comparing the selected nodes by the given equivalence if
+   * the generic builder is used. A custom builder decides on the equivalence itself
+   *
+   * @param criterionList list of Criterion objects to be checked against
+   * @param provider MergeSchemaProvider
+   * @param equivalence {@link NodeEquivalence} of the selected nodes
+   * @return ElementComparator
+   */
+  public static ElementComparator build(List<Criterion> criterionList, MergeSchemaProvider provider,
+      NodeEquivalence equivalence) {
+
+    ElementComparatorBuilder b = getBuilder();
+    if (b instanceof GenericElementComparatorBuilder) {
+      return ((GenericElementComparatorBuilder) b).build(criterionList, provider, equivalence);
     }
-    return builder.build(criterionList, provider);
+    return b.build(criterionList, provider);
+  }
+
+  /**
+   * Returns whether the built ElementComparator instances can be shared, i.e. whether the generic builder is used. A
+   * custom builder is invoked for every comparison
+   *
+   * @return true if no custom builder has been set
+   */
+  public static boolean isReusable() {
+
+    ElementComparatorBuilder b = builder;
+    return b == null || b instanceof GenericElementComparatorBuilder;
+  }
+
+  /**
+   * Returns the builder to be used. Initializes a {@link GenericElementComparatorBuilder} if no builder has been set
+   *
+   * @return ElementComparatorBuilder
+   */
+  private static ElementComparatorBuilder getBuilder() {
+
+    ElementComparatorBuilder b = builder;
+    if (b == null) {
+      b = new GenericElementComparatorBuilder();
+      builder = b;
+    }
+    return b;
   }
 
   /**
@@ -55,6 +98,20 @@ public final class ElementComparatorFactory {
       return new ElementComparatorImpl(criterionList, provider);
     }
 
+    /**
+     * Returns an {@link ElementComparatorImpl} comparing the selected nodes by the given equivalence
+     *
+     * @param criterionList list of Criterion objects to be checked against
+     * @param provider MergeSchemaProvider
+     * @param equivalence {@link NodeEquivalence} of the selected nodes
+     * @return ElementComparator
+     */
+    ElementComparator build(List<Criterion> criterionList, MergeSchemaProvider provider,
+        NodeEquivalence equivalence) {
+
+      return new ElementComparatorImpl(criterionList, provider, equivalence);
+    }
+
   }
 
 }
@@ -1,20 +1,23 @@
 package com.github.maybeec.lexeme.merge.element.matcher;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.jdom2.Attribute;
+import org.jdom2.Content;
 import org.jdom2.Element;
-import org.jdom2.xpath.XPathExpression;
-import org.jdom2.xpath.XPathFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.maybeec.lexeme.common.exception.ElementsCantBeMergedException;
-import com.github.maybeec.lexeme.common.util.JDom2Util;
+import com.github.maybeec.lexeme.common.util.XPathCache;
+import com.github.maybeec.lexeme.merge.element.matcher.ComparisonCache.Evaluation;
 import com.github.maybeec.lexeme.mergeschema.Criterion;
 import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
 
-public class ElementComparatorImpl implements ElementComparator {
+public class ElementComparatorImpl implements IndexableElementComparator {
 
   /**
    * Used to log errors, warnings or information about this object or its processes
@@ -32,18 +35,49 @@ public class ElementComparatorImpl implements ElementComparator {
   private MergeSchemaProvider provider;
 
   /**
-   * Initializes the object with a List of Criterion objects used to compare two elements
+   * Equivalence of nodes selected by the criteria which aren't compared via nested criteria
+   */
+  private final NodeEquivalence equivalence;
+
+  /**
+   * Identifies the criteria and the equivalence of this comparator in a {@link ComparisonCache}. Created on demand
+   */
+  private String cacheKey;
+
+  /**
+   * Initializes the object with a List of Criterion objects used to compare two elements. Selected nodes are compared
+   * by {@link NodeEquivalence#SERIALIZED}
    *
    * @param criterionList {@link List}&lt;{@link Criterion}&gt;
    * @param provider provides the matching with namespace dependent information
    */
   public ElementComparatorImpl(List<Criterion> criterionList, MergeSchemaProvider provider) {
 
+    this(criterionList, provider, NodeEquivalence.SERIALIZED);
+  }
+
+  /**
+   * Initializes the object with a List of Criterion objects used to compare two elements
+   *
+   * @param criterionList {@link List}&lt;{@link Criterion}&gt;
+   * @param provider provides the matching with namespace dependent information
+   * @param equivalence {@link NodeEquivalence} of the selected nodes
+   */
+  public ElementComparatorImpl(List<Criterion> criterionList, MergeSchemaProvider provider,
+      NodeEquivalence equivalence) {
+
     this.criterionList = criterionList;
     this.provider = provider;
+    this.equivalence = equivalence;
 
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * During a merge (see {@link ComparisonCache}) the evaluated criteria and the results are cached per element. Elements
+   * with different fingerprints are rejected without comparing their nodes.
+   */
   @Override
   public boolean compare(Element element1, Element element2) throws ElementsCantBeMergedException {
 
@@ -51,7 +85,23 @@ public class ElementComparatorImpl implements ElementComparator {
       return false;
     }
     try {
-      return nodeBasedCompare(element1, element2);
+      ComparisonCache cache = ComparisonCache.getCurrent();
+      if (cache == null) {
+        return nodeBasedCompare(element1, element2);
+      }
+      Evaluation baseEvaluation = getEvaluation(cache, element1);
+      Evaluation patchEvaluation = getEvaluation(cache, element2);
+      if (baseEvaluation.getFingerprint() != null && patchEvaluation.getFingerprint() != null
+          && !baseEvaluation.getFingerprint().equals(patchEvaluation.getFingerprint())) {
+        this.logger.debug("Fingerprints of {} elements differ", element1.getName());
+        return false;
+      }
+      Boolean result = baseEvaluation.getResult(element2);
+      if (result == null) {
+        result = nodeBasedCompare(element1, element2);
+        baseEvaluation.putResult(element2, result);
+      }
+      return result;
     } catch (Exception e) {
       this.logger.debug("Comparison of {} elements failed due to {}:{} | assuming false", element1.getName(),
           e.getClass().getName(), e.getMessage());
@@ -59,6 +109,50 @@ public class ElementComparatorImpl implements ElementComparator {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The key consists of the element name and the evaluated nodes per Criterion, represented by {@link NodeKey}s and
+   * counted for unordered criteria. Thus only comparators using {@link NodeEquivalence#SERIALIZED} provide keys.
+   * Criteria selecting elements are compared via nested criteria and therefore can't be keyed. The same holds for
+   * unordered criteria evaluating to multiple plain values, as {@link #nodeBasedCompare(Element, Element)} tracks those
+   * by value equality.
+   */
+  @Override
+  public Object getMatchingKey(Element element) {
+
+    if (this.equivalence != NodeEquivalence.SERIALIZED) {
+      return null;
+    }
+    List<Object> key;
+    try {
+      key = new ArrayList<>(this.criterionList.size() + 1);
+      key.add(element.getName());
+      List<List<Object>> evaluations = evaluate(element);
+      for (int c = 0; c < this.criterionList.size(); c++) {
+        Criterion criterion = this.criterionList.get(c);
+        List<Object> evaluationList = evaluations.get(c);
+        List<Object> values = new ArrayList<>(evaluationList.size());
+        for (Object node : evaluationList) {
+          if (node instanceof Element) {
+            return null;
+          }
+          if (!criterion.isOrdered() && evaluationList.size() > 1
+              && !(node instanceof Content || node instanceof Attribute)) {
+            return null;
+          }
+          values.add(new NodeKey(node));
+        }
+        key.add(toKeyPart(values, criterion.isOrdered()));
+      }
+    } catch (Exception e) {
+      this.logger.debug("Could not derive a matching key for {} due to {}:{}", element.getName(),
+          e.getClass().getName(), e.getMessage());
+      return null;
+    }
+    return key;
+  }
+
   /**
    * Compares two nodes through their subnodes considering the Criterion list of this Comparator
    *
@@ -70,15 +164,14 @@ public class ElementComparatorImpl implements ElementComparator {
   boolean nodeBasedCompare(Element element1, Element element2) throws ElementsCantBeMergedException {
 
     this.logger.debug("comparing {} with {} via nodes", element1.toString(), element2.toString());
-    XPathFactory factory = XPathFactory.instance();
-    for (Criterion criterion : this.criterionList) {
+    // evaluate the xpath expressions for base and patch
+    List<List<Object>> evaluations1 = evaluate(element1);
+    List<List<Object>> evaluations2 = evaluate(element2);
+    for (int c = 0; c < this.criterionList.size(); c++) {
+      Criterion criterion = this.criterionList.get(c);
       this.logger.debug("Criterion:{} ordered:{}", criterion.getXpath(), criterion.isOrdered());
-      XPathExpression<Object> xpathExpression = null;
-      xpathExpression = factory.compile(criterion.getXpath());
-
-      // evaluate the xpath expression for base and patch
-      List<Object> evaluationList1 = xpathExpression.evaluate(element1);
-      List<Object> evaluationList2 = xpathExpression.evaluate(element2);
+      List<Object> evaluationList1 = evaluations1.get(c);
+      List<Object> evaluationList2 = evaluations2.get(c);
 
       if (evaluationList1.size() != evaluationList2.size()) {
         return false;
@@ -87,28 +180,14 @@ public class ElementComparatorImpl implements ElementComparator {
         for (int i = 0; i < evaluationList1.size(); i++) {
           Object node1 = evaluationList1.get(i);
           Object node2 = evaluationList2.get(i);
-          if (!nodeCompare(node1, node2) && !stringCompare(node1, node2)) {
+          if (!nodeCompare(node1, node2) && !valueCompare(node1, node2)) {
             return false;
           }
         }
-      } else { // check if every node in list1 has a match in list2
-        List<Object> matches = new LinkedList<>();
-        for (int i = 0; i < evaluationList1.size(); i++) {
-          Object baseNode = evaluationList1.get(i);
-          for (int j = 0; j < evaluationList2.size(); j++) {
-            Object patchNode = evaluationList2.get(j);
-            if (nodeCompare(baseNode, patchNode) || stringCompare(baseNode, patchNode)) {
-              if (!matches.contains(patchNode)) {
-                matches.add(patchNode);
-                break;
-              }
-            }
-          }
-        }
-        if (matches.size() != evaluationList2.size()) {
-          this.logger.debug("Not enough matches found");
-          return false;
-        }
+      } else if (!new UnorderedMatcher(this, this.provider, this.equivalence).matches(evaluationList1,
+          evaluationList2)) { // check if every node in list1 has a match in list2
+        this.logger.debug("Not enough matches found");
+        return false;
       }
     }
     // if all conditions are met return true
@@ -118,18 +197,136 @@ public class ElementComparatorImpl implements ElementComparator {
   }
 
   /**
-   * Compares the String representation of either an Element, Text, Document or Attribute
+   * Evaluates the criteria for an element. The result is taken from the {@link ComparisonCache} of the current merge
+   * if present
+   *
+   * @param element the element to evaluate
+   * @return the selected nodes per criterion
+   */
+  private List<List<Object>> evaluate(Element element) {
+
+    ComparisonCache cache = ComparisonCache.getCurrent();
+    if (cache == null) {
+      return evaluateCriteria(element);
+    }
+    return getEvaluation(cache, element).getNodes();
+  }
+
+  /**
+   * Returns the evaluation of the criteria for an element from a {@link ComparisonCache}. Evaluates the criteria if the
+   * cache doesn't contain it yet
+   *
+   * @param cache the cache of the current merge
+   * @param element the element to evaluate
+   * @return {@link Evaluation}
+   */
+  private Evaluation getEvaluation(ComparisonCache cache, Element element) {
+
+    Evaluation evaluation = cache.getEvaluation(getCacheKey(), element);
+    if (evaluation == null) {
+      List<List<Object>> nodes = evaluateCriteria(element);
+      evaluation = new Evaluation(nodes, getFingerprint(nodes));
+      cache.putEvaluation(getCacheKey(), element, evaluation);
+    }
+    return evaluation;
+  }
+
+  /**
+   * Evaluates the xpath expressions of all criteria for an element
+   *
+   * @param element the element to evaluate
+   * @return the selected nodes per criterion
+   */
+  private List<List<Object>> evaluateCriteria(Element element) {
+
+    List<List<Object>> evaluations = new ArrayList<>(this.criterionList.size());
+    for (Criterion criterion : this.criterionList) {
+      evaluations.add(XPathCache.getInstance().compile(criterion.getXpath()).evaluate(element));
+    }
+    return evaluations;
+  }
+
+  /**
+   * Computes the fingerprint of the nodes selected by the criteria. Matching elements have equal fingerprints: plain
+   * nodes are represented by {@link NodeKey}s, elements by their name as they are compared via nested criteria. The
+   * nodes of unordered criteria are counted. Only {@link NodeEquivalence#SERIALIZED} provides fingerprints
+   *
+   * @param nodes the selected nodes per criterion
+   * @return the fingerprint or null if the nodes can't be fingerprinted
+   */
+  private Object getFingerprint(List<List<Object>> nodes) {
+
+    if (this.equivalence != NodeEquivalence.SERIALIZED) {
+      return null;
+    }
+    List<Object> fingerprint = new ArrayList<>(nodes.size());
+    for (int c = 0; c < nodes.size(); c++) {
+      List<Object> values = new ArrayList<>(nodes.get(c).size());
+      for (Object node : nodes.get(c)) {
+        if (node instanceof Element) {
+          values.add(((Element) node).getName());
+        } else if (node instanceof String && ((String) node).startsWith("<")) {
+          // markup may equal the String representation of an element
+          return null;
+        } else {
+          values.add(new NodeKey(node));
+        }
+      }
+      fingerprint.add(toKeyPart(values, this.criterionList.get(c).isOrdered()));
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Represents the nodes selected by a criterion in a matching key or fingerprint. The nodes of unordered criteria are
+   * counted, as their order is insignificant
+   *
+   * @param values the representations of the nodes in document order
+   * @param ordered whether the criterion is ordered
+   * @return the list of representations or, if unordered, the number of occurrences per representation
+   */
+  private static Object toKeyPart(List<Object> values, boolean ordered) {
+
+    if (ordered) {
+      return values;
+    }
+    Map<Object, Integer> counts = new HashMap<>();
+    for (Object value : values) {
+      Integer count = counts.get(value);
+      counts.put(value, count == null ? 1 : count + 1);
+    }
+    return counts;
+  }
+
+  /**
+   * Returns the key identifying the criteria and the equivalence of this comparator in a {@link ComparisonCache}
+   *
+   * @return the key
+   */
+  private String getCacheKey() {
+
+    if (this.cacheKey == null) {
+      StringBuilder key = new StringBuilder(this.equivalence.name());
+      for (Criterion criterion : this.criterionList) {
+        key.append('\n').append(criterion.isOrdered() ? 'o' : 'u').append(criterion.getXpath());
+      }
+      this.cacheKey = key.toString();
+    }
+    return this.cacheKey;
+  }
+
+  /**
+   * Compares two nodes by the {@link NodeEquivalence} of this comparator
    *
-   * @param base {@link Object} (Element, Text, Document or Attribute)
-   * @param patch {@link Object} (Element, Text, Document or Attribute)
-   * @return true iff the String representation of both objects are equal. false otherwise
+   * @param base {@link Object} (Element, Text, Attribute or another XPath result)
+   * @param patch {@link Object} (Element, Text, Attribute or another XPath result)
+   * @return true iff both nodes are equivalent. false otherwise
    */
-  boolean stringCompare(Object base, Object patch) {
+  boolean valueCompare(Object base, Object patch) {
 
-    String baseString = JDom2Util.getInstance().parseString(base);
-    String patchString = JDom2Util.getInstance().parseString(patch);
-    this.logger.debug("{}=?{}:{}", baseString, patchString, baseString.equals(patchString));
-    return baseString.equals(patchString);
+    boolean result = this.equivalence.isEquivalent(base, patch);
+    this.logger.debug("{}=?{}:{}", base, patch, result);
+    return result;
   }
 
   /**
@@ -147,7 +344,7 @@ public class ElementComparatorImpl implements ElementComparator {
       Element baseElement = (Element) base;
       Element patchElement = (Element) patch;
       List<Criterion> criteria = this.provider.getDeepCriterion(baseElement.getName(), baseElement.getNamespaceURI());
-      ElementComparator nestedComparator = ElementComparatorFactory.build(criteria, this.provider);
+      ElementComparator nestedComparator = ElementComparatorFactory.build(criteria, this.provider, this.equivalence);
       boolean nestedResult = nestedComparator.compare(baseElement, patchElement);
       this.logger.debug("Comparing {} with {} as elements: {}", baseElement.getName(), patchElement.getName(),
           nestedResult);
@@ -0,0 +1,21 @@
+package com.github.maybeec.lexeme.merge.element.matcher;
+
+import org.jdom2.Element;
+
+/**
+ * An {@link ElementComparator} which is able to derive a matching key from a single element. Two elements with equal
+ * non-null keys are considered mergeable by {@link #compare(Element, Element)}, two elements with different non-null
+ * keys are not. This allows the merge process to bucket candidates by key instead of comparing every pair.
+ */
+public interface IndexableElementComparator extends ElementComparator {
+
+  /**
+   * Derives the matching key of the given element from the criteria of this comparator
+   *
+   * @param element {@link Element} to derive the key from
+   * @return an {@link Object} implementing equals/hashCode, or <b>null</b> if the criteria can't be keyed for this
+   *         element. In that case the element has to be compared pairwise via {@link #compare(Element, Element)}
+   */
+  public Object getMatchingKey(Element element);
+
+}
@@ -0,0 +1,45 @@
+package com.github.maybeec.lexeme.merge.element.matcher;
+
+import com.github.maybeec.lexeme.common.util.JDom2Util;
+
+/**
+ * Specifies when two nodes selected by a Criterion are equivalent. Elements are compared structurally without
+ * serializing them. Nodes of different or unsupported types (e.g. entity references) fall back to the comparison of
+ * their String representations (see {@link JDom2Util#parseString(Object)}).
+ * <p>
+ * {@link ElementComparatorImpl} uses {@link #SERIALIZED} by default. Another equivalence can be chosen per merger via
+ * {@link com.github.maybeec.lexeme.LeXeMerger#setNodeEquivalence(NodeEquivalence)}, which is passed to the generic
+ * builder of the {@link ElementComparatorFactory}. The comparators built are shared as with the default equivalence.
+ */
+public enum NodeEquivalence {
+
+  /**
+   * Two nodes are equivalent iff their String representations are equal. Prefixes, namespace declarations, the order
+   * of attributes, comments and text are significant. Adjacent Text nodes are treated as one, CDATA sections differ
+   * from Text nodes of the same text
+   */
+  SERIALIZED,
+
+  /**
+   * Namespace-aware and whitespace-normalized: elements are compared by namespace URI and local name, attributes
+   * regardless of their order and prefix, text (including CDATA sections) with normalized whitespace. Comments and
+   * processing instructions are ignored
+   */
+  NORMALIZED;
+
+  /**
+   * Checks whether two nodes are equivalent
+   *
+   * @param base node from the base (Element, Text, Attribute, Comment or an XPath result value)
+   * @param patch node from the patch (Element, Text, Attribute, Comment or an XPath result value)
+   * @return true if the nodes are equivalent
+   */
+  public boolean isEquivalent(Object base, Object patch) {
+
+    int result = StructuralComparison.getInstance().compare(base, patch, this == NORMALIZED);
+    if (result == StructuralComparison.UNDECIDED) {
+      return JDom2Util.getInstance().parseString(base).equals(JDom2Util.getInstance().parseString(patch));
+    }
+    return result == StructuralComparison.EQUAL;
+  }
+}
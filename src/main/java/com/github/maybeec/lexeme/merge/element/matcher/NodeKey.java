@@ -0,0 +1,85 @@
+package com.github.maybeec.lexeme.merge.element.matcher;
+
+import org.jdom2.Attribute;
+import org.jdom2.Comment;
+import org.jdom2.Text;
+
+import com.github.maybeec.lexeme.common.util.JDom2Util;
+
+/**
+ * Represents a node selected by a Criterion, which isn't an element, in keys and fingerprints. Two keys are equal iff
+ * their nodes are of the same type and equivalent according to {@link NodeEquivalence#SERIALIZED}. A key holds the
+ * parts of the node compared by {@link StructuralComparison} at the time of its creation, thus text, attributes,
+ * comments and XPath result values aren't serialized. Other nodes are represented by their String representations (see
+ * {@link JDom2Util#parseString(Object)}).
+ */
+final class NodeKey {
+
+  /**
+   * Type of the node
+   */
+  private final Class<?> type;
+
+  /**
+   * Name of an attribute, null for other nodes
+   */
+  private final String name;
+
+  /**
+   * Text or value of the node
+   */
+  private final Object value;
+
+  /**
+   * Creates a new key
+   *
+   * @param node the represented node, not an element
+   */
+  NodeKey(Object node) {
+
+    this.type = node.getClass();
+    if (node instanceof Text) {
+      this.name = null;
+      this.value = ((Text) node).getText();
+    } else if (node instanceof Attribute) {
+      this.name = ((Attribute) node).getName();
+      this.value = ((Attribute) node).getValue();
+    } else if (node instanceof Comment) {
+      this.name = null;
+      this.value = ((Comment) node).getText();
+    } else if (node instanceof String || node instanceof Double || node instanceof Boolean) {
+      this.name = null;
+      this.value = node;
+    } else {
+      this.name = null;
+      this.value = JDom2Util.getInstance().parseString(node);
+    }
+  }
+
+  @Override
+  public int hashCode() {
+
+    int hash = 31 * this.type.hashCode() + this.value.hashCode();
+    return this.name == null ? hash : 31 * hash + this.name.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof NodeKey)) {
+      return false;
+    }
+    NodeKey other = (NodeKey) obj;
+    return this.type == other.type && this.value.equals(other.value)
+        && (this.name == null ? other.name == null : this.name.equals(other.name));
+  }
+
+  @Override
+  public String toString() {
+
+    return this.name == null ? String.valueOf(this.value) : this.name + "=\"" + this.value + "\"";
+  }
+}
@@ -0,0 +1,627 @@
+package com.github.maybeec.lexeme.merge.element.matcher;
+
+import java.util.List;
+
+import org.jdom2.Attribute;
+import org.jdom2.Comment;
+import org.jdom2.Content;
+import org.jdom2.Content.CType;
+import org.jdom2.Element;
+import org.jdom2.Namespace;
+import org.jdom2.Text;
+import org.jdom2.Verifier;
+
+/**
+ * Compares two nodes by walking them in lockstep, stopping at the first difference. Implements the
+ * {@link NodeEquivalence}s without building Strings. Keeps the namespace scope and text cursors of a comparison,
+ * therefore every thread uses its own instance via {@link #getInstance()}.
+ * <p>
+ * The {@link NodeEquivalence#SERIALIZED} comparison reproduces the output of the raw format of
+ * {@link org.jdom2.output.XMLOutputter}: namespace declarations are emitted for namespaces which aren't in scope yet
+ * (see {@link org.jdom2.util.NamespaceStack}), empty elements differ from elements with content, text is escaped
+ * character by character and thus compared unescaped.
+ */
+final class StructuralComparison {
+
+  /**
+   * Result: the nodes aren't equivalent
+   */
+  static final int DIFFERENT = 0;
+
+  /**
+   * Result: the nodes are equivalent
+   */
+  static final int EQUAL = 1;
+
+  /**
+   * Result: the nodes contain content which isn't compared structurally
+   */
+  static final int UNDECIDED = 2;
+
+  /**
+   * The instance of the current thread
+   */
+  private static final ThreadLocal<StructuralComparison> instances = new ThreadLocal<StructuralComparison>() {
+
+    @Override
+    protected StructuralComparison initialValue() {
+
+      return new StructuralComparison();
+    }
+  };
+
+  /**
+   * Namespaces in scope of the currently compared elements, innermost last
+   */
+  private Namespace[] scope = new Namespace[16];
+
+  /**
+   * Number of namespaces in {@link #scope}
+   */
+  private int scopeSize;
+
+  /**
+   * Whether the current comparison is {@link NodeEquivalence#NORMALIZED}
+   */
+  private boolean normalized;
+
+  /**
+   * Cursor over the text of the base
+   */
+  private final TextRun baseRun = new TextRun();
+
+  /**
+   * Cursor over the text of the patch
+   */
+  private final TextRun patchRun = new TextRun();
+
+  /**
+   * Creates a new instance
+   */
+  private StructuralComparison() {
+
+  }
+
+  /**
+   * Returns the instance of the current thread
+   *
+   * @return {@link StructuralComparison}
+   */
+  static StructuralComparison getInstance() {
+
+    return instances.get();
+  }
+
+  /**
+   * Compares two nodes
+   *
+   * @param base node from the base
+   * @param patch node from the patch
+   * @param normalizedComparison true for {@link NodeEquivalence#NORMALIZED}, false for
+   *        {@link NodeEquivalence#SERIALIZED}
+   * @return {@link #EQUAL}, {@link #DIFFERENT} or {@link #UNDECIDED} if the nodes have to be compared by their String
+   *         representations
+   */
+  int compare(Object base, Object patch, boolean normalizedComparison) {
+
+    this.normalized = normalizedComparison;
+    if (base instanceof Element && patch instanceof Element) {
+      this.scopeSize = 0;
+      declare(Namespace.NO_NAMESPACE);
+      declare(Namespace.XML_NAMESPACE);
+      return compareElements((Element) base, (Element) patch);
+    }
+    if (base instanceof Text && patch instanceof Text) {
+      Text baseText = (Text) base;
+      Text patchText = (Text) patch;
+      if (this.normalized) {
+        this.baseRun.init(baseText.getText());
+        this.patchRun.init(patchText.getText());
+        return compareRuns();
+      }
+      return result(baseText.getCType() == patchText.getCType() && baseText.getText().equals(patchText.getText()));
+    }
+    if (base instanceof Attribute && patch instanceof Attribute) {
+      Attribute baseAttribute = (Attribute) base;
+      Attribute patchAttribute = (Attribute) patch;
+      return result(baseAttribute.getName().equals(patchAttribute.getName())
+          && baseAttribute.getValue().equals(patchAttribute.getValue())
+          && (!this.normalized || baseAttribute.getNamespaceURI().equals(patchAttribute.getNamespaceURI())));
+    }
+    if (base instanceof Comment && patch instanceof Comment) {
+      return result(((Comment) base).getText().equals(((Comment) patch).getText()));
+    }
+    if ((base instanceof String || base instanceof Double || base instanceof Boolean)
+        && base.getClass() == patch.getClass()) {
+      return result(base.equals(patch));
+    }
+    return UNDECIDED;
+  }
+
+  /**
+   * Compares two elements and their descendants
+   *
+   * @param base element of the base
+   * @param patch element of the patch
+   * @return {@link #EQUAL}, {@link #DIFFERENT} or {@link #UNDECIDED}
+   */
+  private int compareElements(Element base, Element patch) {
+
+    if (!base.getName().equals(patch.getName())) {
+      return DIFFERENT;
+    }
+    if (this.normalized) {
+      if (!base.getNamespaceURI().equals(patch.getNamespaceURI()) || !compareAttributesUnordered(base, patch)) {
+        return DIFFERENT;
+      }
+      return compareContent(base, patch);
+    }
+
+    if (!base.getNamespacePrefix().equals(patch.getNamespacePrefix())) {
+      return DIFFERENT;
+    }
+    int outerScopeSize = this.scopeSize;
+    try {
+      if (!declareNamespaces(base, patch) || !compareAttributesOrdered(base, patch)) {
+        return DIFFERENT;
+      }
+      // an element without content is serialized as empty element tag, even if its content is serialized to nothing
+      if ((base.getContentSize() == 0) != (patch.getContentSize() == 0)) {
+        return DIFFERENT;
+      }
+      return compareContent(base, patch);
+    } finally {
+      this.scopeSize = outerScopeSize;
+    }
+  }
+
+  /**
+   * Compares the attributes of two elements in their order, as serialized
+   *
+   * @param base element of the base
+   * @param patch element of the patch
+   * @return true if the attributes are equal
+   */
+  private boolean compareAttributesOrdered(Element base, Element patch) {
+
+    if (base.getAttributesSize() != patch.getAttributesSize()) {
+      return false;
+    }
+    if (!base.hasAttributes()) {
+      return true;
+    }
+    List<Attribute> baseAttributes = base.getAttributes();
+    List<Attribute> patchAttributes = patch.getAttributes();
+    for (int i = 0; i < baseAttributes.size(); i++) {
+      Attribute baseAttribute = baseAttributes.get(i);
+      Attribute patchAttribute = patchAttributes.get(i);
+      // the namespace URIs are equal if the prefixes are, as the namespace declarations have been compared before
+      if (!baseAttribute.getName().equals(patchAttribute.getName())
+          || !baseAttribute.getNamespacePrefix().equals(patchAttribute.getNamespacePrefix())
+          || !baseAttribute.getValue().equals(patchAttribute.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compares the attributes of two elements by namespace URI and local name, regardless of their order
+   *
+   * @param base element of the base
+   * @param patch element of the patch
+   * @return true if both elements have the same attributes with the same values
+   */
+  private boolean compareAttributesUnordered(Element base, Element patch) {
+
+    if (base.getAttributesSize() != patch.getAttributesSize()) {
+      return false;
+    }
+    if (!base.hasAttributes()) {
+      return true;
+    }
+    for (Attribute baseAttribute : base.getAttributes()) {
+      Attribute patchAttribute = patch.getAttribute(baseAttribute.getName(), baseAttribute.getNamespace());
+      if (patchAttribute == null || !baseAttribute.getValue().equals(patchAttribute.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compares the content lists of two elements. Adjacent text is compared as one run, empty runs are skipped
+   *
+   * @param base element of the base
+   * @param patch element of the patch
+   * @return {@link #EQUAL}, {@link #DIFFERENT} or {@link #UNDECIDED}
+   */
+  private int compareContent(Element base, Element patch) {
+
+    int baseSize = base.getContentSize();
+    int patchSize = patch.getContentSize();
+    int i = 0;
+    int j = 0;
+    while (true) {
+      i = skipEmptyRun(base, i, this.baseRun);
+      j = skipEmptyRun(patch, j, this.patchRun);
+      if (i == baseSize || j == patchSize) {
+        return result(i == baseSize && j == patchSize);
+      }
+      Content baseContent = base.getContent(i);
+      Content patchContent = patch.getContent(j);
+      if (!isComparable(baseContent) || !isComparable(patchContent)) {
+        return UNDECIDED;
+      }
+      boolean baseRunStart = isRunContent(baseContent);
+      if (baseRunStart != isRunContent(patchContent)) {
+        return DIFFERENT;
+      }
+      if (baseRunStart) {
+        i = this.baseRun.init(base, i);
+        j = this.patchRun.init(patch, j);
+        if (compareRuns() == DIFFERENT) {
+          return DIFFERENT;
+        }
+        continue;
+      }
+      CType type = baseContent.getCType();
+      if (type != patchContent.getCType()) {
+        return DIFFERENT;
+      }
+      int result;
+      if (type == CType.Element) {
+        result = compareElements((Element) baseContent, (Element) patchContent);
+      } else {
+        // CDATA section or comment
+        result = result(baseContent.getValue().equals(patchContent.getValue()));
+      }
+      if (result != EQUAL) {
+        return result;
+      }
+      i++;
+      j++;
+    }
+  }
+
+  /**
+   * Compares the runs of {@link #baseRun} and {@link #patchRun} character by character
+   *
+   * @return {@link #EQUAL} or {@link #DIFFERENT}
+   */
+  private int compareRuns() {
+
+    int c;
+    do {
+      c = this.baseRun.next();
+      if (c != this.patchRun.next()) {
+        return DIFFERENT;
+      }
+    } while (c >= 0);
+    return EQUAL;
+  }
+
+  /**
+   * Skips the run of text starting at the given index if it has no (significant) text
+   *
+   * @param parent element containing the run
+   * @param index index of the content to start with
+   * @param run cursor used to read the run
+   * @return index of the first content after the run if the run is empty, the given index otherwise
+   */
+  private int skipEmptyRun(Element parent, int index, TextRun run) {
+
+    if (index == parent.getContentSize() || !isRunContent(parent.getContent(index))) {
+      return index;
+    }
+    int end = run.init(parent, index);
+    return run.next() < 0 ? end : index;
+  }
+
+  /**
+   * Checks whether a content belongs to a run of text
+   *
+   * @param content the content
+   * @return true for Text nodes and, if normalized, also for CDATA sections, comments and processing instructions
+   */
+  private boolean isRunContent(Content content) {
+
+    switch (content.getCType()) {
+      case Text:
+        return true;
+      case CDATA:
+      case Comment:
+      case ProcessingInstruction:
+        return this.normalized;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Checks whether a content is compared structurally
+   *
+   * @param content the content
+   * @return true for elements, text, CDATA sections, comments and, if normalized, processing instructions
+   */
+  private boolean isComparable(Content content) {
+
+    switch (content.getCType()) {
+      case Element:
+      case Text:
+      case CDATA:
+      case Comment:
+        return true;
+      default:
+        return isRunContent(content);
+    }
+  }
+
+  /**
+   * Declares the namespaces the base element adds to the scope and checks that the patch element adds the same ones,
+   * emulating {@link org.jdom2.util.NamespaceStack#push(Element)}
+   *
+   * @param base element of the base
+   * @param patch element of the patch
+   * @return true if both elements declare the same namespaces
+   */
+  private boolean declareNamespaces(Element base, Element patch) {
+
+    int outerScopeSize = this.scopeSize;
+    int baseCount = countNamespaceCandidates(base);
+    for (int i = 0; i < baseCount; i++) {
+      Namespace namespace = getNamespaceCandidate(base, i);
+      if (namespace != null && !isInScope(namespace, outerScopeSize) && indexOf(namespace, outerScopeSize) < 0) {
+        declare(namespace);
+      }
+    }
+    // every namespace added by the patch has been added by the base ...
+    int patchCount = countNamespaceCandidates(patch);
+    for (int i = 0; i < patchCount; i++) {
+      Namespace namespace = getNamespaceCandidate(patch, i);
+      if (namespace != null && !isInScope(namespace, outerScopeSize) && indexOf(namespace, outerScopeSize) < 0) {
+        return false;
+      }
+    }
+    // ... and vice versa
+    for (int k = outerScopeSize; k < this.scopeSize; k++) {
+      boolean found = false;
+      for (int i = 0; i < patchCount && !found; i++) {
+        found = getNamespaceCandidate(patch, i) == this.scope[k];
+      }
+      if (!found) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of namespaces an element may add to the scope
+   *
+   * @param element the element
+   * @return 1 for the namespace of the element plus its additional namespaces plus its attributes
+   */
+  private static int countNamespaceCandidates(Element element) {
+
+    int additional = element.hasAdditionalNamespaces() ? element.getAdditionalNamespaces().size() : 0;
+    return 1 + additional + element.getAttributesSize();
+  }
+
+  /**
+   * Returns a namespace an element may add to the scope
+   *
+   * @param element the element
+   * @param index index of the candidate, see {@link #countNamespaceCandidates(Element)}
+   * @return the {@link Namespace} or null if the candidate doesn't add a namespace
+   */
+  private static Namespace getNamespaceCandidate(Element element, int index) {
+
+    if (index == 0) {
+      return element.getNamespace();
+    }
+    int additional = element.hasAdditionalNamespaces() ? element.getAdditionalNamespaces().size() : 0;
+    if (index <= additional) {
+      return element.getAdditionalNamespaces().get(index - 1);
+    }
+    Namespace namespace = element.getAttributes().get(index - 1 - additional).getNamespace();
+    return namespace == Namespace.NO_NAMESPACE ? null : namespace;
+  }
+
+  /**
+   * Checks whether a namespace is in scope, i.e. its prefix is bound to it
+   *
+   * @param namespace the namespace
+   * @param limit number of declarations of {@link #scope} to consider
+   * @return true if the innermost declaration of the prefix is the given namespace
+   */
+  private boolean isInScope(Namespace namespace, int limit) {
+
+    for (int k = limit - 1; k >= 0; k--) {
+      if (this.scope[k].getPrefix().equals(namespace.getPrefix())) {
+        return this.scope[k] == namespace;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the index of a namespace declared at the current element
+   *
+   * @param namespace the namespace
+   * @param start number of declarations of the enclosing elements
+   * @return the index in {@link #scope} or -1 if not declared at the current element
+   */
+  private int indexOf(Namespace namespace, int start) {
+
+    for (int k = start; k < this.scopeSize; k++) {
+      if (this.scope[k] == namespace) {
+        return k;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Adds a namespace to the scope
+   *
+   * @param namespace the namespace
+   */
+  private void declare(Namespace namespace) {
+
+    if (this.scopeSize == this.scope.length) {
+      Namespace[] grown = new Namespace[this.scope.length * 2];
+      System.arraycopy(this.scope, 0, grown, 0, this.scopeSize);
+      this.scope = grown;
+    }
+    this.scope[this.scopeSize++] = namespace;
+  }
+
+  /**
+   * Converts a boolean to a result
+   *
+   * @param equal whether the nodes are equal
+   * @return {@link #EQUAL} or {@link #DIFFERENT}
+   */
+  private static int result(boolean equal) {
+
+    return equal ? EQUAL : DIFFERENT;
+  }
+
+  /**
+   * Cursor over the characters of adjacent text contents, optionally with normalized whitespace (see
+   * {@link Text#normalizeString(String)})
+   */
+  private final class TextRun {
+
+    /**
+     * Element containing the run. Null if the cursor iterates a single String
+     */
+    private Element parent;
+
+    /**
+     * Index of the next content of the run
+     */
+    private int index;
+
+    /**
+     * Index of the first content after the run
+     */
+    private int end;
+
+    /**
+     * Text of the current content
+     */
+    private String text;
+
+    /**
+     * Index of the next character of {@link #text}
+     */
+    private int offset;
+
+    /**
+     * Character to return by the next call of {@link #next()}, -1 if none
+     */
+    private int lookahead;
+
+    /**
+     * Whether a non-whitespace character has been returned, only used if normalized
+     */
+    private boolean started;
+
+    /**
+     * Starts iterating the run beginning at the given content
+     *
+     * @param runParent element containing the run
+     * @param start index of the first content of the run
+     * @return index of the first content after the run
+     */
+    int init(Element runParent, int start) {
+
+      reset();
+      this.parent = runParent;
+      this.index = start;
+      this.end = start;
+      int size = runParent.getContentSize();
+      while (this.end < size && isRunContent(runParent.getContent(this.end))) {
+        this.end++;
+      }
+      return this.end;
+    }
+
+    /**
+     * Starts iterating a single String
+     *
+     * @param string the String
+     */
+    void init(String string) {
+
+      reset();
+      this.text = string;
+    }
+
+    /**
+     * Resets the position of the cursor
+     */
+    private void reset() {
+
+      this.parent = null;
+      this.index = 0;
+      this.end = 0;
+      this.text = null;
+      this.offset = 0;
+      this.lookahead = -1;
+      this.started = false;
+    }
+
+    /**
+     * Returns the next character of the run
+     *
+     * @return the character or -1 at the end of the run
+     */
+    int next() {
+
+      if (this.lookahead >= 0) {
+        int c = this.lookahead;
+        this.lookahead = -1;
+        return c;
+      }
+      int c = nextRaw();
+      if (!StructuralComparison.this.normalized) {
+        return c;
+      }
+      boolean whitespace = false;
+      while (c >= 0 && Verifier.isXMLWhitespace((char) c)) {
+        whitespace = true;
+        c = nextRaw();
+      }
+      if (c < 0) {
+        return -1;
+      }
+      if (whitespace && this.started) {
+        this.lookahead = c;
+        return ' ';
+      }
+      this.started = true;
+      return c;
+    }
+
+    /**
+     * Returns the next character of the run as is
+     *
+     * @return the character or -1 at the end of the run
+     */
+    private int nextRaw() {
+
+      while (this.text == null || this.offset == this.text.length()) {
+        if (this.parent == null || this.index == this.end) {
+          return -1;
+        }
+        Content content = this.parent.getContent(this.index++);
+        this.text = content instanceof Text ? ((Text) content).getText() : null;
+        this.offset = 0;
+      }
+      return this.text.charAt(this.offset++);
+    }
+  }
+}
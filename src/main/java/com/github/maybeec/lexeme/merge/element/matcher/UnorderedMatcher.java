@@ -0,0 +1,385 @@
+package com.github.maybeec.lexeme.merge.element.matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jdom2.Attribute;
+import org.jdom2.Content;
+import org.jdom2.Element;
+
+import com.github.maybeec.lexeme.common.exception.ElementsCantBeMergedException;
+import com.github.maybeec.lexeme.common.util.JDom2Util;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
+
+/**
+ * Matches the nodes selected by an unordered Criterion from the base against those selected from the patch. Every base
+ * node is matched in order with the first unmatched equivalent patch node, the criterion is fulfilled iff every patch
+ * node is matched. Instead of comparing every pair of nodes
+ * <ul>
+ * <li>text nodes and attributes are counted by their String representations (see
+ * {@link JDom2Util#parseString(Object)}) if nodes are compared by {@link NodeEquivalence#SERIALIZED} and</li>
+ * <li>elements are compared only with patch elements of the same name, bucketed by the matching keys of the nested
+ * comparators (see {@link IndexableElementComparator}) where possible.</li>
+ * </ul>
+ * Other node lists, e.g. mixing elements and text or containing several plain XPath values, are compared pairwise.
+ */
+class UnorderedMatcher {
+
+  /**
+   * The comparator of the criterion, used to compare two nodes
+   */
+  private final ElementComparatorImpl comparator;
+
+  /**
+   * Provides the nested criteria of selected elements
+   */
+  private final MergeSchemaProvider provider;
+
+  /**
+   * Equivalence of the selected nodes
+   */
+  private final NodeEquivalence equivalence;
+
+  /**
+   * Creates a new matcher
+   *
+   * @param comparator comparator of the criterion
+   * @param provider provides the nested criteria of selected elements
+   * @param equivalence equivalence of the selected nodes
+   */
+  UnorderedMatcher(ElementComparatorImpl comparator, MergeSchemaProvider provider, NodeEquivalence equivalence) {
+
+    this.comparator = comparator;
+    this.provider = provider;
+    this.equivalence = equivalence;
+  }
+
+  /**
+   * Checks whether every node of both lists has a match in the other list
+   *
+   * @param baseNodes the nodes selected from the base
+   * @param patchNodes the nodes selected from the patch, of the same size as baseNodes
+   * @return true if all nodes match
+   * @throws ElementsCantBeMergedException when selected elements can't be compared
+   */
+  boolean matches(List<Object> baseNodes, List<Object> patchNodes) throws ElementsCantBeMergedException {
+
+    if (baseNodes.size() > 1) {
+      if (this.equivalence == NodeEquivalence.SERIALIZED && containsOnlyPlainNodes(baseNodes)
+          && containsOnlyPlainNodes(patchNodes)) {
+        return countMatches(baseNodes, patchNodes);
+      }
+      if (containsOnlyElements(baseNodes) && containsOnlyElements(patchNodes)) {
+        return new ElementMatching(patchNodes).matches(baseNodes);
+      }
+    }
+    return pairwiseMatches(baseNodes, patchNodes);
+  }
+
+  /**
+   * Matches the nodes by comparing them pairwise
+   *
+   * @param baseNodes the nodes selected from the base
+   * @param patchNodes the nodes selected from the patch
+   * @return true if all nodes match
+   * @throws ElementsCantBeMergedException when selected elements can't be compared
+   */
+  private boolean pairwiseMatches(List<Object> baseNodes, List<Object> patchNodes)
+      throws ElementsCantBeMergedException {
+
+    List<Object> matches = new LinkedList<>();
+    for (Object baseNode : baseNodes) {
+      for (Object patchNode : patchNodes) {
+        if (this.comparator.nodeCompare(baseNode, patchNode) || this.comparator.valueCompare(baseNode, patchNode)) {
+          if (!matches.contains(patchNode)) {
+            matches.add(patchNode);
+            break;
+          }
+        }
+      }
+    }
+    return matches.size() == patchNodes.size();
+  }
+
+  /**
+   * Matches text nodes and attributes by counting their String representations. As the equivalence of such nodes is
+   * transitive, the greedy matching succeeds iff both lists contain the same representations equally often
+   *
+   * @param baseNodes the nodes selected from the base
+   * @param patchNodes the nodes selected from the patch
+   * @return true if all nodes match
+   */
+  private boolean countMatches(List<Object> baseNodes, List<Object> patchNodes) {
+
+    Map<String, Integer> counts = new HashMap<>();
+    for (Object patchNode : patchNodes) {
+      String value = JDom2Util.getInstance().parseString(patchNode);
+      Integer count = counts.get(value);
+      counts.put(value, count == null ? 1 : count + 1);
+    }
+    for (Object baseNode : baseNodes) {
+      String value = JDom2Util.getInstance().parseString(baseNode);
+      Integer count = counts.get(value);
+      if (count == null) {
+        return false;
+      }
+      if (count == 1) {
+        counts.remove(value);
+      } else {
+        counts.put(value, count - 1);
+      }
+    }
+    return counts.isEmpty();
+  }
+
+  /**
+   * Checks whether a list contains only nodes which aren't elements. Plain XPath values are tracked by value equality
+   * during the pairwise matching and thus aren't supported
+   *
+   * @param nodes the selected nodes
+   * @return true if all nodes are text nodes, comments or attributes
+   */
+  private boolean containsOnlyPlainNodes(List<Object> nodes) {
+
+    for (Object node : nodes) {
+      if (node instanceof Element || !(node instanceof Content || node instanceof Attribute)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether a list contains only elements
+   *
+   * @param nodes the selected nodes
+   * @return true if all nodes are elements
+   */
+  private boolean containsOnlyElements(List<Object> nodes) {
+
+    for (Object node : nodes) {
+      if (!(node instanceof Element)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Matching of selected base elements with selected patch elements. Elements only match elements of the same name.
+   * Equivalent elements have equal matching keys, thus a base element matches the first unmatched patch element with
+   * its key unless an unkeyed patch element preceding it matches
+   */
+  private class ElementMatching {
+
+    /**
+     * Position of every patch element
+     */
+    private final Map<Element, Integer> positions = new IdentityHashMap<>();
+
+    /**
+     * Patch elements which have already been matched
+     */
+    private final Set<Element> matched = Collections.newSetFromMap(new IdentityHashMap<Element, Boolean>());
+
+    /**
+     * Patch elements per name in document order
+     */
+    private final Map<String, List<Element>> byName = new HashMap<>();
+
+    /**
+     * Patch elements per name and namespace of the base elements, bucketed by key
+     */
+    private final Map<List<String>, Buckets> buckets = new HashMap<>();
+
+    /**
+     * Creates the matching for the given patch elements
+     *
+     * @param patchNodes the elements selected from the patch
+     */
+    ElementMatching(List<Object> patchNodes) {
+
+      for (Object node : patchNodes) {
+        Element patch = (Element) node;
+        this.positions.put(patch, this.positions.size());
+        List<Element> named = this.byName.get(patch.getName());
+        if (named == null) {
+          named = new ArrayList<>();
+          this.byName.put(patch.getName(), named);
+        }
+        named.add(patch);
+      }
+    }
+
+    /**
+     * Matches every base element
+     *
+     * @param baseNodes the elements selected from the base
+     * @return true if every base element has a match
+     * @throws ElementsCantBeMergedException when selected elements can't be compared
+     */
+    boolean matches(List<Object> baseNodes) throws ElementsCantBeMergedException {
+
+      for (Object node : baseNodes) {
+        Element match = findMatch((Element) node);
+        if (match == null) {
+          return false;
+        }
+        this.matched.add(match);
+      }
+      return true;
+    }
+
+    /**
+     * Returns the first unmatched patch element matching the base element
+     *
+     * @param base the base element
+     * @return the matching patch {@link Element} or null if there is none
+     * @throws ElementsCantBeMergedException when the elements can't be compared
+     */
+    private Element findMatch(Element base) throws ElementsCantBeMergedException {
+
+      List<Element> named = this.byName.get(base.getName());
+      if (named == null) {
+        return null;
+      }
+      // keys are only consistent with the equivalence of serialized nodes
+      if (UnorderedMatcher.this.equivalence == NodeEquivalence.SERIALIZED) {
+        Buckets b = getBuckets(base, named);
+        if (b != null) {
+          Object key = b.nestedComparator.getMatchingKey(base);
+          if (key != null) {
+            Element keyedCandidate = b.firstUnmatched(key);
+            int limit = keyedCandidate == null ? Integer.MAX_VALUE : this.positions.get(keyedCandidate);
+            for (Element unkeyed : b.unkeyed) {
+              if (this.positions.get(unkeyed) > limit) {
+                break;
+              }
+              if (!this.matched.contains(unkeyed) && isMatch(base, unkeyed)) {
+                return unkeyed;
+              }
+            }
+            return keyedCandidate;
+          }
+        }
+      }
+      for (Element patch : named) {
+        if (!this.matched.contains(patch) && isMatch(base, patch)) {
+          return patch;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Compares two selected elements
+     *
+     * @param base the base element
+     * @param patch the patch element
+     * @return true if the elements match
+     * @throws ElementsCantBeMergedException when the elements can't be compared
+     */
+    private boolean isMatch(Element base, Element patch) throws ElementsCantBeMergedException {
+
+      return UnorderedMatcher.this.comparator.nodeCompare(base, patch)
+          || UnorderedMatcher.this.comparator.valueCompare(base, patch);
+    }
+
+    /**
+     * Returns the buckets of the patch elements for the nested criteria of the base element
+     *
+     * @param base the base element
+     * @param named the patch elements with the name of the base element
+     * @return {@link Buckets} or null if the nested comparator can't derive keys
+     */
+    private Buckets getBuckets(Element base, List<Element> named) {
+
+      List<String> signature = Arrays.asList(base.getName(), base.getNamespaceURI());
+      if (this.buckets.containsKey(signature)) {
+        return this.buckets.get(signature);
+      }
+      ElementComparator nested = ElementComparatorFactory.build(
+          UnorderedMatcher.this.provider.getDeepCriterion(base.getName(), base.getNamespaceURI()),
+          UnorderedMatcher.this.provider, UnorderedMatcher.this.equivalence);
+      Buckets b = null;
+      if (nested instanceof IndexableElementComparator) {
+        b = new Buckets((IndexableElementComparator) nested);
+        for (Element patch : named) {
+          Object key = b.nestedComparator.getMatchingKey(patch);
+          if (key == null) {
+            b.unkeyed.add(patch);
+          } else {
+            List<Element> bucket = b.keyed.get(key);
+            if (bucket == null) {
+              bucket = new LinkedList<>();
+              b.keyed.put(key, bucket);
+            }
+            bucket.add(patch);
+          }
+        }
+      }
+      this.buckets.put(signature, b);
+      return b;
+    }
+
+    /**
+     * The patch elements of one name grouped by the matching keys of a nested comparator
+     */
+    private class Buckets {
+
+      /**
+       * Comparator of the nested criteria deriving the keys
+       */
+      private final IndexableElementComparator nestedComparator;
+
+      /**
+       * patch elements per key in document order
+       */
+      private final Map<Object, List<Element>> keyed = new HashMap<>();
+
+      /**
+       * patch elements without a key in document order
+       */
+      private final List<Element> unkeyed = new ArrayList<>();
+
+      /**
+       * Creates new buckets
+       *
+       * @param nestedComparator comparator of the nested criteria deriving the keys
+       */
+      Buckets(IndexableElementComparator nestedComparator) {
+
+        this.nestedComparator = nestedComparator;
+      }
+
+      /**
+       * Returns the first unmatched element with the given key and drops matched ones on the way
+       *
+       * @param key the matching key
+       * @return {@link Element} or null
+       */
+      private Element firstUnmatched(Object key) {
+
+        List<Element> bucket = this.keyed.get(key);
+        if (bucket == null) {
+          return null;
+        }
+        while (!bucket.isEmpty()) {
+          Element head = bucket.get(0);
+          if (!ElementMatching.this.matched.contains(head)) {
+            return head;
+          }
+          bucket.remove(0);
+        }
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,492 @@
+package com.github.maybeec.lexeme.schemaprovider;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.maybeec.lexeme.mergeschema.AdditionalNamespace;
+import com.github.maybeec.lexeme.mergeschema.Attribute;
+import com.github.maybeec.lexeme.mergeschema.Criterion;
+import com.github.maybeec.lexeme.mergeschema.DefaultCriterionType;
+import com.github.maybeec.lexeme.mergeschema.Definition;
+import com.github.maybeec.lexeme.mergeschema.Handling;
+import com.github.maybeec.lexeme.mergeschema.MergeSchema;
+import com.github.maybeec.lexeme.mergeschema.Schema;
+
+/**
+ * Binary form of a MergeSchema, stored as {@value #FILE_SUFFIX} file next to the MergeSchema XML document. Reading the
+ * binary form neither needs JAXB nor an XML parser, which makes the first loading of a MergeSchema considerably faster.
+ * The binary form is used as long as it was created from a document with the same size and CRC32 checksum, otherwise
+ * the XML document is loaded. Binary forms are created at build time by {@link #main(String[])} or while loading the
+ * XML documents if enabled by {@link ProviderRegistry#setWritingCompiledSchemas(boolean)}.<br/>
+ * The format consists of a header (magic number, format version, size and CRC32 checksum of the XML document) followed
+ * by the MergeSchema with all attributes, defaults included. Strings are written once and referenced by their index
+ * afterwards.
+ */
+public final class CompiledMergeSchema {
+
+  /**
+   * Used for logging events of this object
+   */
+  private static final Logger logger = LoggerFactory.getLogger(CompiledMergeSchema.class);
+
+  /**
+   * Suffix appended to the name of the MergeSchema XML document
+   */
+  public static final String FILE_SUFFIX = ".compiled";
+
+  /**
+   * Suffix of a binary form which is currently written
+   */
+  private static final String TEMP_SUFFIX = FILE_SUFFIX + ".tmp";
+
+  /**
+   * Magic number of the format: "LXMS"
+   */
+  private static final int MAGIC = 0x4C584D53;
+
+  /**
+   * Version of the format. Binary forms of other versions are ignored
+   */
+  private static final short VERSION = 2;
+
+  /**
+   * String reference of null
+   */
+  private static final int NULL = -1;
+
+  /**
+   * Utility class
+   */
+  private CompiledMergeSchema() {
+
+  }
+
+  /**
+   * Returns the file of the binary form of a MergeSchema
+   *
+   * @param source the MergeSchema XML document
+   * @return the {@link Path} of the binary form next to the XML document
+   */
+  public static Path getCompiledFile(Path source) {
+
+    return source.resolveSibling(source.getFileName().toString() + FILE_SUFFIX);
+  }
+
+  /**
+   * Checks whether a file is a binary form, or a binary form currently written
+   *
+   * @param file the file
+   * @return true if the file isn't a MergeSchema XML document but a binary form
+   */
+  public static boolean isCompiledFile(Path file) {
+
+    String name = file.getFileName().toString();
+    return name.endsWith(FILE_SUFFIX) || name.endsWith(TEMP_SUFFIX);
+  }
+
+  /**
+   * Reads the binary form of a MergeSchema if it is up to date
+   *
+   * @param source the MergeSchema XML document
+   * @return the {@link MergeSchema} or null if there is no binary form, it has been created from another XML document
+   *         or it has been written by another version
+   * @throws IOException if the binary form can't be read or is corrupt
+   */
+  public static MergeSchema read(Path source) throws IOException {
+
+    Path compiled = getCompiledFile(source);
+    InputStream compiledIn;
+    try {
+      compiledIn = Files.newInputStream(compiled);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(compiledIn))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException(compiled + " is not a compiled MergeSchema");
+      }
+      if (in.readShort() != VERSION || in.readLong() != Files.size(source) || in.readLong() != checksum(source)) {
+        return null;
+      }
+      return new Decoder(in).readMergeSchema();
+    }
+  }
+
+  /**
+   * Writes the binary form of a MergeSchema next to its XML document. The binary form is replaced atomically, thus
+   * concurrent readers never see a partially written file
+   *
+   * @param schema the MergeSchema loaded from the XML document
+   * @param source the MergeSchema XML document
+   * @throws IOException if the binary form can't be written
+   */
+  public static void write(MergeSchema schema, Path source) throws IOException {
+
+    long size = Files.size(source);
+    long checksum = checksum(source);
+    Path compiled = getCompiledFile(source);
+    Path temp = Files.createTempFile(compiled.toAbsolutePath().getParent(), source.getFileName() + ".", TEMP_SUFFIX);
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(size);
+        out.writeLong(checksum);
+        new Encoder(out).writeMergeSchema(schema);
+      }
+      try {
+        Files.move(temp, compiled, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, compiled, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Computes the CRC32 checksum of a MergeSchema XML document
+   *
+   * @param source the MergeSchema XML document
+   * @return the checksum of its bytes
+   * @throws IOException if the document can't be read
+   */
+  private static long checksum(Path source) throws IOException {
+
+    CRC32 crc = new CRC32();
+    byte[] buffer = new byte[8192];
+    try (InputStream in = Files.newInputStream(source)) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        crc.update(buffer, 0, read);
+      }
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Reads the binary form of a MergeSchema if it is up to date. Errors are logged
+   *
+   * @param source the MergeSchema XML document
+   * @return the {@link MergeSchema} or null if the XML document has to be loaded
+   */
+  static MergeSchema readIfCurrent(Path source) {
+
+    try {
+      MergeSchema schema = read(source);
+      if (schema != null) {
+        logger.debug("Read compiled MergeSchema of {}", source);
+      }
+      return schema;
+    } catch (IOException e) {
+      logger.warn("Ignoring compiled MergeSchema of {}: {}", source, e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Writes the binary form of a MergeSchema. Errors are logged, e.g. if the folder isn't writable
+   *
+   * @param schema the MergeSchema loaded from the XML document
+   * @param source the MergeSchema XML document
+   */
+  static void writeIfPossible(MergeSchema schema, Path source) {
+
+    try {
+      write(schema, source);
+      logger.debug("Wrote compiled MergeSchema of {}", source);
+    } catch (IOException | UnsupportedOperationException e) {
+      logger.debug("Could not write compiled MergeSchema of {}: {}", source, e.getMessage());
+    }
+  }
+
+  /**
+   * Writes the binary forms of the MergeSchemas (*.xml) in each given folder. Used by the build to compile the bundled
+   * MergeSchemas. XML documents which aren't MergeSchemas are skipped
+   *
+   * @param args the folders containing MergeSchemas
+   * @throws Exception if a MergeSchema can't be loaded or compiled
+   */
+  public static void main(String[] args) throws Exception {
+
+    for (String folder : args) {
+      Path path = Paths.get(folder);
+      int compiled = 0;
+      try (DirectoryStream<Path> dir = Files.newDirectoryStream(path, "*.xml")) {
+        for (Path file : dir) {
+          if (!Files.isDirectory(file) && MergeSchemaIndex.readNamespaces(file) != null) {
+            write(MergeSchemaProviderImpl.unmarshal(file), file);
+            compiled++;
+          }
+        }
+      }
+      System.out.println(String.format("Compiled %d MergeSchemas in %s", compiled, path));
+    }
+  }
+
+  /**
+   * Writes the elements of a MergeSchema
+   */
+  private static final class Encoder {
+
+    /**
+     * The target stream
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Index of each written string
+     */
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    /**
+     * Creates an encoder
+     *
+     * @param out the target stream
+     */
+    Encoder(DataOutputStream out) {
+
+      this.out = out;
+    }
+
+    /**
+     * Writes a MergeSchema
+     *
+     * @param schema the {@link MergeSchema}
+     * @throws IOException if the stream can't be written
+     */
+    void writeMergeSchema(MergeSchema schema) throws IOException {
+
+      writeHandling(schema);
+      this.out.writeBoolean(schema.isRoot());
+
+      Definition definition = schema.getDefinition();
+      writeString(definition.getNamespace());
+      writeString(definition.getLocation());
+      writeString(definition.getType().value());
+      this.out.writeInt(definition.getAdditionalNamespace().size());
+      for (AdditionalNamespace ans : definition.getAdditionalNamespace()) {
+        writeString(ans.getNamespace());
+        writeString(ans.getLocation());
+      }
+
+      DefaultCriterionType defaultCriterion = schema.getDefaultCriterion();
+      this.out.writeBoolean(defaultCriterion != null);
+      if (defaultCriterion != null) {
+        writeString(defaultCriterion.getXpath());
+        this.out.writeBoolean(defaultCriterion.isOrdered());
+      }
+    }
+
+    /**
+     * Writes a handling and its nested handlings
+     *
+     * @param handling the {@link Handling}
+     * @throws IOException if the stream can't be written
+     */
+    private void writeHandling(Handling handling) throws IOException {
+
+      writeString(handling.getFor());
+      this.out.writeBoolean(handling.isUnique());
+      writeString(handling.getWhere());
+      writeString(handling.getScopeRef());
+      writeString(handling.getNamespaceRef());
+      writeString(handling.getLabel());
+      this.out.writeBoolean(handling.isAttachableText());
+
+      this.out.writeInt(handling.getCriterion().size());
+      for (Criterion criterion : handling.getCriterion()) {
+        writeString(criterion.getXpath());
+        this.out.writeBoolean(criterion.isOrdered());
+      }
+      this.out.writeInt(handling.getAttribute().size());
+      for (Attribute attribute : handling.getAttribute()) {
+        writeString(attribute.getFor());
+        this.out.writeBoolean(attribute.isAttachable());
+        writeString(attribute.getSeparationString());
+      }
+      this.out.writeInt(handling.getHandling().size());
+      for (Handling nested : handling.getHandling()) {
+        writeHandling(nested);
+      }
+    }
+
+    /**
+     * Writes a string on its first occurrence, afterwards its index
+     *
+     * @param value the string, may be null
+     * @throws IOException if the stream can't be written
+     */
+    private void writeString(String value) throws IOException {
+
+      if (value == null) {
+        this.out.writeInt(NULL);
+        return;
+      }
+      Integer index = this.strings.get(value);
+      if (index != null) {
+        this.out.writeInt(index);
+      } else {
+        this.out.writeInt(this.strings.size());
+        this.out.writeUTF(value);
+        this.strings.put(value, this.strings.size());
+      }
+    }
+  }
+
+  /**
+   * Reads the elements of a MergeSchema
+   */
+  private static final class Decoder {
+
+    /**
+     * The source stream
+     */
+    private final DataInputStream in;
+
+    /**
+     * The strings read so far in order of their indexes
+     */
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * Creates a decoder
+     *
+     * @param in the source stream
+     */
+    Decoder(DataInputStream in) {
+
+      this.in = in;
+    }
+
+    /**
+     * Reads a MergeSchema
+     *
+     * @return the {@link MergeSchema}
+     * @throws IOException if the stream can't be read or is corrupt
+     */
+    MergeSchema readMergeSchema() throws IOException {
+
+      MergeSchema schema = new MergeSchema();
+      readHandling(schema);
+      schema.setRoot(this.in.readBoolean());
+
+      Definition definition = new Definition();
+      definition.setNamespace(readString());
+      definition.setLocation(readString());
+      try {
+        definition.setType(Schema.fromValue(readString()));
+      } catch (IllegalArgumentException | NullPointerException e) {
+        throw new IOException("Invalid schema type in compiled MergeSchema", e);
+      }
+      for (int i = readCount(); i > 0; i--) {
+        AdditionalNamespace ans = new AdditionalNamespace();
+        ans.setNamespace(readString());
+        ans.setLocation(readString());
+        definition.getAdditionalNamespace().add(ans);
+      }
+      schema.setDefinition(definition);
+
+      if (this.in.readBoolean()) {
+        DefaultCriterionType defaultCriterion = new DefaultCriterionType();
+        defaultCriterion.setXpath(readString());
+        defaultCriterion.setOrdered(this.in.readBoolean());
+        schema.setDefaultCriterion(defaultCriterion);
+      }
+      return schema;
+    }
+
+    /**
+     * Reads a handling and its nested handlings
+     *
+     * @param handling the {@link Handling} to be filled
+     * @throws IOException if the stream can't be read or is corrupt
+     */
+    private void readHandling(Handling handling) throws IOException {
+
+      handling.setFor(readString());
+      handling.setUnique(this.in.readBoolean());
+      handling.setWhere(readString());
+      handling.setScopeRef(readString());
+      handling.setNamespaceRef(readString());
+      handling.setLabel(readString());
+      handling.setAttachableText(this.in.readBoolean());
+
+      for (int i = readCount(); i > 0; i--) {
+        Criterion criterion = new Criterion();
+        criterion.setXpath(readString());
+        criterion.setOrdered(this.in.readBoolean());
+        handling.getCriterion().add(criterion);
+      }
+      for (int i = readCount(); i > 0; i--) {
+        Attribute attribute = new Attribute();
+        attribute.setFor(readString());
+        attribute.setAttachable(this.in.readBoolean());
+        attribute.setSeparationString(readString());
+        handling.getAttribute().add(attribute);
+      }
+      for (int i = readCount(); i > 0; i--) {
+        Handling nested = new Handling();
+        readHandling(nested);
+        handling.getHandling().add(nested);
+      }
+    }
+
+    /**
+     * Reads the number of following elements
+     *
+     * @return the count
+     * @throws IOException if the stream can't be read or the count is negative
+     */
+    private int readCount() throws IOException {
+
+      int count = this.in.readInt();
+      if (count < 0) {
+        throw new IOException("Invalid element count in compiled MergeSchema: " + count);
+      }
+      return count;
+    }
+
+    /**
+     * Reads a string or the index of a string read before
+     *
+     * @return the string, may be null
+     * @throws IOException if the stream can't be read or references an unknown string
+     */
+    private String readString() throws IOException {
+
+      int index = this.in.readInt();
+      if (index == NULL) {
+        return null;
+      }
+      if (index == this.strings.size()) {
+        String value = this.in.readUTF();
+        this.strings.add(value);
+        return value;
+      }
+      if (index < 0 || index > this.strings.size()) {
+        throw new IOException("Invalid string reference in compiled MergeSchema: " + index);
+      }
+      return this.strings.get(index);
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package com.github.maybeec.lexeme.schemaprovider;
+
+import com.github.maybeec.lexeme.merge.element.MergePlan;
+
+/**
+ * A {@link MergeSchemaProvider} which also provides the compiled forms of its merge schemas. The plans of other
+ * providers are compiled and cached by the {@link com.github.maybeec.lexeme.LeXeMerger} itself.
+ */
+public interface MergePlanProvider extends MergeSchemaProvider {
+
+  /**
+   * Returns the compiled {@link MergePlan} of the MergeSchema for a given NamespaceURI. The plan is compiled once and
+   * shared by all merges of the namespace
+   *
+   * @param namespaceURI {@link String}
+   * @return {@link MergePlan} of the MergeSchema returned by {@link #getMergeSchemaForNamespaceURI(String)}
+   */
+  public MergePlan getMergePlan(String namespaceURI);
+
+}
@@ -0,0 +1,260 @@
+package com.github.maybeec.lexeme.schemaprovider;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Index of the MergeSchema files of a folder: the namespaces declared by the definition of each file. The index is
+ * generated at build time and stored as {@value #INDEX_FILE} next to the MergeSchemas, thus a
+ * {@link MergeSchemaProviderImpl} knows the namespaces of the files without opening them and loads a MergeSchema on
+ * first use of its namespace. The index file contains a line per MergeSchema file: the file name followed by the
+ * namespace and the additional namespaces, separated by tabs.
+ */
+public final class MergeSchemaIndex {
+
+  /**
+   * Name of the index file
+   */
+  public static final String INDEX_FILE = "merge-schemas.index";
+
+  /**
+   * Namespace of MergeSchema documents
+   */
+  private static final String MERGE_SCHEMA_NAMESPACE = "http://maybeec.github.io/lexeme/mergeschema";
+
+  /**
+   * StAX factory per thread. Factories aren't guaranteed to be thread-safe
+   */
+  private static final ThreadLocal<XMLInputFactory> factories = new ThreadLocal<XMLInputFactory>() {
+
+    @Override
+    protected XMLInputFactory initialValue() {
+
+      XMLInputFactory factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+      factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+      return factory;
+    }
+  };
+
+  /**
+   * The namespaces of each file by file name, the namespace of the definition first
+   */
+  private final Map<String, List<String>> namespaces;
+
+  /**
+   * Creates an index
+   *
+   * @param namespaces the namespaces of each file by file name
+   */
+  private MergeSchemaIndex(Map<String, List<String>> namespaces) {
+
+    this.namespaces = Collections.unmodifiableMap(namespaces);
+  }
+
+  /**
+   * Reads the index of a folder
+   *
+   * @param folder the folder containing the MergeSchemas
+   * @return {@link MergeSchemaIndex} or null if the folder has no index
+   * @throws IOException if the index can't be read
+   */
+  public static MergeSchemaIndex read(Path folder) throws IOException {
+
+    Map<String, List<String>> namespaces = new LinkedHashMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(folder.resolve(INDEX_FILE), StandardCharsets.UTF_8)) {
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        String[] columns = line.split("\t");
+        if (columns.length < 2) {
+          throw new IOException(String.format("Invalid line in %s: %s", folder.resolve(INDEX_FILE), line));
+        }
+        namespaces.put(columns[0], Collections.unmodifiableList(Arrays.asList(columns).subList(1, columns.length)));
+      }
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    return new MergeSchemaIndex(namespaces);
+  }
+
+  /**
+   * Creates the index of a folder by reading the definitions of the contained MergeSchema files (*.xml). XML
+   * documents which aren't MergeSchemas are skipped
+   *
+   * @param folder the folder containing the MergeSchemas
+   * @return {@link MergeSchemaIndex}
+   * @throws IOException if a file can't be read or isn't well-formed
+   */
+  public static MergeSchemaIndex create(Path folder) throws IOException {
+
+    List<String> fileNames = new ArrayList<>();
+    try (DirectoryStream<Path> dir = Files.newDirectoryStream(folder, "*.xml")) {
+      for (Path p : dir) {
+        if (!Files.isDirectory(p)) {
+          fileNames.add(p.getFileName().toString());
+        }
+      }
+    }
+    // sorted, thus the index doesn't depend on the file system
+    Collections.sort(fileNames);
+    Map<String, List<String>> namespaces = new LinkedHashMap<>();
+    for (String fileName : fileNames) {
+      List<String> declared = readNamespaces(folder.resolve(fileName));
+      if (declared != null) {
+        namespaces.put(fileName, declared);
+      }
+    }
+    return new MergeSchemaIndex(namespaces);
+  }
+
+  /**
+   * Writes the index into the folder of the MergeSchemas
+   *
+   * @param folder the folder containing the MergeSchemas
+   * @throws IOException if the index can't be written
+   */
+  public void write(Path folder) throws IOException {
+
+    try (BufferedWriter writer = Files.newBufferedWriter(folder.resolve(INDEX_FILE), StandardCharsets.UTF_8)) {
+      writer.write("# MergeSchema file, namespace, additional namespaces");
+      writer.newLine();
+      for (Map.Entry<String, List<String>> entry : this.namespaces.entrySet()) {
+        writer.write(entry.getKey());
+        for (String namespace : entry.getValue()) {
+          writer.write('\t');
+          writer.write(namespace);
+        }
+        writer.newLine();
+      }
+    }
+  }
+
+  /**
+   * Returns the indexed files
+   *
+   * @return the names of the MergeSchema files in the order of the index
+   */
+  public List<String> getFileNames() {
+
+    return new ArrayList<>(this.namespaces.keySet());
+  }
+
+  /**
+   * Returns the namespaces declared by a MergeSchema file
+   *
+   * @param fileName the name of the file
+   * @return the namespace of the definition followed by the additional namespaces, null if the file isn't indexed
+   */
+  public List<String> getNamespaces(String fileName) {
+
+    return this.namespaces.get(fileName);
+  }
+
+  /**
+   * Reads the namespaces declared by the definition of a MergeSchema file. Only the document up to the definition is
+   * read
+   *
+   * @param file the MergeSchema file
+   * @return the namespace of the definition followed by the additional namespaces, null if the file isn't a MergeSchema
+   * @throws IOException if the file can't be read or isn't well-formed
+   */
+  static List<String> readNamespaces(Path file) throws IOException {
+
+    try (InputStream in = Files.newInputStream(file)) {
+      XMLStreamReader reader = factories.get().createXMLStreamReader(in);
+      try {
+        reader.nextTag();
+        if (!isMergeSchemaElement(reader, "merge-schema")) {
+          return null;
+        }
+        int depth = 1;
+        while (reader.hasNext()) {
+          int event = reader.next();
+          if (event == XMLStreamConstants.START_ELEMENT) {
+            depth++;
+            if (depth == 2 && isMergeSchemaElement(reader, "definition")) {
+              return readDefinition(reader);
+            }
+          } else if (event == XMLStreamConstants.END_ELEMENT) {
+            depth--;
+          }
+        }
+        return null;
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      throw new IOException(String.format("Could not read the definition of %s: %s", file, e.getMessage()), e);
+    }
+  }
+
+  /**
+   * Reads the namespaces of a definition element
+   *
+   * @param reader positioned at the start of the definition element
+   * @return the namespace of the definition followed by the additional namespaces
+   * @throws XMLStreamException if the document isn't well-formed
+   */
+  private static List<String> readDefinition(XMLStreamReader reader) throws XMLStreamException {
+
+    List<String> namespaces = new ArrayList<>();
+    namespaces.add(reader.getAttributeValue(null, "namespace"));
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if (isMergeSchemaElement(reader, "additional-namespace")) {
+        namespaces.add(reader.getAttributeValue(null, "namespace"));
+      }
+      // additional-namespace elements are empty
+      reader.nextTag();
+    }
+    return namespaces;
+  }
+
+  /**
+   * Checks the current element of a reader
+   *
+   * @param reader positioned at a start element
+   * @param localName the expected local name
+   * @return true if the element is the expected element of the MergeSchema namespace
+   */
+  private static boolean isMergeSchemaElement(XMLStreamReader reader, String localName) {
+
+    return localName.equals(reader.getLocalName()) && MERGE_SCHEMA_NAMESPACE.equals(reader.getNamespaceURI());
+  }
+
+  /**
+   * Writes the index of each given folder. Used by the build to index the bundled MergeSchemas
+   *
+   * @param args the folders containing MergeSchemas
+   * @throws IOException if a folder can't be indexed
+   */
+  public static void main(String[] args) throws IOException {
+
+    for (String folder : args) {
+      Path path = Paths.get(folder);
+      MergeSchemaIndex index = create(path);
+      index.write(path);
+      System.out.println(String.format("Indexed %d MergeSchemas in %s", index.namespaces.size(), path));
+    }
+  }
+}
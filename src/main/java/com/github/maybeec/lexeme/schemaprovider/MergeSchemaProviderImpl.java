@@ -1,19 +1,53 @@
 package com.github.maybeec.lexeme.schemaprovider;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.maybeec.lexeme.common.util.JDom2Util;
+import com.github.maybeec.lexeme.merge.element.MergePlan;
 import com.github.maybeec.lexeme.merge.element.matcher.CriterionSet;
 import com.github.maybeec.lexeme.mergeschema.AdditionalNamespace;
 import com.github.maybeec.lexeme.mergeschema.Criterion;
@@ -23,9 +57,10 @@ import com.github.maybeec.lexeme.mergeschema.MergeSchema;
 
 import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.bind.JAXBException;
 import jakarta.xml.bind.Unmarshaller;
 
-public class MergeSchemaProviderImpl implements MergeSchemaProvider {
+public class MergeSchemaProviderImpl implements MergePlanProvider, Closeable {
   /**
   *
   */
@@ -34,22 +69,38 @@ public class MergeSchemaProviderImpl implements MergeSchemaProvider {
   /**
    * path to the folder in which the MergeSchema files are located
    */
-  private Path path;
+  private volatile Path path;
 
   /**
-   * last modification time
+   * Whether the MergeSchema files are loaded on first use of their namespaces instead of on refresh
    */
-  private long lastModification = 0;
+  private final boolean lazyLoading;
 
   /**
-   * List of found MergeSchema objects
+   * Whether loaded MergeSchema XML documents are written in their {@link CompiledMergeSchema binary form}
    */
-  private List<MergeSchema> mergeSchemaList;
+  private final boolean writingCompiledSchemas;
 
   /**
-   * The default MergeSchema
+   * The loaded MergeSchema objects and the caches depending on them. Replaced as a whole on refresh, thus a merge
+   * started before a refresh keeps its view of the MergeSchemas
    */
-  private MergeSchema defaultMergeSchema = null;
+  private volatile Snapshot snapshot = new Snapshot(Collections.<Path, SchemaFile> emptyMap());
+
+  /**
+   * Watches the path for changed MergeSchema files. Null if the path isn't watched
+   */
+  private WatchService watchService;
+
+  /**
+   * Time in milliseconds without further file events after which a changed directory is reloaded
+   */
+  private static final long WATCH_QUIET_PERIOD = 100;
+
+  /**
+   * The empty MergeSchema returned if neither a MergeSchema for a namespace nor a default MergeSchema exists
+   */
+  private final MergeSchema emptyMergeSchema = JDom2Util.getInstance().initializeMergeSchema(new MergeSchema());
 
   /**
    * Identifies the default MergeSchema
@@ -57,24 +108,40 @@ public class MergeSchemaProviderImpl implements MergeSchemaProvider {
   static final String defaultMergeSchemaIdentifier = "$DEFAULT$";
 
   /**
-   * Map to store already created MergeSchemaProviders. identification over their Paths
+   * The JAXBContext for MergeSchemas, shared by all providers
    */
-  private static Map<Path, MergeSchemaProvider> providers = new HashMap<>();
+  private static volatile JAXBContext jaxbContext;
 
   /**
-   * Returns a MergeSchemaProvider for the given path
+   * Unmarshaller per thread. Unmarshallers aren't thread-safe, but can be reused
+   */
+  private static final ThreadLocal<Unmarshaller> unmarshallers = new ThreadLocal<Unmarshaller>() {
+
+    @Override
+    protected Unmarshaller initialValue() {
+
+      try {
+        return getJaxbContext().createUnmarshaller();
+      } catch (JAXBException e) {
+        throw new IllegalStateException("Could not create an unmarshaller for MergeSchemas", e);
+      }
+    }
+  };
+
+  /**
+   * Executor loading MergeSchema files in parallel. Created on first use
+   */
+  private static volatile ExecutorService loader;
+
+  /**
+   * Returns a MergeSchemaProvider for the given path. Providers are shared via the {@link ProviderRegistry}
    *
    * @param path {@link Path} to the folder or file the MergeSchemas are stored
    * @return MergeSchemaProvider
    */
   public static MergeSchemaProvider getProviderForPath(Path path) {
 
-    MergeSchemaProvider cached = providers.get(path);
-    if (cached == null) {
-      cached = new MergeSchemaProviderImpl(path);
-      providers.put(path, cached);
-    }
-    return cached;
+    return ProviderRegistry.getInstance().getProvider(path);
   }
 
   /**
@@ -89,49 +156,144 @@ public class MergeSchemaProviderImpl implements MergeSchemaProvider {
   }
 
   /**
-   * Maps a CriterionSet to its MergeSchema
+   * Returns a MergeSchemaProvider for a folder of the classpath of this class, e.g. "mergeSchemas" for the bundled
+   * MergeSchemas. See {@link #getProviderForClasspath(String, ClassLoader)}
+   *
+   * @param resourceFolder the name of the folder as resource
+   * @return MergeSchemaProvider
+   */
+  public static MergeSchemaProvider getProviderForClasspath(String resourceFolder) {
+
+    return getProviderForClasspath(resourceFolder, MergeSchemaProviderImpl.class.getClassLoader());
+  }
+
+  /**
+   * Returns a MergeSchemaProvider for a folder of the classpath. The MergeSchemas are read straight from the folder or
+   * JAR file containing the resource, a JAR file is opened as {@link FileSystem} and kept open. If the folder contains a
+   * {@link MergeSchemaIndex}, the indexed files are loaded on first use of their namespaces. A folder of a JAR should
+   * have an index, as JAR files don't need to contain entries for folders
+   *
+   * @param resourceFolder the name of the folder as resource
+   * @param classLoader the {@link ClassLoader} to find the folder
+   * @return MergeSchemaProvider
+   * @throws IllegalArgumentException if the folder isn't found or its file system can't be opened
+   */
+  public static MergeSchemaProvider getProviderForClasspath(String resourceFolder, ClassLoader classLoader) {
+
+    String folder = resourceFolder;
+    while (folder.startsWith("/")) {
+      folder = folder.substring(1);
+    }
+    while (folder.endsWith("/")) {
+      folder = folder.substring(0, folder.length() - 1);
+    }
+    URL index = classLoader.getResource(folder + "/" + MergeSchemaIndex.INDEX_FILE);
+    URL url = (index != null ? index : classLoader.getResource(folder));
+    if (url == null) {
+      throw new IllegalArgumentException("No MergeSchemas found on the classpath at " + resourceFolder);
+    }
+    try {
+      Path path = toPath(url.toURI());
+      return getProviderForPath(index != null ? path.getParent() : path);
+    } catch (URISyntaxException | IOException e) {
+      throw new IllegalArgumentException("Could not open the MergeSchemas at " + url, e);
+    }
+  }
+
+  /**
+   * Converts an URI into a Path. Opens the {@link FileSystem} of the URI if needed, e.g. for a JAR file
+   *
+   * @param uri the {@link URI}
+   * @return {@link Path}
+   * @throws IOException if the file system can't be opened
    */
-  private Map<String, CriterionSet> criterionSets = new HashMap<>();
+  private static Path toPath(URI uri) throws IOException {
+
+    try {
+      return Paths.get(uri);
+    } catch (FileSystemNotFoundException e) {
+      synchronized (MergeSchemaProviderImpl.class) {
+        try {
+          FileSystems.newFileSystem(uri, Collections.<String, Object> emptyMap());
+        } catch (FileSystemAlreadyExistsException opened) {
+          // opened concurrently
+        }
+      }
+      return Paths.get(uri);
+    }
+  }
 
   /**
    * Creates a new MergeSchemaProviderImplementation
    *
    * @param path path to the folder containing MergeSchemas
+   * @param lazyLoading whether the MergeSchema files are loaded on first use of their namespaces. Only the definitions
+   *        of the files are read on refresh
+   * @param writingCompiledSchemas whether the {@link CompiledMergeSchema binary form} of a loaded MergeSchema XML
+   *        document is written next to it
    */
-  private MergeSchemaProviderImpl(Path path) {
+  MergeSchemaProviderImpl(Path path, boolean lazyLoading, boolean writingCompiledSchemas) {
 
     this.path = path;
-    refreshMergeSchemaList();
+    this.lazyLoading = lazyLoading;
+    this.writingCompiledSchemas = writingCompiledSchemas;
+    refresh();
   }
 
   @Override
   public MergeSchema getMergeSchemaForNamespaceURI(String namespaceURI) {
 
+    return getMergeSchema(this.snapshot, namespaceURI);
+  }
+
+  /**
+   * Returns the MergeSchema of a snapshot for a given NamespaceURI
+   *
+   * @param current the {@link Snapshot} to be used
+   * @param namespaceURI {@link String}
+   * @return {@link MergeSchema} for the namespace, the default MergeSchema or an empty MergeSchema
+   */
+  private MergeSchema getMergeSchema(Snapshot current, String namespaceURI) {
+
     if (namespaceURI != null) {
-      for (MergeSchema schema : this.mergeSchemaList) {
-        if (schema.getDefinition().getNamespace().equals(namespaceURI)) {
-          this.logger.debug("Returned merge schema for namespace {}", namespaceURI);
-          return schema;
-        }
-        for (AdditionalNamespace ans : schema.getDefinition().getAdditionalNamespace()) {
-          if (ans.getNamespace().equals(namespaceURI)) {
-            this.logger.debug("Returned merge schema for namespace {}", namespaceURI);
-            return schema;
-          }
-        }
+      SchemaFile file = current.schemas.get(namespaceURI);
+      MergeSchema schema = (file == null ? null : file.getSchema());
+      if (schema != null) {
+        this.logger.debug("Returned merge schema for namespace {}", namespaceURI);
+        return schema;
+      }
+      if (current.unknownNamespaces.add(namespaceURI)) {
+        this.logger.warn("No MergeSchema found for Namespace {}", namespaceURI);
       }
-      this.logger.warn("No MergeSchema found for Namespace {}", namespaceURI);
     }
-    if (this.defaultMergeSchema != null) {
+    MergeSchema defaultSchema = current.getDefaultMergeSchema();
+    if (defaultSchema != null) {
       this.logger.debug("Returned default merge schema for namespace {}", namespaceURI);
-      return this.defaultMergeSchema;
+      return defaultSchema;
     }
     this.logger.debug("Returned empty merge schema for namespace {}", namespaceURI);
-    return JDom2Util.getInstance().initializeMergeSchema(new MergeSchema());
+    return this.emptyMergeSchema;
+  }
+
+  @Override
+  public MergePlan getMergePlan(String namespaceURI) {
+
+    Snapshot current = this.snapshot;
+    MergeSchema schema = getMergeSchema(current, namespaceURI);
+    MergePlan plan = current.mergePlans.get(schema);
+    if (plan == null) {
+      this.logger.debug("Compiling merge plan for namespace {}", namespaceURI);
+      plan = new MergePlan(schema, this);
+      MergePlan concurrent = current.mergePlans.putIfAbsent(schema, plan);
+      if (concurrent != null) {
+        plan = concurrent;
+      }
+    }
+    return plan;
   }
 
   /**
-   * Sets the path
+   * Sets the path and loads the MergeSchema objects from it. A watched path is replaced by the new one
    *
    * @param path string
    */
@@ -139,67 +301,334 @@ public class MergeSchemaProviderImpl implements MergeSchemaProvider {
 
     this.path = Paths.get(path);
     this.logger.debug("Provider pathString set to {}", path);
-    refreshMergeSchemaList();
+    refresh();
+    synchronized (this) {
+      if (this.watchService != null) {
+        stopWatching();
+        try {
+          startWatching();
+        } catch (IOException e) {
+          this.logger.warn("Could not watch {}: {}", path, e.getMessage());
+        }
+      }
+    }
   }
 
   /**
-   * Empties current MergeSchemaList and loads all the MergeSchema objects from pathString
+   * Reloads the MergeSchema files of the path which have been added, changed or removed since the last refresh. Files
+   * are identified as unchanged by their modification time and size, their MergeSchema objects are kept. The new
+   * MergeSchema objects are published as a whole after they have been loaded. Compiled plans and criterion sets are
+   * only discarded for the namespaces whose MergeSchema changed, or for all namespaces if the default MergeSchema
+   * changed. A file which can't be loaded keeps its former MergeSchema and is loaded again on the next refresh. If the
+   * folder contains a {@link MergeSchemaIndex}, the files are loaded on first use and the namespaces of the indexed
+   * files are taken from the index when they are found the first time. On the default file system the folder is listed
+   * nevertheless: the namespaces of files which aren't indexed (*.xml only, like the index) or which changed afterwards
+   * are read from their definitions. On other file systems, e.g. JAR files, only the indexed files are used. In lazy
+   * loading mode only the namespaces of the changed files are read from their definitions and they are loaded on first
+   * use as well
+   *
+   * @return the namespaces whose MergeSchema has been added, changed or removed. Contains
+   *         {@value #defaultMergeSchemaIdentifier} if the default MergeSchema changed
    */
-  private void refreshMergeSchemaList() {
+  public synchronized Set<String> refresh() {
 
-    this.mergeSchemaList = new LinkedList<>();
-    long modification = this.lastModification;
+    Snapshot current = this.snapshot;
+    Map<Path, SchemaFile> files = new LinkedHashMap<>();
+    List<Path> changedFiles = new ArrayList<>();
+    List<BasicFileAttributes> changedAttributes = new ArrayList<>();
+    MergeSchemaIndex index = null;
     try {
+      List<Path> candidates = new ArrayList<>();
       if (Files.isDirectory(this.path)) {
-        DirectoryStream<Path> dir = Files.newDirectoryStream(this.path);
-        for (Path p : dir) {
-          if (!Files.isDirectory(p) && p.toFile().lastModified() > this.lastModification) {
-            modification = (modification <= p.toFile().lastModified() ? p.toFile().lastModified() : modification);
-            MergeSchema loadedSchema = loadMergeSchema(p);
-            if (loadedSchema.getDefinition().getNamespace().equals(defaultMergeSchemaIdentifier)) {
-              this.defaultMergeSchema = loadedSchema;
-              this.logger.debug("Found default MergeSchema @ {}", p.toString());
-              continue;
+        index = readIndex();
+        if (index != null && this.path.getFileSystem() != FileSystems.getDefault()) {
+          // read-only file systems like JAR files don't change after the index has been created
+          for (String fileName : index.getFileNames()) {
+            candidates.add(this.path.resolve(fileName));
+          }
+        } else {
+          try (DirectoryStream<Path> dir = Files.newDirectoryStream(this.path)) {
+            for (Path p : dir) {
+              String fileName = p.getFileName().toString();
+              if (!fileName.equals(MergeSchemaIndex.INDEX_FILE) && !CompiledMergeSchema.isCompiledFile(p)
+                  && (index == null || fileName.endsWith(".xml"))) {
+                candidates.add(p);
+              }
             }
-            this.mergeSchemaList.add(loadedSchema);
-            this.logger.debug("Found MergeSchema for {} @ {}", loadedSchema.getDefinition().getNamespace(),
-                p.toString());
           }
         }
       } else {
-        if (this.path.toFile().lastModified() > this.lastModification) {
-          modification = (modification <= this.path.toFile().lastModified() ? this.path.toFile().lastModified()
-              : modification);
-          MergeSchema loadedSchema = loadMergeSchema(this.path);
-          this.mergeSchemaList.add(loadedSchema);
-          this.logger.debug("Found MergeSchema for {} @ {}", loadedSchema.getDefinition().getNamespace(),
-              this.path.toString());
+        candidates.add(this.path);
+      }
+      for (Path p : candidates) {
+        BasicFileAttributes attributes;
+        try {
+          attributes = Files.readAttributes(p, BasicFileAttributes.class);
+        } catch (IOException e) {
+          // removed in the meantime
+          continue;
+        }
+        if (attributes.isDirectory()) {
+          continue;
+        }
+        SchemaFile known = current.files.get(p);
+        files.put(p, known);
+        if (known != null && known.isUnchanged(attributes)) {
+          continue;
         }
+        List<String> indexed = (index != null ? index.getNamespaces(p.getFileName().toString()) : null);
+        if (indexed != null && known == null) {
+          files.put(p, new SchemaFile(p, attributes, indexed, null, this.writingCompiledSchemas));
+        } else {
+          changedFiles.add(p);
+          changedAttributes.add(attributes);
+        }
+      }
+    } catch (IOException e) {
+      this.logger.warn("Could not list the MergeSchemas in {}: {}", this.path, e.getMessage());
+    }
+
+    // files of an indexed folder are loaded on first use like in lazy loading mode
+    if (this.lazyLoading || index != null) {
+      for (int i = 0; i < changedFiles.size(); i++) {
+        Path p = changedFiles.get(i);
+        try {
+          List<String> namespaces = MergeSchemaIndex.readNamespaces(p);
+          if (namespaces != null) {
+            files.put(p, new SchemaFile(p, changedAttributes.get(i), namespaces, null,
+                this.writingCompiledSchemas));
+            this.logger.debug("Found MergeSchema for {} @ {}", namespaces.get(0), p);
+            if (index != null && index.getNamespaces(p.getFileName().toString()) == null) {
+              this.logger.warn("MergeSchema {} is not listed in the index of {}", p, this.path);
+            }
+          } else {
+            this.logger.warn("{} is not a MergeSchema", p);
+            files.remove(p);
+          }
+        } catch (IOException e) {
+          this.logger.warn("Could not read MergeSchema {}: {}", p, e.getMessage());
+          keepFormer(current, files, p);
+        }
+      }
+      changedFiles.clear();
+    }
+
+    List<Future<MergeSchema>> loadedSchemas = loadMergeSchemas(changedFiles);
+    for (int i = 0; i < changedFiles.size(); i++) {
+      Path p = changedFiles.get(i);
+      try {
+        MergeSchema loadedSchema = getLoaded(loadedSchemas.get(i));
+        files.put(p, new SchemaFile(p, changedAttributes.get(i), null, loadedSchema,
+            this.writingCompiledSchemas));
+        this.logger.debug("Found MergeSchema for {} @ {}", loadedSchema.getDefinition().getNamespace(), p);
+      } catch (Exception e) {
+        this.logger.warn("Could not load MergeSchema {} {}:{}", p, e.getClass().getName(), e.getMessage());
+        keepFormer(current, files, p);
+      }
+    }
+
+    Snapshot refreshed = new Snapshot(files);
+    Set<String> changed = refreshed.inheritCaches(current);
+    this.snapshot = refreshed;
+    if (!changed.isEmpty()) {
+      this.logger.debug("Reloaded MergeSchemas of {} for {}", this.path, changed);
+    }
+    return changed;
+  }
+
+  /**
+   * Keeps the former state of a file which couldn't be loaded. It is loaded again on the next refresh
+   *
+   * @param former the former {@link Snapshot}
+   * @param files the files of the new snapshot
+   * @param file the file which couldn't be loaded
+   */
+  private static void keepFormer(Snapshot former, Map<Path, SchemaFile> files, Path file) {
+
+    SchemaFile known = former.files.get(file);
+    if (known != null) {
+      known.markStale();
+      files.put(file, known);
+    } else {
+      files.remove(file);
+    }
+  }
+
+  /**
+   * Returns whether the MergeSchema files are loaded on first use of their namespaces. Files of a folder with a
+   * {@link MergeSchemaIndex} are always loaded on first use
+   *
+   * @return value of lazyLoading
+   */
+  public boolean isLazyLoading() {
+
+    return this.lazyLoading;
+  }
+
+  /**
+   * Reads the {@link MergeSchemaIndex} of the path
+   *
+   * @return the index or null if the path has no or an invalid index
+   */
+  private MergeSchemaIndex readIndex() {
+
+    try {
+      MergeSchemaIndex index = MergeSchemaIndex.read(this.path);
+      if (index != null) {
+        this.logger.debug("Found MergeSchema index of {} files in {}", index.getFileNames().size(), this.path);
       }
-      this.lastModification = modification;
-    } catch (Exception e) {
-      this.logger.warn("Unexpected exception {}:{}", e.getClass().getName(), e.getMessage());
-      if (this.logger.isDebugEnabled()) {
-        e.printStackTrace();
+      return index;
+    } catch (IOException e) {
+      this.logger.warn("Ignoring the MergeSchema index of {}: {}", this.path, e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Starts watching the path for added, changed or removed MergeSchema files. Changes are loaded via
+   * {@link #refresh()} by a daemon thread once no further changes occurred for a short period. Does nothing if the path
+   * is already watched
+   *
+   * @throws IOException if the path can't be watched, e.g. as it is located in a JAR file
+   */
+  public synchronized void startWatching() throws IOException {
+
+    if (this.watchService != null) {
+      return;
+    }
+    Path dir = Files.isDirectory(this.path) ? this.path : this.path.toAbsolutePath().getParent();
+    final WatchService service;
+    try {
+      service = dir.getFileSystem().newWatchService();
+    } catch (UnsupportedOperationException e) {
+      throw new IOException(String.format("The file system of %s can't be watched", dir), e);
+    }
+    try {
+      dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+          StandardWatchEventKinds.ENTRY_DELETE);
+    } catch (IOException e) {
+      service.close();
+      throw e;
+    }
+    Thread watcher = new Thread(new Runnable() {
+
+      @Override
+      public void run() {
+
+        watch(service);
       }
-    } finally {
-      this.logger.debug("Files in {} are last modified at {}", this.path.toString(),
-          new java.util.Date(this.lastModification));
+    }, "lexeme-mergeschema-watcher");
+    watcher.setDaemon(true);
+    this.watchService = service;
+    watcher.start();
+    this.logger.debug("Watching {} for changed MergeSchemas", dir);
+  }
+
+  /**
+   * Stops watching the path. Does nothing if the path isn't watched
+   */
+  public synchronized void stopWatching() {
+
+    if (this.watchService == null) {
+      return;
     }
+    try {
+      this.watchService.close();
+    } catch (IOException e) {
+      this.logger.warn("Could not stop watching {}: {}", this.path, e.getMessage());
+    }
+    this.watchService = null;
+  }
+
+  /**
+   * Stops watching the path and removes this provider from the {@link ProviderRegistry}. The provider remains usable,
+   * but a later lookup of its path loads a new provider
+   */
+  @Override
+  public void close() {
+
+    stopWatching();
+    ProviderRegistry.getInstance().evict(this);
+  }
 
+  /**
+   * Returns whether the path is watched for changed MergeSchema files
+   *
+   * @return true if {@link #startWatching()} has been called and the watching hasn't been stopped
+   */
+  public synchronized boolean isWatching() {
+
+    return this.watchService != null;
   }
 
   /**
-   * Loads a MergeSchema object from the given pathString
+   * Refreshes the MergeSchemas whenever the watched directory changed, until the {@link WatchService} is closed
+   *
+   * @param service the {@link WatchService} of the directory
+   */
+  private void watch(WatchService service) {
+
+    try {
+      while (true) {
+        WatchKey key = service.take();
+        // files are often written in several steps, thus events are collected until the directory is quiet
+        while (key != null) {
+          key.pollEvents();
+          key.reset();
+          key = service.poll(WATCH_QUIET_PERIOD, TimeUnit.MILLISECONDS);
+        }
+        refresh();
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      this.logger.debug("Stopped watching {}", this.path);
+    }
+  }
+
+  /**
+   * Returns whether the binary form of a loaded MergeSchema XML document is written next to it
+   *
+   * @return value of writingCompiledSchemas
+   */
+  public boolean isWritingCompiledSchemas() {
+
+    return this.writingCompiledSchemas;
+  }
+
+  /**
+   * Loads a MergeSchema object from the given pathString. Its {@link CompiledMergeSchema binary form} is read instead of
+   * the XML document if it is up to date
+   *
+   * @param path to the MergeSchema XML document
+   * @param writeCompiled whether the binary form is written if the XML document has been loaded
+   * @return {@link MergeSchema} not null
+   * @throws Exception when an error occurs during parsing (i.e. {@link java.io.FileNotFoundException})
+   */
+  private static MergeSchema loadMergeSchema(Path path, boolean writeCompiled) throws Exception {
+
+    MergeSchema schema = CompiledMergeSchema.readIfCurrent(path);
+    if (schema != null) {
+      return schema;
+    }
+    schema = unmarshal(path);
+    if (writeCompiled) {
+      CompiledMergeSchema.writeIfPossible(schema, path);
+    }
+    return schema;
+  }
+
+  /**
+   * Unmarshals a MergeSchema XML document
    *
    * @param path to the MergeSchema XML document
    * @return {@link MergeSchema} not null
    * @throws Exception when an error occurs during parsing (i.e. {@link java.io.FileNotFoundException})
    */
-  private MergeSchema loadMergeSchema(Path path) throws Exception {
+  static MergeSchema unmarshal(Path path) throws Exception {
 
-    Unmarshaller unmarshaller = JAXBContext.newInstance("com.github.maybeec.lexeme.mergeschema").createUnmarshaller();
-    Object object = unmarshaller.unmarshal(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+    Object object;
+    try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      object = unmarshallers.get().unmarshal(reader);
+    }
     if (object instanceof JAXBElement && ((JAXBElement<?>) object).getValue() instanceof MergeSchema) {
       return (MergeSchema) ((JAXBElement<?>) object).getValue();
     }
@@ -208,6 +637,108 @@ public class MergeSchemaProviderImpl implements MergeSchemaProvider {
 
   }
 
+  /**
+   * Starts loading the given MergeSchema files. A single file is loaded by the calling thread, several files are loaded
+   * in parallel
+   *
+   * @param files the MergeSchema XML documents
+   * @return a {@link Future} for each file in the order of files
+   */
+  private List<Future<MergeSchema>> loadMergeSchemas(List<Path> files) {
+
+    List<Future<MergeSchema>> result = new ArrayList<>(files.size());
+    for (final Path file : files) {
+      FutureTask<MergeSchema> task = new FutureTask<>(new Callable<MergeSchema>() {
+
+        @Override
+        public MergeSchema call() throws Exception {
+
+          return loadMergeSchema(file, MergeSchemaProviderImpl.this.writingCompiledSchemas);
+        }
+      });
+      if (files.size() == 1) {
+        task.run();
+      } else {
+        getLoader().execute(task);
+      }
+      result.add(task);
+    }
+    return result;
+  }
+
+  /**
+   * Waits for a MergeSchema to be loaded
+   *
+   * @param loading {@link Future} of the MergeSchema
+   * @return the loaded {@link MergeSchema}
+   * @throws Exception the exception the loading failed with
+   */
+  private MergeSchema getLoaded(Future<MergeSchema> loading) throws Exception {
+
+    try {
+      return loading.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the JAXBContext for MergeSchemas. It is created once per JVM as its creation is expensive
+   *
+   * @return {@link JAXBContext}
+   * @throws JAXBException if the context can't be created
+   */
+  private static JAXBContext getJaxbContext() throws JAXBException {
+
+    JAXBContext context = jaxbContext;
+    if (context == null) {
+      synchronized (MergeSchemaProviderImpl.class) {
+        context = jaxbContext;
+        if (context == null) {
+          context = JAXBContext.newInstance("com.github.maybeec.lexeme.mergeschema");
+          jaxbContext = context;
+        }
+      }
+    }
+    return context;
+  }
+
+  /**
+   * Returns the executor loading MergeSchema files in parallel. Its daemon threads terminate when idle
+   *
+   * @return {@link ExecutorService}
+   */
+  private static ExecutorService getLoader() {
+
+    ExecutorService executor = loader;
+    if (executor == null) {
+      synchronized (MergeSchemaProviderImpl.class) {
+        executor = loader;
+        if (executor == null) {
+          int threads = Runtime.getRuntime().availableProcessors();
+          ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+
+                  Thread t = new Thread(r, "lexeme-mergeschema-loader");
+                  t.setDaemon(true);
+                  return t;
+                }
+              });
+          pool.allowCoreThreadTimeOut(true);
+          executor = pool;
+          loader = executor;
+        }
+      }
+    }
+    return executor;
+  }
+
   @Override
   public String getPath() {
 
@@ -218,11 +749,13 @@ public class MergeSchemaProviderImpl implements MergeSchemaProvider {
   public Criterion getDefaultCriterion(String namespaceUri) {
 
     Criterion result = new Criterion();
-    MergeSchema ms = getMergeSchemaForNamespaceURI(namespaceUri);
+    Snapshot current = this.snapshot;
+    MergeSchema ms = getMergeSchema(current, namespaceUri);
     DefaultCriterionType defaultCriterionType = ms.getDefaultCriterion();
     if (defaultCriterionType == null) {
-      if (this.defaultMergeSchema != null && this.defaultMergeSchema.getDefaultCriterion() != null) {
-        defaultCriterionType = this.defaultMergeSchema.getDefaultCriterion();
+      MergeSchema defaultSchema = current.getDefaultMergeSchema();
+      if (defaultSchema != null && defaultSchema.getDefaultCriterion() != null) {
+        defaultCriterionType = defaultSchema.getDefaultCriterion();
       } else {
         return result;
       }
@@ -264,11 +797,15 @@ public class MergeSchemaProviderImpl implements MergeSchemaProvider {
   @Override
   public List<Criterion> getDeepCriterion(String name, String namespace) {
 
-    CriterionSet retrievedCriterionSet = this.criterionSets.get(namespace);
+    Snapshot current = this.snapshot;
+    CriterionSet retrievedCriterionSet = current.criterionSets.get(namespace);
     if (retrievedCriterionSet == null) {
-      MergeSchema retrievedMergeSchema = getMergeSchemaForNamespaceURI(namespace);
+      MergeSchema retrievedMergeSchema = getMergeSchema(current, namespace);
       retrievedCriterionSet = makeCriterionTree(retrievedMergeSchema);
-      this.criterionSets.put(namespace, retrievedCriterionSet);
+      CriterionSet concurrent = current.criterionSets.putIfAbsent(namespace, retrievedCriterionSet);
+      if (concurrent != null) {
+        retrievedCriterionSet = concurrent;
+      }
     }
 
     List<Criterion> result = walkCriterionSetFor(name, retrievedCriterionSet);
@@ -281,7 +818,8 @@ public class MergeSchemaProviderImpl implements MergeSchemaProvider {
   }
 
   /**
-   * traverses the CriterionSet tree recursive to find a list of criteria for a specified element
+   * Finds the list of criteria for a specified element in a CriterionSet tree. The first matching node in depth-first
+   * order is taken, see {@link CriterionSet#findCriteria(String)}
    *
    * @param name of the element
    * @param criterionSet root of the subtree
@@ -289,16 +827,7 @@ public class MergeSchemaProviderImpl implements MergeSchemaProvider {
    */
   public List<Criterion> walkCriterionSetFor(String name, CriterionSet criterionSet) {
 
-    if (criterionSet.getName().equals(name)) {
-      return criterionSet.getCriteria();
-    }
-    for (CriterionSet cs : criterionSet.getChildren()) {
-      List<Criterion> deeperList = walkCriterionSetFor(name, cs);
-      if (deeperList != null) {
-        return deeperList;
-      }
-    }
-    return null;
+    return criterionSet.findCriteria(name);
   }
 
   /**
@@ -316,4 +845,270 @@ public class MergeSchemaProviderImpl implements MergeSchemaProvider {
     return currentNode;
   }
 
+  /**
+   * A MergeSchema file. Its MergeSchema is either loaded on creation or on first use
+   */
+  private static final class SchemaFile {
+
+    /**
+     * Used to log errors of the loading on first use
+     */
+    private static final Logger logger = LoggerFactory.getLogger(MergeSchemaProviderImpl.class);
+
+    /**
+     * The file
+     */
+    private final Path path;
+
+    /**
+     * Modification time of the file when it was found
+     */
+    private final FileTime lastModified;
+
+    /**
+     * Size of the file when it was found
+     */
+    private final long size;
+
+    /**
+     * The namespace of the definition followed by the additional namespaces
+     */
+    private final List<String> namespaces;
+
+    /**
+     * The MergeSchema of the file. Null until loaded
+     */
+    private volatile MergeSchema schema;
+
+    /**
+     * Whether the file has to be loaded again on the next refresh
+     */
+    private volatile boolean stale;
+
+    /**
+     * Whether the loading on first use failed. Guarded by this
+     */
+    private boolean failed;
+
+    /**
+     * Whether the binary form is written if the XML document is loaded on first use
+     */
+    private final boolean writeCompiled;
+
+    /**
+     * Creates a MergeSchema file
+     *
+     * @param path the file
+     * @param attributes the attributes of the file when it was found
+     * @param namespaces the namespaces declared by the file. Taken from the schema if null
+     * @param schema the loaded MergeSchema. Null if it has to be loaded on first use
+     * @param writeCompiled whether the binary form is written if the XML document is loaded on first use
+     */
+    SchemaFile(Path path, BasicFileAttributes attributes, List<String> namespaces, MergeSchema schema,
+        boolean writeCompiled) {
+
+      this.path = path;
+      this.writeCompiled = writeCompiled;
+      this.lastModified = attributes.lastModifiedTime();
+      this.size = attributes.size();
+      this.schema = schema;
+      if (namespaces == null) {
+        List<String> declared = new ArrayList<>();
+        declared.add(schema.getDefinition().getNamespace());
+        for (AdditionalNamespace ans : schema.getDefinition().getAdditionalNamespace()) {
+          declared.add(ans.getNamespace());
+        }
+        this.namespaces = declared;
+      } else {
+        this.namespaces = namespaces;
+      }
+    }
+
+    /**
+     * Returns the MergeSchema of the file. Loads it on first use
+     *
+     * @return {@link MergeSchema} or null if it can't be loaded
+     */
+    MergeSchema getSchema() {
+
+      MergeSchema loaded = this.schema;
+      if (loaded != null) {
+        return loaded;
+      }
+      synchronized (this) {
+        if (this.schema == null && !this.failed) {
+          try {
+            this.schema = loadMergeSchema(this.path, this.writeCompiled);
+            logger.debug("Loaded MergeSchema for {} @ {}", this.namespaces.get(0), this.path);
+          } catch (Exception e) {
+            this.failed = true;
+            this.stale = true;
+            logger.warn("Could not load MergeSchema {} {}:{}", this.path, e.getClass().getName(), e.getMessage());
+          }
+        }
+        return this.schema;
+      }
+    }
+
+    /**
+     * Marks the file to be loaded again on the next refresh
+     */
+    void markStale() {
+
+      this.stale = true;
+    }
+
+    /**
+     * Returns whether the file is unchanged since it was found
+     *
+     * @param attributes the current attributes of the file
+     * @return true if modification time and size are unchanged and the file isn't stale
+     */
+    boolean isUnchanged(BasicFileAttributes attributes) {
+
+      return !this.stale && attributes.lastModifiedTime().equals(this.lastModified)
+          && attributes.size() == this.size;
+    }
+  }
+
+  /**
+   * Immutable view of the loaded MergeSchema files. Maps the primary and additional namespaces of the MergeSchema
+   * objects to the MergeSchema and caches the objects compiled from them. Remembers the namespaces without a
+   * MergeSchema, thus a missing MergeSchema is reported once per refresh
+   */
+  private static final class Snapshot {
+
+    /**
+     * The loaded files in the order they have been found
+     */
+    private final Map<Path, SchemaFile> files;
+
+    /**
+     * The MergeSchema files by namespace
+     */
+    private final Map<String, SchemaFile> schemas = new HashMap<>();
+
+    /**
+     * The file of the default MergeSchema. Can be null
+     */
+    private final SchemaFile defaultFile;
+
+    /**
+     * Namespaces without a MergeSchema
+     */
+    private final Set<String> unknownNamespaces = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Compiled plans of the MergeSchema objects, identified by the MergeSchema instance
+     */
+    private final ConcurrentMap<MergeSchema, MergePlan> mergePlans = new ConcurrentHashMap<>();
+
+    /**
+     * The CriterionSet trees of the MergeSchema objects by namespace
+     */
+    private final ConcurrentMap<String, CriterionSet> criterionSets = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the snapshot. If several MergeSchema objects declare a namespace the first one is used, if several default
+     * MergeSchema objects exist the last one is used
+     *
+     * @param files the loaded files
+     */
+    Snapshot(Map<Path, SchemaFile> files) {
+
+      this.files = Collections.unmodifiableMap(files);
+      SchemaFile defaultSchemaFile = null;
+      for (SchemaFile file : files.values()) {
+        if (defaultMergeSchemaIdentifier.equals(file.namespaces.get(0))) {
+          defaultSchemaFile = file;
+          continue;
+        }
+        for (String namespace : file.namespaces) {
+          if (!this.schemas.containsKey(namespace)) {
+            this.schemas.put(namespace, file);
+          }
+        }
+      }
+      this.defaultFile = defaultSchemaFile;
+    }
+
+    /**
+     * Returns the default MergeSchema
+     *
+     * @return {@link MergeSchema} or null if there is none
+     */
+    MergeSchema getDefaultMergeSchema() {
+
+      return this.defaultFile == null ? null : this.defaultFile.getSchema();
+    }
+
+    /**
+     * Takes over the cached objects of a former snapshot which don't depend on a changed MergeSchema
+     *
+     * @param former the former {@link Snapshot}
+     * @return the namespaces whose MergeSchema changed. Contains
+     *         {@value MergeSchemaProviderImpl#defaultMergeSchemaIdentifier} if the default MergeSchema changed
+     */
+    Set<String> inheritCaches(Snapshot former) {
+
+      Set<String> changed = new HashSet<>();
+      Set<String> namespaces = new HashSet<>(former.schemas.keySet());
+      namespaces.addAll(this.schemas.keySet());
+      for (String namespace : namespaces) {
+        if (former.schemas.get(namespace) != this.schemas.get(namespace)) {
+          changed.add(namespace);
+        }
+      }
+      if (former.defaultFile != this.defaultFile) {
+        // the default MergeSchema is used by any namespace
+        changed.add(defaultMergeSchemaIdentifier);
+        return changed;
+      }
+
+      for (Map.Entry<String, CriterionSet> entry : former.criterionSets.entrySet()) {
+        if (!changed.contains(entry.getKey())) {
+          this.criterionSets.put(entry.getKey(), entry.getValue());
+        }
+      }
+      Set<MergeSchema> loaded = Collections.newSetFromMap(new IdentityHashMap<MergeSchema, Boolean>());
+      for (SchemaFile file : former.files.values()) {
+        if (file.schema != null) {
+          loaded.add(file.schema);
+        }
+      }
+      Set<MergeSchema> kept = Collections.newSetFromMap(new IdentityHashMap<MergeSchema, Boolean>());
+      for (SchemaFile file : this.files.values()) {
+        if (file.schema != null) {
+          kept.add(file.schema);
+        }
+      }
+      for (Map.Entry<MergeSchema, MergePlan> entry : former.mergePlans.entrySet()) {
+        MergeSchema schema = entry.getKey();
+        // plans of the empty MergeSchema or of unchanged files are kept unless they reference a changed namespace
+        if ((kept.contains(schema) || !loaded.contains(schema))
+            && Collections.disjoint(changed, getReferencedNamespaces(schema, new HashSet<String>()))) {
+          this.mergePlans.put(schema, entry.getValue());
+        }
+      }
+      return changed;
+    }
+
+    /**
+     * Collects the namespaces referenced by the scope references of a Handling tree
+     *
+     * @param handling root of the Handling tree
+     * @param result the set the namespaces are added to
+     * @return result
+     */
+    private static Set<String> getReferencedNamespaces(Handling handling, Set<String> result) {
+
+      if (!handling.getNamespaceRef().equals("")) {
+        result.add(handling.getNamespaceRef());
+      }
+      for (Handling h : handling.getHandling()) {
+        getReferencedNamespaces(h, result);
+      }
+      return result;
+    }
+  }
 }
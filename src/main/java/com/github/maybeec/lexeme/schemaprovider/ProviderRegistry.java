@@ -0,0 +1,475 @@
+package com.github.maybeec.lexeme.schemaprovider;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the {@link MergeSchemaProviderImpl} instances by MergeSchema path. Paths are made absolute and
+ * normalized, thus all spellings of a path share one provider. The MergeSchemas of a path are loaded once by the first
+ * lookup, lookups of other paths aren't blocked meanwhile. The registry is bounded: the least recently used provider is
+ * evicted if the maximum size is exceeded, and providers which haven't been looked up for the idle timeout are evicted
+ * on the next lookup. An evicted provider stops watching its path, but remains usable by its current users; a later
+ * lookup of the path loads a new provider. Providers created by the registry load their MergeSchema files on first use
+ * of their namespaces if {@link #setLazyLoading(boolean) lazy loading} is enabled, and write the
+ * {@link CompiledMergeSchema binary form} of loaded MergeSchemas if {@link #setWritingCompiledSchemas(boolean)
+ * enabled}.
+ */
+public final class ProviderRegistry {
+
+  /**
+   * Used for logging events of this object
+   */
+  private static final Logger logger = LoggerFactory.getLogger(ProviderRegistry.class);
+
+  /**
+   * Default maximum number of registered providers
+   */
+  public static final int DEFAULT_MAXIMUM_SIZE = 100;
+
+  /**
+   * Singleton instance
+   */
+  private static final ProviderRegistry instance = new ProviderRegistry();
+
+  /**
+   * The registered providers by normalized path in access order. Guarded by itself
+   */
+  private final LinkedHashMap<Path, Registration> registrations = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Maximum number of registered providers
+   */
+  private volatile int maximumSize = DEFAULT_MAXIMUM_SIZE;
+
+  /**
+   * Time in nanoseconds after which a provider which hasn't been looked up is evicted. 0 if providers don't expire
+   */
+  private volatile long idleTimeout = 0;
+
+  /**
+   * Whether new providers load their MergeSchema files on first use of their namespaces
+   */
+  private volatile boolean lazyLoading = false;
+
+  /**
+   * Whether new providers write the binary form of loaded MergeSchema XML documents next to them
+   */
+  private volatile boolean writingCompiledSchemas = false;
+
+  /**
+   * Counters of the lookups
+   */
+  private final ProviderRegistryStatistics statistics = new ProviderRegistryStatistics();
+
+  /**
+   * Singleton constructor
+   */
+  private ProviderRegistry() {
+
+  }
+
+  /**
+   * Getter to the used ProviderRegistry instance
+   *
+   * @return {@link ProviderRegistry}
+   */
+  public static ProviderRegistry getInstance() {
+
+    return instance;
+  }
+
+  /**
+   * Returns the provider for the given path. Creates the provider, which loads all MergeSchemas of the path, if none
+   * is registered
+   *
+   * @param path {@link Path} to the folder or file the MergeSchemas are stored
+   * @return {@link MergeSchemaProviderImpl}
+   */
+  public MergeSchemaProviderImpl getProvider(Path path) {
+
+    final Path normalized = path.toAbsolutePath().normalize();
+    final boolean lazy = this.lazyLoading;
+    final boolean writeCompiled = this.writingCompiledSchemas;
+    long now = System.nanoTime();
+    List<Registration> evicted = new ArrayList<>();
+    Registration registration;
+    boolean load = false;
+    synchronized (this.registrations) {
+      evictIdle(now, evicted);
+      registration = this.registrations.get(normalized);
+      if (registration == null) {
+        registration = new Registration(new FutureTask<>(new Callable<MergeSchemaProviderImpl>() {
+
+          @Override
+          public MergeSchemaProviderImpl call() {
+
+            return new MergeSchemaProviderImpl(normalized, lazy, writeCompiled);
+          }
+        }), now);
+        this.registrations.put(normalized, registration);
+        load = true;
+        evictExcess(evicted);
+      } else {
+        registration.lastAccess = now;
+      }
+    }
+    release(evicted, true);
+
+    if (load) {
+      logger.debug("Loading MergeSchema provider for {}", normalized);
+      registration.provider.run();
+      this.statistics.recordLoad(System.nanoTime() - now);
+    } else {
+      this.statistics.recordHit();
+    }
+    try {
+      return getLoaded(registration.provider);
+    } catch (RuntimeException | Error e) {
+      // a failed loading isn't cached
+      synchronized (this.registrations) {
+        if (this.registrations.get(normalized) == registration) {
+          this.registrations.remove(normalized);
+        }
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Removes the provider of the given path from the registry and stops watching its path
+   *
+   * @param path {@link Path} to the folder or file the MergeSchemas are stored
+   * @return true if a provider has been registered for the path
+   */
+  public boolean evict(Path path) {
+
+    Registration registration;
+    synchronized (this.registrations) {
+      registration = this.registrations.remove(path.toAbsolutePath().normalize());
+    }
+    if (registration == null) {
+      return false;
+    }
+    release(Collections.singletonList(registration), false);
+    return true;
+  }
+
+  /**
+   * Removes the given provider from the registry and stops watching its path
+   *
+   * @param provider the registered provider
+   * @return true if the provider has been registered
+   */
+  public boolean evict(MergeSchemaProvider provider) {
+
+    List<Registration> removed = new ArrayList<>();
+    synchronized (this.registrations) {
+      for (Iterator<Registration> iterator = this.registrations.values().iterator(); iterator.hasNext();) {
+        Registration registration = iterator.next();
+        if (getLoadedOrNull(registration.provider) == provider) {
+          iterator.remove();
+          removed.add(registration);
+        }
+      }
+    }
+    release(removed, false);
+    return !removed.isEmpty();
+  }
+
+  /**
+   * Removes all providers from the registry and stops watching their paths
+   */
+  public void evictAll() {
+
+    List<Registration> removed;
+    synchronized (this.registrations) {
+      removed = new ArrayList<>(this.registrations.values());
+      this.registrations.clear();
+    }
+    release(removed, false);
+  }
+
+  /**
+   * Evicts the providers which exceeded the idle timeout. This is done on every lookup as well
+   */
+  public void evictIdle() {
+
+    List<Registration> evicted = new ArrayList<>();
+    synchronized (this.registrations) {
+      evictIdle(System.nanoTime(), evicted);
+    }
+    release(evicted, true);
+  }
+
+  /**
+   * Returns the number of registered providers
+   *
+   * @return int
+   */
+  public int size() {
+
+    synchronized (this.registrations) {
+      return this.registrations.size();
+    }
+  }
+
+  /**
+   * Returns the field 'maximumSize'
+   *
+   * @return value of maximumSize
+   */
+  public int getMaximumSize() {
+
+    return this.maximumSize;
+  }
+
+  /**
+   * Sets the maximum number of registered providers. Exceeding providers are evicted in least recently used order
+   *
+   * @param maximumSize new value of maximumSize, at least 1
+   */
+  public void setMaximumSize(int maximumSize) {
+
+    if (maximumSize < 1) {
+      throw new IllegalArgumentException("The maximum size has to be at least 1, but is " + maximumSize);
+    }
+    this.maximumSize = maximumSize;
+    List<Registration> evicted = new ArrayList<>();
+    synchronized (this.registrations) {
+      evictExcess(evicted);
+    }
+    release(evicted, true);
+  }
+
+  /**
+   * Returns the idle timeout
+   *
+   * @param unit {@link TimeUnit} of the result
+   * @return time after which a provider which hasn't been looked up is evicted. 0 if providers don't expire
+   */
+  public long getIdleTimeout(TimeUnit unit) {
+
+    return unit.convert(this.idleTimeout, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Sets the time after which a provider which hasn't been looked up is evicted
+   *
+   * @param timeout the idle timeout. 0 if providers shouldn't expire
+   * @param unit {@link TimeUnit} of the timeout
+   */
+  public void setIdleTimeout(long timeout, TimeUnit unit) {
+
+    if (timeout < 0) {
+      throw new IllegalArgumentException("The idle timeout mustn't be negative, but is " + timeout);
+    }
+    this.idleTimeout = unit.toNanos(timeout);
+  }
+
+  /**
+   * Returns the field 'lazyLoading'
+   *
+   * @return value of lazyLoading
+   */
+  public boolean isLazyLoading() {
+
+    return this.lazyLoading;
+  }
+
+  /**
+   * Sets whether providers created afterwards read only the definitions of the MergeSchema files on creation and load
+   * a MergeSchema on first use of its namespace. This reduces the startup time and memory if only some namespaces of a
+   * folder are merged. Registered providers aren't changed, they have to be evicted to be created again
+   *
+   * @param lazyLoading new value of lazyLoading
+   */
+  public void setLazyLoading(boolean lazyLoading) {
+
+    this.lazyLoading = lazyLoading;
+  }
+
+  /**
+   * Returns the field 'writingCompiledSchemas'
+   *
+   * @return value of writingCompiledSchemas
+   */
+  public boolean isWritingCompiledSchemas() {
+
+    return this.writingCompiledSchemas;
+  }
+
+  /**
+   * Sets whether providers created afterwards write the {@link CompiledMergeSchema binary form} of a loaded MergeSchema
+   * XML document next to it, thus later processes read the binary form. Binary forms which are up to date are always
+   * read, this only controls their creation on first load. Folders which aren't writable are skipped
+   *
+   * @param writingCompiledSchemas new value of writingCompiledSchemas
+   */
+  public void setWritingCompiledSchemas(boolean writingCompiledSchemas) {
+
+    this.writingCompiledSchemas = writingCompiledSchemas;
+  }
+
+  /**
+   * Returns the field 'statistics'
+   *
+   * @return {@link ProviderRegistryStatistics}
+   */
+  public ProviderRegistryStatistics getStatistics() {
+
+    return this.statistics;
+  }
+
+  /**
+   * Removes the providers which exceeded the idle timeout. Has to be called while holding the lock of the registrations
+   *
+   * @param now current {@link System#nanoTime()}
+   * @param evicted list the removed registrations are added to
+   */
+  private void evictIdle(long now, List<Registration> evicted) {
+
+    long timeout = this.idleTimeout;
+    if (timeout == 0) {
+      return;
+    }
+    // in access order, thus the idle registrations come first
+    for (Iterator<Map.Entry<Path, Registration>> iterator = this.registrations.entrySet().iterator(); iterator
+        .hasNext();) {
+      Map.Entry<Path, Registration> entry = iterator.next();
+      if (now - entry.getValue().lastAccess < timeout) {
+        break;
+      }
+      logger.debug("Evicting idle MergeSchema provider for {}", entry.getKey());
+      iterator.remove();
+      evicted.add(entry.getValue());
+    }
+  }
+
+  /**
+   * Removes the least recently used providers exceeding the maximum size. Has to be called while holding the lock of the
+   * registrations
+   *
+   * @param evicted list the removed registrations are added to
+   */
+  private void evictExcess(List<Registration> evicted) {
+
+    Iterator<Map.Entry<Path, Registration>> iterator = this.registrations.entrySet().iterator();
+    while (this.registrations.size() > this.maximumSize) {
+      Map.Entry<Path, Registration> entry = iterator.next();
+      logger.debug("Evicting least recently used MergeSchema provider for {}", entry.getKey());
+      iterator.remove();
+      evicted.add(entry.getValue());
+    }
+  }
+
+  /**
+   * Stops the removed providers from watching their paths and records their removal
+   *
+   * @param removed the removed registrations
+   * @param evicted true if they have been evicted, false if they have been removed on request
+   */
+  private void release(List<Registration> removed, boolean evicted) {
+
+    for (Registration registration : removed) {
+      if (evicted) {
+        this.statistics.recordEviction();
+      } else {
+        this.statistics.recordRemoval();
+      }
+      MergeSchemaProviderImpl provider = getLoadedOrNull(registration.provider);
+      if (provider != null) {
+        provider.stopWatching();
+      }
+    }
+  }
+
+  /**
+   * Waits for a provider to be loaded
+   *
+   * @param loading the loading of the provider
+   * @return the loaded provider
+   */
+  private static MergeSchemaProviderImpl getLoaded(FutureTask<MergeSchemaProviderImpl> loading) {
+
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return loading.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+          }
+          if (e.getCause() instanceof Error) {
+            throw (Error) e.getCause();
+          }
+          throw new IllegalStateException("Could not load the MergeSchema provider", e.getCause());
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Returns a loaded provider
+   *
+   * @param loading the loading of the provider
+   * @return the provider or null if it isn't loaded or the loading failed
+   */
+  private static MergeSchemaProviderImpl getLoadedOrNull(FutureTask<MergeSchemaProviderImpl> loading) {
+
+    if (!loading.isDone()) {
+      return null;
+    }
+    try {
+      return loading.get();
+    } catch (InterruptedException | ExecutionException e) {
+      return null;
+    }
+  }
+
+  /**
+   * A registered provider
+   */
+  private static final class Registration {
+
+    /**
+     * The loading of the provider
+     */
+    private final FutureTask<MergeSchemaProviderImpl> provider;
+
+    /**
+     * {@link System#nanoTime()} of the last lookup
+     */
+    private volatile long lastAccess;
+
+    /**
+     * Creates a registration
+     *
+     * @param provider the loading of the provider
+     * @param lastAccess {@link System#nanoTime()} of the registration
+     */
+    Registration(FutureTask<MergeSchemaProviderImpl> provider, long lastAccess) {
+
+      this.provider = provider;
+      this.lastAccess = lastAccess;
+    }
+  }
+}
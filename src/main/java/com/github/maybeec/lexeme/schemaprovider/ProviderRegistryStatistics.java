@@ -0,0 +1,150 @@
+package com.github.maybeec.lexeme.schemaprovider;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe counters of the lookups in the {@link ProviderRegistry}
+ */
+public final class ProviderRegistryStatistics {
+
+  /**
+   * Number of lookups answered by a registered provider
+   */
+  private final AtomicLong hits = new AtomicLong();
+
+  /**
+   * Number of providers created, i.e. of lookups which loaded the MergeSchemas of a path
+   */
+  private final AtomicLong loads = new AtomicLong();
+
+  /**
+   * Number of providers removed from the registry because of its size or their idle time
+   */
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Number of providers removed from the registry on request
+   */
+  private final AtomicLong removals = new AtomicLong();
+
+  /**
+   * Accumulated loading time in nanoseconds
+   */
+  private final AtomicLong totalLoadTime = new AtomicLong();
+
+  /**
+   * Records a lookup answered by a registered provider
+   */
+  void recordHit() {
+
+    this.hits.incrementAndGet();
+  }
+
+  /**
+   * Records a created provider
+   *
+   * @param nanos time the loading took in nanoseconds
+   */
+  void recordLoad(long nanos) {
+
+    this.loads.incrementAndGet();
+    this.totalLoadTime.addAndGet(nanos);
+  }
+
+  /**
+   * Records a provider evicted because of the size of the registry or its idle time
+   */
+  void recordEviction() {
+
+    this.evictions.incrementAndGet();
+  }
+
+  /**
+   * Records a provider removed on request
+   */
+  void recordRemoval() {
+
+    this.removals.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of lookups answered by a registered provider
+   *
+   * @return long
+   */
+  public long getHitCount() {
+
+    return this.hits.get();
+  }
+
+  /**
+   * Returns the number of created providers
+   *
+   * @return long
+   */
+  public long getLoadCount() {
+
+    return this.loads.get();
+  }
+
+  /**
+   * Returns the number of providers evicted because of the size of the registry or their idle time
+   *
+   * @return long
+   */
+  public long getEvictionCount() {
+
+    return this.evictions.get();
+  }
+
+  /**
+   * Returns the number of providers removed on request
+   *
+   * @return long
+   */
+  public long getRemovalCount() {
+
+    return this.removals.get();
+  }
+
+  /**
+   * Returns the accumulated loading time of the created providers
+   *
+   * @return nanoseconds
+   */
+  public long getTotalLoadTimeNanos() {
+
+    return this.totalLoadTime.get();
+  }
+
+  /**
+   * Returns the ratio of lookups answered by a registered provider
+   *
+   * @return value between 0 and 1, 1 if nothing has been looked up
+   */
+  public double getHitRate() {
+
+    long hitCount = this.hits.get();
+    long lookups = hitCount + this.loads.get();
+    return lookups == 0 ? 1 : (double) hitCount / lookups;
+  }
+
+  /**
+   * Resets all counters
+   */
+  public void reset() {
+
+    this.hits.set(0);
+    this.loads.set(0);
+    this.evictions.set(0);
+    this.removals.set(0);
+    this.totalLoadTime.set(0);
+  }
+
+  @Override
+  public String toString() {
+
+    return String.format("%d hits, %d loads (%d ms total), %d evictions, %d removals", getHitCount(),
+        getLoadCount(), getTotalLoadTimeNanos() / 1000000, getEvictionCount(), getRemovalCount());
+  }
+}
@@ -4,7 +4,7 @@ import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
 
 public final class DocumentValidatorFactory {
 
-  private static DocumentValidatorBuilder builder = null;
+  private static volatile DocumentValidatorBuilder builder = null;
 
   /**
    * Sets the field 'builder'.
@@ -28,11 +28,22 @@ public final class DocumentValidatorFactory {
    */
   public static DocumentValidator build(MergeSchemaProvider provider) {
 
-    if (builder == null) {
-      builder = new GenericDocumentValidatorBuilder();
-    }
+    return getBuilder().build(provider);
+  }
 
-    return builder.build(provider);
+  /**
+   * Returns the builder to be used. Initializes a {@link GenericDocumentValidatorBuilder} if no builder has been set
+   *
+   * @return DocumentValidatorBuilder
+   */
+  private static DocumentValidatorBuilder getBuilder() {
+
+    DocumentValidatorBuilder b = builder;
+    if (b == null) {
+      b = new GenericDocumentValidatorBuilder();
+      builder = b;
+    }
+    return b;
   }
 
   /**
@@ -1,19 +1,22 @@
 package com.github.maybeec.lexeme.validator;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.validation.Validator;
 
 import org.jdom2.Element;
 import org.jdom2.Namespace;
+import org.jdom2.transform.JDOMSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import com.github.maybeec.lexeme.common.exception.ValidationException;
@@ -64,67 +67,109 @@ public class DocumentValidatorImpl implements DocumentValidator {
   @Override
   public void validate(Element node) throws ValidationException {
 
-    final String JAXP_SCHEMA_LANGUAGE = "http://java.sun.com/xml/jaxp/properties/schemaLanguage";
-    final String W3C_XML_SCHEMA = "http://www.w3.org/2001/XMLSchema";
-
-    DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-
-    dbf.setNamespaceAware(true);
-    dbf.setValidating(true);
-
     try {
-      dbf.setAttribute(JAXP_SCHEMA_LANGUAGE, W3C_XML_SCHEMA);
-    } catch (IllegalArgumentException x) {
-      throw new ValidationException(String.format("%s: JAXP DocumentBuilderFactory attribute not recognized: %s",
-          x.getClass().getName(), JAXP_SCHEMA_LANGUAGE), x);
+      List<String> systemIds = getSchemaSystemIds(node);
+      Validator validator = SchemaCache.getInstance().getValidator(systemIds);
+      validator.setErrorHandler(new ValidationErrorHandler());
+      validator.validate(new JDOMSource(node));
+    } catch (SAXException e) {
+      this.logger.warn("Validation failed due to: {}\n{}", e.getMessage(), node.toString());
+      if (this.strict) {
+        throw new ValidationException("Validation failed due to: " + e.getMessage(), e);
+      }
+    } catch (IOException e) {
+      throw new ValidationException("Caught IOException while validating the Node. This should not have happened: "
+          + e.getMessage(), e);
     }
 
-    final String JAXP_SCHEMA_SOURCE = "http://java.sun.com/xml/jaxp/properties/schemaSource";
-    List<String> schemas = new LinkedList<>();
+  }
+
+  /**
+   * Returns the system ids of the XML Schema documents the node will be validated against. A namespace in scope is
+   * validated against the location given by its MergeSchema. Namespaces without such a location are validated against
+   * the xsi:schemaLocation / xsi:noNamespaceSchemaLocation hints of the node.
+   *
+   * @param node the {@link Element} to be validated
+   * @return {@link List}&lt;{@link String}> of distinct system ids
+   * @throws SAXException if a hint refers to a schema document of another namespace
+   */
+  private List<String> getSchemaSystemIds(Element node) throws SAXException {
+
+    Map<String, String> locations = new LinkedHashMap<>();
     for (String namespace : getNameSpaces(node)) {
       MergeSchema ms = this.provider.getMergeSchemaForNamespaceURI(namespace);
       if (ms.getDefinition() == null) {
         continue;
       }
       String schemaLocation = "";
-      if (node.getNamespace().getURI().equals(ms.getDefinition().getNamespace())) {
+      if (namespace.equals(ms.getDefinition().getNamespace())) {
         schemaLocation = ms.getDefinition().getLocation();
       } else {
         for (AdditionalNamespace ans : ms.getDefinition().getAdditionalNamespace()) {
-          if (node.getNamespace().getURI().equals(ans.getNamespace())) {
+          if (namespace.equals(ans.getNamespace())) {
             schemaLocation = ans.getLocation();
             break;
           }
         }
       }
       if (!schemaLocation.equals("")) {
-        schemas.add(ms.getDefinition().getLocation());
+        locations.put(namespace, schemaLocation);
       }
+    }
 
+    Set<String> systemIds = new LinkedHashSet<>();
+    for (String location : locations.values()) {
+      systemIds.add(toSystemId(location));
     }
-    if (!schemas.isEmpty()) {
-      dbf.setAttribute(JAXP_SCHEMA_SOURCE, schemas.toArray());
+
+    Map<String, String> hints = new LinkedHashMap<>();
+    String schemaLocation = node.getAttributeValue("schemaLocation", JDom2Util.XSI);
+    if (schemaLocation != null && !schemaLocation.trim().isEmpty()) {
+      String[] pairs = schemaLocation.trim().split("\\s+");
+      for (int i = 0; i + 1 < pairs.length; i += 2) {
+        if (!hints.containsKey(pairs[i])) {
+          hints.put(pairs[i], pairs[i + 1]);
+        }
+      }
     }
-    try (StringReader stringReader = new StringReader(JDom2Util.getInstance().parseString(node))) {
-      InputSource inputSource = new InputSource(stringReader);
-      DocumentBuilder db = dbf.newDocumentBuilder();
-      db.setErrorHandler(new ValidationErrorHandler());
-      db.parse(inputSource);
-    } catch (SAXException e) {
-      this.logger.warn("Validation failed due to: {}\n{}", e.getMessage(), node.toString());
-      if (this.strict) {
-        throw new ValidationException("Validation failed due to: " + e.getMessage(), e);
+    String noNamespaceSchemaLocation = node.getAttributeValue("noNamespaceSchemaLocation", JDom2Util.XSI);
+    if (noNamespaceSchemaLocation != null) {
+      hints.put("", noNamespaceSchemaLocation.trim());
+    }
+    for (Map.Entry<String, String> hint : hints.entrySet()) {
+      if (locations.containsKey(hint.getKey())) {
+        continue;
       }
-    } catch (ParserConfigurationException e) {
-      throw new ValidationException("Unexpected ParserConfigurationException caught while creating a DocumentBuilder."
-          + " This should not have happened: %s" + e.getMessage(), e);
-    } catch (IOException e) {
-      throw new ValidationException(
-          "Caught IOException while parsing the to a String transformed Node. This should not have happened: %s"
-              + e.getMessage(),
-          e);
+      String systemId = toSystemId(hint.getValue());
+      String targetNamespace = SchemaCache.getInstance().getTargetNamespace(systemId);
+      if (targetNamespace == null) {
+        // as a parser would do, a hint to an unreadable schema document is ignored
+        continue;
+      }
+      if (!targetNamespace.equals(hint.getKey())) {
+        throw new SAXException(String.format(
+            "TargetNamespace: Expecting namespace '%s', but the target namespace of the schema document %s is '%s'",
+            hint.getKey(), systemId, targetNamespace));
+      }
+      systemIds.add(systemId);
     }
+    return new ArrayList<>(systemIds);
+  }
+
+  /**
+   * Converts a schema location to a system id. Locations without a URI scheme are file paths relative to the execution
+   * path
+   *
+   * @param location the schema location
+   * @return the system id
+   */
+  private String toSystemId(String location) {
 
+    // a scheme has at least two characters, thus windows drive letters are no schemes
+    if (location.matches("[a-zA-Z][a-zA-Z0-9+.-]+:.*")) {
+      return location;
+    }
+    return new File(location).toURI().toString();
   }
 
   /**
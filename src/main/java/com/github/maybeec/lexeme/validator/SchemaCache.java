@@ -0,0 +1,177 @@
+package com.github.maybeec.lexeme.validator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * Singleton cache of compiled XML Schemas. A {@link Schema} is compiled once per list of schema documents and shared by
+ * all threads. {@link Validator}s aren't thread-safe, thus every thread keeps its own Validator per Schema and reuses
+ * it for further validations.
+ */
+public final class SchemaCache {
+
+  /**
+   * Used for logging events of this object
+   */
+  private static final Logger logger = LoggerFactory.getLogger(SchemaCache.class);
+
+  /**
+   * Singleton instance
+   */
+  private static final SchemaCache instance = new SchemaCache();
+
+  /**
+   * The compiled Schemas by the system ids of their schema documents
+   */
+  private final ConcurrentMap<List<String>, Schema> schemas = new ConcurrentHashMap<>();
+
+  /**
+   * The target namespaces of the schema documents by system id
+   */
+  private final ConcurrentMap<String, String> targetNamespaces = new ConcurrentHashMap<>();
+
+  /**
+   * The Validators of the current thread. Weak keys, thus Validators of Schemas removed from the cache can be collected
+   */
+  private final ThreadLocal<Map<Schema, Validator>> validators = new ThreadLocal<Map<Schema, Validator>>() {
+
+    @Override
+    protected Map<Schema, Validator> initialValue() {
+
+      return new WeakHashMap<>();
+    }
+  };
+
+  /**
+   * Singleton constructor
+   */
+  private SchemaCache() {
+
+  }
+
+  /**
+   * Getter to the used SchemaCache instance
+   *
+   * @return {@link SchemaCache}
+   */
+  public static SchemaCache getInstance() {
+
+    return instance;
+  }
+
+  /**
+   * Returns the Schema composed of the given schema documents, compiles it on the first request
+   *
+   * @param systemIds the system ids (URIs) of the schema documents, one per target namespace
+   * @return {@link Schema} shared instance
+   * @throws SAXException if a schema document can't be read or compiled
+   */
+  public Schema getSchema(List<String> systemIds) throws SAXException {
+
+    Schema schema = this.schemas.get(systemIds);
+    if (schema == null) {
+      logger.debug("Compiling XML Schema of {}", systemIds);
+      Source[] sources = new Source[systemIds.size()];
+      for (int i = 0; i < sources.length; i++) {
+        sources[i] = new StreamSource(systemIds.get(i));
+      }
+      schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(sources);
+      Schema concurrent = this.schemas.putIfAbsent(new ArrayList<>(systemIds), schema);
+      if (concurrent != null) {
+        schema = concurrent;
+      }
+    }
+    return schema;
+  }
+
+  /**
+   * Returns the Validator of the current thread for the Schema composed of the given schema documents. The Validator is
+   * reset and has to be used by the current thread only
+   *
+   * @param systemIds the system ids (URIs) of the schema documents, one per target namespace
+   * @return {@link Validator}
+   * @throws SAXException if a schema document can't be read or compiled
+   */
+  public Validator getValidator(List<String> systemIds) throws SAXException {
+
+    Schema schema = getSchema(systemIds);
+    Map<Schema, Validator> threadValidators = this.validators.get();
+    Validator validator = threadValidators.get(schema);
+    if (validator == null) {
+      validator = schema.newValidator();
+      threadValidators.put(schema, validator);
+    } else {
+      validator.reset();
+    }
+    return validator;
+  }
+
+  /**
+   * Returns the target namespace of a schema document. Only the root element of the document is read
+   *
+   * @param systemId the system id (URI) of the schema document
+   * @return the target namespace, an empty String if the schema document has none or null if the schema document can't
+   *         be read
+   */
+  public String getTargetNamespace(String systemId) {
+
+    String targetNamespace = this.targetNamespaces.get(systemId);
+    if (targetNamespace == null) {
+      try (InputStream in = new URL(systemId).openStream()) {
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+        try {
+          reader.nextTag();
+          targetNamespace = reader.getAttributeValue(null, "targetNamespace");
+        } finally {
+          reader.close();
+        }
+      } catch (XMLStreamException | IOException e) {
+        logger.warn("Could not read schema document {}: {}", systemId, e.getMessage());
+        return null;
+      }
+      targetNamespace = (targetNamespace == null ? "" : targetNamespace);
+      this.targetNamespaces.put(systemId, targetNamespace);
+    }
+    return targetNamespace;
+  }
+
+  /**
+   * Returns the number of cached Schemas
+   *
+   * @return int
+   */
+  public int size() {
+
+    return this.schemas.size();
+  }
+
+  /**
+   * Removes all compiled Schemas, e.g. after schema documents have been changed
+   */
+  public void clear() {
+
+    this.schemas.clear();
+    this.targetNamespaces.clear();
+  }
+}
@@ -0,0 +1,141 @@
+package com.github.maybeec.lexeme.validator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe counters of the validations performed for merge results
+ */
+public final class ValidationStatistics {
+
+  /**
+   * Number of validated merge results
+   */
+  private final AtomicLong validations = new AtomicLong();
+
+  /**
+   * Number of merge results which failed the validation
+   */
+  private final AtomicLong failures = new AtomicLong();
+
+  /**
+   * Number of merge results which haven't been validated
+   */
+  private final AtomicLong skipped = new AtomicLong();
+
+  /**
+   * Accumulated validation time in nanoseconds
+   */
+  private final AtomicLong totalTime = new AtomicLong();
+
+  /**
+   * Longest validation time in nanoseconds
+   */
+  private final AtomicLong maxTime = new AtomicLong();
+
+  /**
+   * Records a performed validation
+   *
+   * @param nanos time the validation took in nanoseconds
+   * @param failed true if the merge result is invalid
+   */
+  public void recordValidation(long nanos, boolean failed) {
+
+    this.validations.incrementAndGet();
+    if (failed) {
+      this.failures.incrementAndGet();
+    }
+    this.totalTime.addAndGet(nanos);
+    long max = this.maxTime.get();
+    while (nanos > max && !this.maxTime.compareAndSet(max, nanos)) {
+      max = this.maxTime.get();
+    }
+  }
+
+  /**
+   * Records a merge result which hasn't been validated
+   */
+  public void recordSkipped() {
+
+    this.skipped.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of validated merge results
+   *
+   * @return long
+   */
+  public long getValidationCount() {
+
+    return this.validations.get();
+  }
+
+  /**
+   * Returns the number of merge results which failed the validation
+   *
+   * @return long
+   */
+  public long getFailureCount() {
+
+    return this.failures.get();
+  }
+
+  /**
+   * Returns the number of merge results which haven't been validated
+   *
+   * @return long
+   */
+  public long getSkippedCount() {
+
+    return this.skipped.get();
+  }
+
+  /**
+   * Returns the accumulated validation time
+   *
+   * @return nanoseconds
+   */
+  public long getTotalTimeNanos() {
+
+    return this.totalTime.get();
+  }
+
+  /**
+   * Returns the longest validation time
+   *
+   * @return nanoseconds
+   */
+  public long getMaxTimeNanos() {
+
+    return this.maxTime.get();
+  }
+
+  /**
+   * Returns the average validation time per validated merge result
+   *
+   * @return nanoseconds, 0 if nothing has been validated
+   */
+  public long getAverageTimeNanos() {
+
+    long count = this.validations.get();
+    return count == 0 ? 0 : this.totalTime.get() / count;
+  }
+
+  /**
+   * Resets all counters
+   */
+  public void reset() {
+
+    this.validations.set(0);
+    this.failures.set(0);
+    this.skipped.set(0);
+    this.totalTime.set(0);
+    this.maxTime.set(0);
+  }
+
+  @Override
+  public String toString() {
+
+    return String.format("%d validations (%d failed, %d skipped), %d ms total, %d ms max", getValidationCount(),
+        getFailureCount(), getSkippedCount(), getTotalTimeNanos() / 1000000, getMaxTimeNanos() / 1000000);
+  }
+}
@@ -1,13 +1,52 @@
 package com.github.maybeec.lexeme;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.jdom2.Document;
+import org.jdom2.output.XMLOutputter;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
 
+import com.github.maybeec.lexeme.common.util.JDom2Util;
+import com.github.maybeec.lexeme.merge.element.MergePlan;
 import com.github.maybeec.lexeme.mergeschema.Criterion;
 import com.github.maybeec.lexeme.mergeschema.MergeSchema;
+import com.github.maybeec.lexeme.schemaprovider.CompiledMergeSchema;
+import com.github.maybeec.lexeme.schemaprovider.MergePlanProvider;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaIndex;
 import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
 import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProviderImpl;
+import com.github.maybeec.lexeme.schemaprovider.ProviderRegistry;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
 
 public class MergeSchemaProviderImplTest {
 
@@ -26,6 +65,12 @@ public class MergeSchemaProviderImplTest {
    */
   private String namespaceDefault = "$DEFAULT$";
 
+  /**
+   * Folder for MergeSchemas changed by the tests
+   */
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   /**
    * Tests the retrieval of an existing merge schema. <br/>
    * Folder: src/test/resources/provider<br/>
@@ -116,4 +161,366 @@ public class MergeSchemaProviderImplTest {
     assertEquals("Wrong default criterion returned", "./*", crit.getXpath());
   }
 
+
+  /**
+   * Tests that the merge plan of a merge schema is compiled once and shared afterwards<br/>
+   * Folder: src/test/resources/provider<br/>
+   * Retrieve: ./namespace_a.xml
+   */
+  @Test
+  public void testMergePlanIsShared() {
+
+    MergePlanProvider provider = (MergePlanProvider) MergeSchemaProviderImpl.getProviderForPath(this.path);
+    MergePlan plan = provider.getMergePlan(this.namespaceA);
+    assertSame("Plan compiled for another merge schema", provider.getMergeSchemaForNamespaceURI(this.namespaceA),
+        plan.getMergeSchema());
+    assertSame("Plan compiled twice", plan, provider.getMergePlan(this.namespaceA));
+  }
+
+  /**
+   * Tests that all merge schemas of a folder are loaded, as they are loaded in parallel<br/>
+   * Folder: src/main/resources/mergeSchemas
+   */
+  @Test
+  public void testLoadBundledMergeSchemas() {
+
+    MergeSchemaProvider provider = MergeSchemaProviderImpl.getProviderForPath("src/main/resources/mergeSchemas");
+    String[] namespaces = { "http://dozer.sourceforge.net", "http://java.sun.com/jsf/html",
+        "http://java.sun.com/jsf/facelets", "http://cxf.apache.org/jaxrs", "http://maven.apache.org/POM/4.0.0",
+        "http://java.sun.com/xml/ns/persistence/orm", "http://www.springframework.org/schema/aop",
+        "http://www.springframework.org/schema/beans", "http://www.springframework.org/schema/context",
+        "http://www.springframework.org/schema/security", "http://www.springframework.org/schema/tx",
+        "http://www.springframework.org/schema/util", "http://www.springframework.org/schema/webflow",
+        "http://www.w3.org/1999/xhtml" };
+    for (String namespace : namespaces) {
+      assertEquals("Wrong merge schema returned", namespace,
+          provider.getMergeSchemaForNamespaceURI(namespace).getDefinition().getNamespace());
+    }
+  }
+
+  /**
+   * Tests that a missing merge schema is reported once per namespace and not on every lookup<br/>
+   * Folder: src/test/resources/provider/testAdditionalNamespace
+   */
+  @Test
+  public void testUnknownNamespaceReportedOnce() {
+
+    Logger logger = (Logger) LoggerFactory.getLogger(MergeSchemaProviderImpl.class);
+    ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    appender.start();
+    logger.addAppender(appender);
+    try {
+      MergeSchemaProvider provider = MergeSchemaProviderImpl.getProviderForPath(this.path + "/testAdditionalNamespace");
+      for (int i = 0; i < 3; i++) {
+        provider.getMergeSchemaForNamespaceURI("unknownNamespaceReportedOnce");
+      }
+      int warnings = 0;
+      for (ILoggingEvent event : appender.list) {
+        if (event.getLevel() == Level.WARN && event.getFormattedMessage().contains("unknownNamespaceReportedOnce")) {
+          warnings++;
+        }
+      }
+      assertEquals("Missing merge schema not reported exactly once", 1, warnings);
+    } finally {
+      logger.detachAppender(appender);
+    }
+  }
+
+  /**
+   * Tests that a refresh only reloads changed merge schemas and keeps the unchanged ones and their plans, also on
+   * repeated refreshes<br/>
+   * Folder: copy of src/test/resources/provider
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testRefreshReloadsChangedSchemasOnly() throws Exception {
+
+    Path folder = copyProviderFolder();
+    MergeSchemaProviderImpl provider = (MergeSchemaProviderImpl) MergeSchemaProviderImpl.getProviderForPath(folder);
+    MergeSchema schemaA = provider.getMergeSchemaForNamespaceURI(this.namespaceA);
+    MergeSchema schemaC = provider.getMergeSchemaForNamespaceURI("c");
+    MergePlan planA = provider.getMergePlan(this.namespaceA);
+    MergePlan planC = provider.getMergePlan("c");
+
+    for (int i = 0; i < 2; i++) {
+      assertTrue("Unchanged merge schemas reloaded", provider.refresh().isEmpty());
+      assertSame("Unchanged merge schema replaced", schemaA, provider.getMergeSchemaForNamespaceURI(this.namespaceA));
+      assertSame("Unchanged merge schema replaced", schemaC, provider.getMergeSchemaForNamespaceURI("c"));
+    }
+
+    changeDefaultCriterion(folder.resolve("namespace_a.xml"), "xyz");
+    assertEquals(Collections.singleton(this.namespaceA), provider.refresh());
+    assertEquals("Changed merge schema not reloaded", "xyz", provider.getDefaultCriterion(this.namespaceA).getXpath());
+    assertNotSame("Plan of a changed merge schema kept", planA, provider.getMergePlan(this.namespaceA));
+    assertSame("Unchanged merge schema replaced", schemaC, provider.getMergeSchemaForNamespaceURI("c"));
+    assertSame("Plan of an unchanged merge schema discarded", planC, provider.getMergePlan("c"));
+
+    Files.delete(folder.resolve("namespace_c.xml"));
+    assertEquals(Collections.singleton("c"), provider.refresh());
+    assertEquals("Removed merge schema still used", this.namespaceDefault,
+        provider.getMergeSchemaForNamespaceURI("c").getDefinition().getNamespace());
+  }
+
+  /**
+   * Tests that a provider of a folder with an index also uses merge schemas added after the index has been created and
+   * reads the namespaces of changed merge schemas from their definitions instead of the index<br/>
+   * Folder: copy of src/test/resources/provider with an index
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testRefreshOfIndexedFolder() throws Exception {
+
+    Path folder = copyProviderFolder();
+    MergeSchemaIndex.create(folder).write(folder);
+    MergeSchemaProviderImpl provider = (MergeSchemaProviderImpl) MergeSchemaProviderImpl.getProviderForPath(folder);
+    assertEquals("c", provider.getMergeSchemaForNamespaceURI("c").getDefinition().getNamespace());
+
+    Path schemaC = folder.resolve("namespace_c.xml");
+    String content = new String(Files.readAllBytes(schemaC), StandardCharsets.UTF_8);
+    Files.write(folder.resolve("namespace_d.xml"),
+        content.replace("namespace=\"c\"", "namespace=\"d\"").getBytes(StandardCharsets.UTF_8));
+    assertEquals(Collections.singleton("d"), provider.refresh());
+    assertEquals("Merge schema missing in the index not used", "d",
+        provider.getMergeSchemaForNamespaceURI("d").getDefinition().getNamespace());
+
+    FileTime modified = Files.getLastModifiedTime(schemaC);
+    Files.write(schemaC, content.replace("namespace=\"c\"", "namespace=\"e\"").getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(schemaC, FileTime.fromMillis(modified.toMillis() + 10000));
+    assertEquals(new HashSet<>(Arrays.asList("c", "e")), provider.refresh());
+    assertEquals("Changed namespace not read from the definition", "e",
+        provider.getMergeSchemaForNamespaceURI("e").getDefinition().getNamespace());
+    assertEquals("Namespace of the index still used", this.namespaceDefault,
+        provider.getMergeSchemaForNamespaceURI("c").getDefinition().getNamespace());
+  }
+
+  /**
+   * Tests that a watched provider reloads a changed merge schema<br/>
+   * Folder: copy of src/test/resources/provider
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testWatchingReloadsChangedSchema() throws Exception {
+
+    Path folder = copyProviderFolder();
+    MergeSchemaProviderImpl provider = (MergeSchemaProviderImpl) MergeSchemaProviderImpl.getProviderForPath(folder);
+    provider.startWatching();
+    try {
+      assertTrue(provider.isWatching());
+      changeDefaultCriterion(folder.resolve("namespace_a.xml"), "xyz");
+      long timeout = System.currentTimeMillis() + 30000;
+      while (!"xyz".equals(provider.getDefaultCriterion(this.namespaceA).getXpath())
+          && System.currentTimeMillis() < timeout) {
+        Thread.sleep(50);
+      }
+      assertEquals("Changed merge schema not reloaded", "xyz", provider.getDefaultCriterion(this.namespaceA).getXpath());
+    } finally {
+      provider.stopWatching();
+    }
+    assertFalse(provider.isWatching());
+  }
+
+  /**
+   * Tests that a lazily loading provider only reads the definitions of the merge schemas on creation and loads a merge
+   * schema on first use of its namespace<br/>
+   * Folder: copy of src/test/resources/provider, the merge schema for 'c' is well-formed up to its definition only
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testLazyLoading() throws Exception {
+
+    Path folder = copyProviderFolder();
+    Path schemaC = folder.resolve("namespace_c.xml");
+    String content = new String(Files.readAllBytes(schemaC), StandardCharsets.UTF_8);
+    Files.write(schemaC, content.replace("</ms:merge-schema>", "").getBytes(StandardCharsets.UTF_8));
+
+    ProviderRegistry registry = ProviderRegistry.getInstance();
+    Logger logger = (Logger) LoggerFactory.getLogger(MergeSchemaProviderImpl.class);
+    ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    appender.start();
+    logger.addAppender(appender);
+    registry.setLazyLoading(true);
+    try {
+      MergeSchemaProviderImpl provider = registry.getProvider(folder);
+      assertTrue(provider.isLazyLoading());
+      assertEquals("Wrong merge schema returned", this.namespaceA,
+          provider.getMergeSchemaForNamespaceURI(this.namespaceA).getDefinition().getNamespace());
+      assertEquals("Merge schema loaded before its first use", 0, countWarnings(appender, schemaC.toString()));
+
+      assertEquals("Broken merge schema used", this.namespaceDefault,
+          provider.getMergeSchemaForNamespaceURI("c").getDefinition().getNamespace());
+      assertEquals("Merge schema not loaded on first use", 1, countWarnings(appender, schemaC.toString()));
+    } finally {
+      registry.setLazyLoading(false);
+      registry.evict(folder);
+      logger.detachAppender(appender);
+    }
+  }
+
+  /**
+   * Tests that a provider writes the binary forms of the loaded merge schemas if enabled and that later providers read
+   * them instead of the XML documents<br/>
+   * Folder: copy of src/test/resources/provider
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testCompiledSchemasWrittenAndRead() throws Exception {
+
+    Path folder = copyProviderFolder();
+    Path schemaA = folder.resolve("namespace_a.xml");
+    ProviderRegistry registry = ProviderRegistry.getInstance();
+    registry.setWritingCompiledSchemas(true);
+    try {
+      MergeSchemaProviderImpl provider = registry.getProvider(folder);
+      assertTrue(provider.isWritingCompiledSchemas());
+      assertTrue("Binary form not written", Files.exists(CompiledMergeSchema.getCompiledFile(schemaA)));
+      assertTrue("Binary forms loaded as merge schemas", provider.refresh().isEmpty());
+    } finally {
+      registry.setWritingCompiledSchemas(false);
+      registry.evict(folder);
+    }
+
+    // the XML document isn't loaded anymore while the binary form is up to date
+    MergeSchema modified = CompiledMergeSchema.read(schemaA);
+    modified.getDefaultCriterion().setXpath("xyz");
+    CompiledMergeSchema.write(modified, schemaA);
+    try {
+      MergeSchemaProvider provider = MergeSchemaProviderImpl.getProviderForPath(folder);
+      assertEquals("Binary form not read", "xyz", provider.getDefaultCriterion(this.namespaceA).getXpath());
+    } finally {
+      registry.evict(folder);
+    }
+  }
+
+  /**
+   * Tests the retrieval of the bundled merge schemas from the classpath, indexed by the build<br/>
+   * Folder: target/classes/mergeSchemas
+   */
+  @Test
+  public void testRetrieveFromClasspath() {
+
+    MergeSchemaProvider provider = MergeSchemaProviderImpl.getProviderForClasspath("mergeSchemas");
+    assertTrue("Index not found", Files.exists(Paths.get(provider.getPath(), MergeSchemaIndex.INDEX_FILE)));
+    assertSame(provider, MergeSchemaProviderImpl.getProviderForClasspath("/mergeSchemas/"));
+    String namespace = "http://www.springframework.org/schema/beans";
+    assertEquals("Wrong merge schema returned", namespace,
+        provider.getMergeSchemaForNamespaceURI(namespace).getDefinition().getNamespace());
+  }
+
+  /**
+   * Tests that merge schemas are read straight from a JAR file and merge like the same merge schemas of a folder<br/>
+   * Folder: src/main/resources/mergeSchemas packed into a JAR
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testRetrieveFromJar() throws Exception {
+
+    Path jar = this.tmp.getRoot().toPath().resolve("schemas.jar");
+    Map<String, String> env = new HashMap<>();
+    env.put("create", "true");
+    try (FileSystem zip = FileSystems.newFileSystem(URI.create("jar:" + jar.toUri()), env)) {
+      Path folder = Files.createDirectories(zip.getPath("/lexeme/schemas"));
+      try (DirectoryStream<Path> dir = Files.newDirectoryStream(Paths.get("src/main/resources/mergeSchemas"))) {
+        for (Path file : dir) {
+          Files.copy(file, folder.resolve(file.getFileName().toString()));
+        }
+      }
+      MergeSchemaIndex.create(folder).write(folder);
+    }
+
+    try (URLClassLoader classLoader = new URLClassLoader(new URL[] { jar.toUri().toURL() }, null)) {
+      MergeSchemaProviderImpl provider = (MergeSchemaProviderImpl) MergeSchemaProviderImpl
+          .getProviderForClasspath("lexeme/schemas", classLoader);
+      try {
+        String base = "src/test/resources/systemtests/bases/Beans1.xml";
+        String patch = "src/test/resources/systemtests/patches/Beans2.xml";
+        LeXeMerger fromJar = new LeXeMerger(provider);
+        LeXeMerger fromFolder = new LeXeMerger("src/main/resources/mergeSchemas");
+        fromFolder.setValidation(false);
+        XMLOutputter outputter = new XMLOutputter();
+        assertEquals(outputter.outputString(merge(fromFolder, base, patch)),
+            outputter.outputString(merge(fromJar, base, patch)));
+        try {
+          provider.startWatching();
+          fail("Expected IOException");
+        } catch (IOException e) {
+          // expected
+        }
+      } finally {
+        provider.close();
+      }
+    }
+  }
+
+  /**
+   * Merges two documents
+   *
+   * @param merger the {@link LeXeMerger} to be used
+   * @param base path of the base document
+   * @param patch path of the patch document
+   * @return the merged document
+   * @throws Exception if the documents can't be merged
+   */
+  private static Document merge(LeXeMerger merger, String base, String patch) throws Exception {
+
+    return merger.merge(JDom2Util.getInstance().getDocument(base), JDom2Util.getInstance().getDocument(patch),
+        ConflictHandlingType.PATCHOVERWRITE);
+  }
+
+  /**
+   * Counts the logged warnings containing the given text
+   *
+   * @param appender the appender which collected the events
+   * @param text the text
+   * @return the number of warnings
+   */
+  private static int countWarnings(ListAppender<ILoggingEvent> appender, String text) {
+
+    int warnings = 0;
+    for (ILoggingEvent event : appender.list) {
+      if (event.getLevel() == Level.WARN && event.getFormattedMessage().contains(text)) {
+        warnings++;
+      }
+    }
+    return warnings;
+  }
+
+  /**
+   * Copies the merge schemas of src/test/resources/provider into a new folder and adds one for the namespace 'c'
+   *
+   * @return the new folder
+   * @throws IOException if the files can't be copied
+   */
+  private Path copyProviderFolder() throws IOException {
+
+    Path folder = this.tmp.newFolder().toPath();
+    for (String file : new String[] { "default.xml", "namespace_a.xml" }) {
+      Files.copy(Paths.get(this.path, file), folder.resolve(file));
+    }
+    String schemaA = new String(Files.readAllBytes(folder.resolve("namespace_a.xml")), StandardCharsets.UTF_8);
+    Files.write(folder.resolve("namespace_c.xml"),
+        schemaA.replace("namespace=\"a\"", "namespace=\"c\"").getBytes(StandardCharsets.UTF_8));
+    return folder;
+  }
+
+  /**
+   * Changes the xpath of the default criterion of a merge schema file copied from namespace_a.xml. The modification
+   * time is set into the future, thus the change is detected independently of the resolution of the file system
+   *
+   * @param file the merge schema file
+   * @param xpath the new xpath
+   * @throws IOException if the file can't be changed
+   */
+  private static void changeDefaultCriterion(Path file, String xpath) throws IOException {
+
+    FileTime modified = Files.getLastModifiedTime(file);
+    String schema = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    Files.write(file, schema.replace("xpath=\"abc\"", "xpath=\"" + xpath + "\"").getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 10000));
+  }
 }
@@ -1,19 +1,35 @@
 package com.github.maybeec.lexeme;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 
 import javax.xml.parsers.ParserConfigurationException;
 
+import org.jdom2.Document;
 import org.jdom2.Element;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
 import org.junit.After;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.AdditionalAnswers;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 
@@ -23,10 +39,15 @@ import com.github.maybeec.lexeme.common.util.JDom2Util;
 import com.github.maybeec.lexeme.merge.element.ElementMerger;
 import com.github.maybeec.lexeme.merge.element.ElementMergerBuilder;
 import com.github.maybeec.lexeme.merge.element.ElementMergerFactory;
+import com.github.maybeec.lexeme.merge.element.matcher.NodeEquivalence;
 import com.github.maybeec.lexeme.mergeschema.Criterion;
 import com.github.maybeec.lexeme.mergeschema.Handling;
 import com.github.maybeec.lexeme.mergeschema.MergeSchema;
 import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProviderImpl;
+import com.github.maybeec.lexeme.validator.DocumentValidator;
+import com.github.maybeec.lexeme.validator.DocumentValidatorBuilder;
+import com.github.maybeec.lexeme.validator.DocumentValidatorFactory;
 
 import jakarta.xml.bind.JAXBException;
 
@@ -35,6 +56,12 @@ import jakarta.xml.bind.JAXBException;
  */
 public class XMLMergerTest {
 
+  /**
+   * Temporary folder for converted documents
+   */
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   /**
    * Test method for {@link LeXeMerger#merge(Element, Element, ConflictHandlingType)} Tests if an Exception is thrown by
    * different namespaces
@@ -156,6 +183,274 @@ public class XMLMergerTest {
 
   }
 
+  /**
+   * Tests that the {@link ValidationMode} decides whether a merge result is validated
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testValidationModes() throws Exception {
+
+    MergeSchemaProvider provider = Mockito.mock(MergeSchemaProvider.class);
+    final ElementMerger elementMerger = Mockito.mock(ElementMerger.class);
+    final DocumentValidator validator = Mockito.mock(DocumentValidator.class);
+    ElementMergerFactory.setBuilder(new ElementMergerBuilder() {
+
+      @Override
+      public ElementMerger build(Handling handling, MergeSchemaProvider provider) {
+
+        return elementMerger;
+      }
+
+      @Override
+      public ElementMerger build(List<Handling> scope, Handling handling, MergeSchemaProvider provider) {
+
+        return elementMerger;
+      }
+
+    });
+    DocumentValidatorFactory.setBuilder(new DocumentValidatorBuilder() {
+
+      @Override
+      public DocumentValidator build(MergeSchemaProvider provider) {
+
+        return validator;
+      }
+    });
+    Mockito.when(provider.getMergeSchemaForNamespaceURI(ArgumentMatchers.anyString())).thenReturn(new MergeSchema());
+    Element e = new Element("foo");
+    Mockito.when(elementMerger.merge(ArgumentMatchers.any(Element.class), ArgumentMatchers.any(Element.class),
+        ArgumentMatchers.any(ConflictHandlingType.class))).thenReturn(e);
+
+    LeXeMerger test = LeXeMeFactory.build(provider);
+    test.setValidationMode(ValidationMode.NONE);
+    test.merge(e, e, ConflictHandlingType.PATCHOVERWRITEVALIDATE);
+    Mockito.verify(validator, Mockito.never()).validate(e);
+
+    test.setValidationMode(ValidationMode.LAZY);
+    test.merge(e, e, ConflictHandlingType.PATCHOVERWRITE);
+    Mockito.verify(validator, Mockito.never()).validate(e);
+    test.merge(e, e, ConflictHandlingType.PATCHOVERWRITEVALIDATE);
+    Mockito.verify(validator, Mockito.times(1)).validate(e);
+
+    test.setValidationMode(ValidationMode.ALWAYS);
+    test.merge(e, e, ConflictHandlingType.PATCHOVERWRITE);
+    Mockito.verify(validator, Mockito.times(2)).validate(e);
+    Mockito.verify(validator, Mockito.times(2)).setStrict(true);
+
+    assertEquals(2, test.getValidationStatistics().getValidationCount());
+    assertEquals(2, test.getValidationStatistics().getSkippedCount());
+    assertEquals(0, test.getValidationStatistics().getFailureCount());
+  }
+
+  /**
+   * Tests that a document merge merges and validates exactly once, also if the merge result already belongs to a
+   * document
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testDocumentMergeMergesOnce() throws Exception {
+
+    MergeSchemaProvider provider = Mockito.mock(MergeSchemaProvider.class);
+    final ElementMerger elementMerger = Mockito.mock(ElementMerger.class);
+    final DocumentValidator validator = Mockito.mock(DocumentValidator.class);
+    ElementMergerFactory.setBuilder(new ElementMergerBuilder() {
+
+      @Override
+      public ElementMerger build(Handling handling, MergeSchemaProvider provider) {
+
+        return elementMerger;
+      }
+
+      @Override
+      public ElementMerger build(List<Handling> scope, Handling handling, MergeSchemaProvider provider) {
+
+        return elementMerger;
+      }
+
+    });
+    DocumentValidatorFactory.setBuilder(new DocumentValidatorBuilder() {
+
+      @Override
+      public DocumentValidator build(MergeSchemaProvider provider) {
+
+        return validator;
+      }
+    });
+    Mockito.when(provider.getMergeSchemaForNamespaceURI(ArgumentMatchers.anyString())).thenReturn(new MergeSchema());
+    Document base = new Document(new Element("foo"));
+    Document patch = new Document(new Element("foo"));
+    Element detached = new Element("foo");
+    Mockito.when(elementMerger.merge(ArgumentMatchers.any(Element.class), ArgumentMatchers.any(Element.class),
+        ArgumentMatchers.any(ConflictHandlingType.class))).thenReturn(base.getRootElement(), detached);
+
+    LeXeMerger test = LeXeMeFactory.build(provider);
+    test.setValidationMode(ValidationMode.ALWAYS);
+    assertSame(base, test.merge(base, patch, ConflictHandlingType.PATCHOVERWRITE));
+    Mockito.verify(elementMerger, Mockito.times(1)).merge(base.getRootElement(), patch.getRootElement(),
+        ConflictHandlingType.PATCHOVERWRITE);
+    Mockito.verify(validator, Mockito.times(1)).validate(base.getRootElement());
+
+    assertSame(detached, test.merge(base, patch, ConflictHandlingType.PATCHOVERWRITE).getRootElement());
+    Mockito.verify(elementMerger, Mockito.times(2)).merge(base.getRootElement(), patch.getRootElement(),
+        ConflictHandlingType.PATCHOVERWRITE);
+    Mockito.verify(validator, Mockito.times(1)).validate(detached);
+  }
+
+  /**
+   * Tests that a destructive merge returns the same result as a copying one, but moves unmatched subtrees of base and
+   * patch into the result
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testDestructiveMerge() throws Exception {
+
+    String ns = "xmlns=\"http://www.springframework.org/schema/beans\"";
+    String base = "<beans " + ns + "><bean id=\"a\"><property name=\"p\" value=\"1\"/></bean>"
+        + "<alias name=\"a\" alias=\"b\"/></beans>";
+    String patch = "<beans " + ns + "><bean id=\"a\"><property name=\"r\"/></bean><import resource=\"c\"/></beans>";
+    SAXBuilder builder = new SAXBuilder();
+    LeXeMerger merger = new LeXeMerger("src/main/resources/mergeSchemas");
+    merger.setValidation(false);
+    String expected = JDom2Util.getInstance().parseString(merger.merge(builder.build(new StringReader(base)),
+        builder.build(new StringReader(patch)), ConflictHandlingType.PATCHOVERWRITE));
+
+    Document baseDoc = builder.build(new StringReader(base));
+    Document patchDoc = builder.build(new StringReader(patch));
+    Element unmatchedBase = baseDoc.getRootElement().getChildren().get(1);
+    Element unmatchedPatch = patchDoc.getRootElement().getChildren().get(1);
+    merger.setDestructive(true);
+    Document result = merger.merge(baseDoc, patchDoc, ConflictHandlingType.PATCHOVERWRITE);
+
+    assertEquals(expected, JDom2Util.getInstance().parseString(result));
+    assertSame(result.getRootElement(), unmatchedBase.getParentElement());
+    assertSame(result.getRootElement(), unmatchedPatch.getParentElement());
+    assertEquals(0, baseDoc.getRootElement().getContentSize());
+    assertEquals(0, patchDoc.getRootElement().getContentSize());
+  }
+
+  /**
+   * Tests that the MergeSchemas of a provider which doesn't provide merge plans are compiled by the LeXeMerger, which
+   * merges like with a plan providing provider
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testProviderWithoutPlans() throws Exception {
+
+    String ns = "xmlns=\"http://www.springframework.org/schema/beans\"";
+    String base = "<beans " + ns + "><bean id=\"a\"><property name=\"p\" value=\"1\"/></bean></beans>";
+    String patch = "<beans " + ns + "><bean id=\"a\"><property name=\"r\"/></bean><bean id=\"b\"/></beans>";
+    SAXBuilder builder = new SAXBuilder();
+    MergeSchemaProvider provider =
+        MergeSchemaProviderImpl.getProviderForPath(Paths.get("src/main/resources/mergeSchemas"));
+    String expected = JDom2Util.getInstance().parseString(new LeXeMerger(provider)
+        .merge(builder.build(new StringReader(base)), builder.build(new StringReader(patch)),
+            ConflictHandlingType.PATCHOVERWRITE));
+
+    MergeSchemaProvider withoutPlans = Mockito.mock(MergeSchemaProvider.class, AdditionalAnswers.delegatesTo(provider));
+    LeXeMerger merger = new LeXeMerger(withoutPlans);
+    for (int i = 0; i < 2; i++) {
+      assertEquals(expected, JDom2Util.getInstance().parseString(merger.merge(builder.build(new StringReader(base)),
+          builder.build(new StringReader(patch)), ConflictHandlingType.PATCHOVERWRITE)));
+    }
+  }
+
+  /**
+   * Tests that the node equivalence of a LeXeMerger is used to match elements
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testNodeEquivalence() throws Exception {
+
+    String ns = "xmlns=\"http://maven.apache.org/POM/4.0.0\"";
+    String base = "<project " + ns + "><modules><module>core</module></modules></project>";
+    String patch = "<project " + ns + "><modules><module>\n  core\n</module></modules></project>";
+    SAXBuilder builder = new SAXBuilder();
+    LeXeMerger merger = new LeXeMerger("src/main/resources/mergeSchemas");
+    merger.setValidation(false);
+    assertEquals(NodeEquivalence.SERIALIZED, merger.getNodeEquivalence());
+    Document result = merger.merge(builder.build(new StringReader(base)), builder.build(new StringReader(patch)),
+        ConflictHandlingType.PATCHOVERWRITE);
+    assertEquals(2, result.getRootElement().getChildren().get(0).getChildren().size());
+
+    merger.setNodeEquivalence(NodeEquivalence.NORMALIZED);
+    result = merger.merge(builder.build(new StringReader(base)), builder.build(new StringReader(patch)),
+        ConflictHandlingType.PATCHOVERWRITE);
+    assertEquals(1, result.getRootElement().getChildren().get(0).getChildren().size());
+  }
+
+  /**
+   * Tests that files, streams and readers are merged like the file and patch string of the CobiGen API, decoded with the
+   * given charset regardless of the declared encoding
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testInputSources() throws Exception {
+
+    String resources = "src/test/resources/systemtests/";
+    File baseFile = new File(resources + "bases/Beans1.xml");
+    String patch = new String(Files.readAllBytes(Paths.get(resources + "patches/Beans1.xml")), StandardCharsets.UTF_8);
+    LeXeMerger merger = new LeXeMerger(resources + "mergeschemas");
+    merger.setValidation(false);
+    String expected = merger.mergeInString(baseFile, patch, "UTF-8", ConflictHandlingType.PATCHOVERWRITE);
+
+    Path base16 = this.tmp.newFile("base.xml").toPath();
+    Path patch16 = this.tmp.newFile("patch.xml").toPath();
+    Files.write(base16, new String(Files.readAllBytes(baseFile.toPath()), StandardCharsets.UTF_8)
+        .getBytes(StandardCharsets.UTF_16));
+    Files.write(patch16, patch.getBytes(StandardCharsets.UTF_16));
+    JDom2Util util = JDom2Util.getInstance();
+    assertEquals(expected, util.parseString(
+        merger.merge(base16, patch16, StandardCharsets.UTF_16, ConflictHandlingType.PATCHOVERWRITE)));
+    try (InputStream baseStream = Files.newInputStream(base16);
+        InputStream patchStream = Files.newInputStream(patch16)) {
+      assertEquals(expected, util.parseString(
+          merger.merge(baseStream, patchStream, StandardCharsets.UTF_16, ConflictHandlingType.PATCHOVERWRITE)));
+    }
+    try (Reader baseReader = Files.newBufferedReader(baseFile.toPath(), StandardCharsets.UTF_8)) {
+      assertEquals(expected, util.parseString(
+          merger.merge(baseReader, new StringReader(patch), ConflictHandlingType.PATCHOVERWRITE)));
+    }
+  }
+
+  /**
+   * Tests that results written to files, streams and writers equal the serialised results in the requested format and
+   * charset
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testOutputTargets() throws Exception {
+
+    String resources = "src/test/resources/systemtests/";
+    File baseFile = new File(resources + "bases/Beans1.xml");
+    String patch = new String(Files.readAllBytes(Paths.get(resources + "patches/Beans1.xml")), StandardCharsets.UTF_8);
+    LeXeMerger merger = new LeXeMerger(resources + "mergeschemas");
+    merger.setValidation(false);
+    String raw = merger.mergeInString(baseFile, patch, "UTF-8", ConflictHandlingType.PATCHOVERWRITE);
+
+    Path target = this.tmp.newFile("result.xml").toPath();
+    merger.mergeTo(baseFile, patch, "UTF-8", ConflictHandlingType.PATCHOVERWRITE, target, null);
+    assertEquals(raw, new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+
+    Format pretty = Format.getPrettyFormat();
+    String expected = new XMLOutputter(Format.getPrettyFormat().setEncoding("ISO-8859-1"))
+        .outputString(merger.merge(baseFile, patch, "UTF-8", ConflictHandlingType.PATCHOVERWRITE));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    merger.mergeTo(baseFile, patch, "ISO-8859-1", ConflictHandlingType.PATCHOVERWRITE, out, pretty);
+    assertEquals(expected, new String(out.toByteArray(), StandardCharsets.ISO_8859_1));
+    assertEquals("UTF-8", pretty.getEncoding());
+
+    StringWriter writer = new StringWriter();
+    merger.mergeTo(baseFile, patch, "UTF-8", ConflictHandlingType.PATCHOVERWRITE, writer, null);
+    assertEquals(raw, writer.toString());
+  }
+
   /**
    * tests the cobigen api
    *
@@ -241,6 +536,7 @@ public class XMLMergerTest {
   public void after() {
 
     ElementMergerFactory.setBuilder(null);
+    DocumentValidatorFactory.setBuilder(null);
   }
 }
 
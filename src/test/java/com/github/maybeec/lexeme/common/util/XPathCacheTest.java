@@ -0,0 +1,77 @@
+package com.github.maybeec.lexeme.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jdom2.Namespace;
+import org.jdom2.xpath.XPathExpression;
+import org.junit.Before;
+import org.junit.Test;
+
+public class XPathCacheTest {
+
+  /**
+   * instance under test
+   */
+  XPathCache cache;
+
+  @Before
+  public void setUp() {
+
+    this.cache = XPathCache.getInstance();
+    this.cache.clear();
+  }
+
+  /**
+   * Tests if an expression is compiled once and served from the cache afterwards
+   */
+  @Test
+  public void testCompileOnce() {
+
+    assertSame(this.cache.compile("./@id"), this.cache.compile("./@id"));
+    assertEquals(1, this.cache.getMissCount());
+    assertEquals(1, this.cache.getHitCount());
+    assertEquals(1, this.cache.size());
+  }
+
+  /**
+   * Tests if the namespace context is part of the cache key
+   */
+  @Test
+  public void testNamespaceContext() {
+
+    Namespace a = Namespace.getNamespace("x", "a");
+    Namespace b = Namespace.getNamespace("x", "b");
+    assertNotSame(this.cache.compile("./x:foo", a), this.cache.compile("./x:foo", b));
+    assertSame(this.cache.compile("./x:foo", a), this.cache.compile("./x:foo", Namespace.getNamespace("x", "a")));
+    assertEquals(2, this.cache.getMissCount());
+  }
+
+  /**
+   * Tests if every thread compiles its own expressions, as compiled expressions aren't thread-safe
+   *
+   * @throws InterruptedException shouldn't happen
+   */
+  @Test
+  public void testExpressionsPerThread() throws InterruptedException {
+
+    XPathExpression<Object> own = this.cache.compile("./@id");
+    final AtomicReference<XPathExpression<Object>> other = new AtomicReference<>();
+    Thread thread = new Thread(new Runnable() {
+
+      @Override
+      public void run() {
+
+        other.set(XPathCache.getInstance().compile("./@id"));
+      }
+    });
+    thread.start();
+    thread.join();
+    assertNotSame(own, other.get());
+    assertSame(own, this.cache.compile("./@id"));
+    assertEquals(2, this.cache.getMissCount());
+  }
+}
@@ -2,6 +2,8 @@ package com.github.maybeec.lexeme.merge.element;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -34,6 +36,7 @@ import com.github.maybeec.lexeme.common.util.JDom2Util;
 import com.github.maybeec.lexeme.merge.element.matcher.ElementComparator;
 import com.github.maybeec.lexeme.merge.element.matcher.ElementComparatorBuilder;
 import com.github.maybeec.lexeme.merge.element.matcher.ElementComparatorFactory;
+import com.github.maybeec.lexeme.merge.element.matcher.NodeEquivalence;
 import com.github.maybeec.lexeme.mergeschema.Attribute;
 import com.github.maybeec.lexeme.mergeschema.Criterion;
 import com.github.maybeec.lexeme.mergeschema.Definition;
@@ -632,8 +635,177 @@ public class ElementMergerImplTest {
 
   }
 
+  /**
+   * Tests {@link ElementMergerImpl#merge(Element, Element, ConflictHandlingType)} with keyed criteria. The base element
+   * has to be merged with the first patch element of the same key in document order, even if a patch element which
+   * can't be keyed precedes it.
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testKeyedMatchingPreservesDocumentOrder() throws Exception {
+
+    Element base = new Element("A");
+    base.addContent(new Element("B").setAttribute("id", "2"));
+    base.addContent(new Element("B").setAttribute("id", "1"));
+
+    Element patch = new Element("A");
+    patch.addContent(new Element("B").setAttribute("id", "1").setAttribute("n", "first"));
+    patch.addContent(new Element("B").setAttribute("id", "2").addContent(new Element("x")));
+    patch.addContent(new Element("B").setAttribute("id", "1").setAttribute("n", "second"));
+    patch.addContent(new Element("B").setAttribute("id", "2").setAttribute("n", "keyed"));
+
+    Handling rootHandling = new Handling();
+    rootHandling.setFor("A");
+    Handling childHandling = new Handling();
+    childHandling.setFor("B");
+    Criterion criterion = new Criterion();
+    criterion.setXpath("./@id | ./x");
+    criterion.setOrdered(true);
+    childHandling.getCriterion().add(criterion);
+    rootHandling.getHandling().add(childHandling);
+
+    MergeSchemaProvider provider = mock(MergeSchemaProvider.class);
+    ElementMergerImpl test = new ElementMergerImpl(rootHandling, provider);
+    Element result = test.merge(base, patch, ConflictHandlingType.PATCHOVERWRITE);
+
+    List<Element> children = result.getChildren("B");
+    assertEquals(4, children.size());
+    assertEquals("2", children.get(0).getAttributeValue("id"));
+    assertEquals("keyed", children.get(0).getAttributeValue("n"));
+    assertEquals("1", children.get(1).getAttributeValue("id"));
+    assertEquals("first", children.get(1).getAttributeValue("n"));
+  }
+
+  /**
+   * Tests that the mergers and comparators of child elements are built once per Handling and shared by siblings and
+   * subsequent merges, unless a custom builder is used
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testChildMergersAndComparatorsAreShared() throws Exception {
+
+    Handling rootHandling = new Handling();
+    rootHandling.setFor("A");
+    Handling childHandling = new Handling();
+    childHandling.setFor("B");
+    Criterion criterion = new Criterion();
+    criterion.setXpath("./@id");
+    childHandling.getCriterion().add(criterion);
+    rootHandling.getHandling().add(childHandling);
+
+    MergeSchemaProvider provider = mock(MergeSchemaProvider.class);
+    when(provider.getDefaultCriterion(ArgumentMatchers.<String> any())).thenReturn(criterion);
+    HandlingPlan plan = HandlingPlan.compile(rootHandling, null, provider);
+    ElementMergerImpl test = new ElementMergerImpl(plan, provider);
+    for (int i = 0; i < 2; i++) {
+      Element result = test.merge(createSiblings(), createSiblings(), ConflictHandlingType.PATCHOVERWRITE);
+      assertEquals(2, result.getChildren("B").size());
+      assertEquals(2, result.getChildren("C").size());
+    }
+
+    HandlingPlan childPlan = plan.child(childHandling);
+    assertSame(childPlan, plan.child(childHandling));
+    assertSame(childPlan.getMerger(provider), plan.child(childHandling).getMerger(provider));
+    ElementComparator comparator = plan.getComparator(childHandling, NodeEquivalence.SERIALIZED);
+    assertSame(comparator, plan.getComparator(childHandling, NodeEquivalence.SERIALIZED));
+    ElementComparator normalized = plan.getComparator(childHandling, NodeEquivalence.NORMALIZED);
+    assertNotSame(comparator, normalized);
+    assertSame(normalized, plan.getComparator(childHandling, NodeEquivalence.NORMALIZED));
+    Handling defaultHandling = plan.getDefaultHandling("C", null);
+    assertSame(defaultHandling, plan.getDefaultHandling("C", null));
+    assertSame(defaultHandling, plan.getDefaultHandling("D", null));
+    assertSame(plan.child(defaultHandling), plan.child(defaultHandling));
+    Handling foreign = new Handling();
+    assertNotSame(plan.child(foreign), plan.child(foreign));
+    assertNotSame(plan.getComparator(foreign, NodeEquivalence.SERIALIZED),
+        plan.getComparator(foreign, NodeEquivalence.SERIALIZED));
+    assertNotSame(childPlan.getMerger(provider), childPlan.getMerger(mock(MergeSchemaProvider.class)));
+
+    final List<ElementComparator> built = new LinkedList<>();
+    ElementComparatorFactory.setBuilder(new ElementComparatorBuilder() {
+
+      @Override
+      public ElementComparator build(List<Criterion> criterionList, MergeSchemaProvider p) {
+
+        ElementComparator comparator = mock(ElementComparator.class);
+        built.add(comparator);
+        return comparator;
+      }
+    });
+    assertNotSame(plan.getComparator(childHandling, NodeEquivalence.SERIALIZED),
+        plan.getComparator(childHandling, NodeEquivalence.SERIALIZED));
+    assertEquals(2, built.size());
+  }
+
+  /**
+   * Tests that builders which don't build ElementMergers from plans are invoked with the Handling of a child element
+   * and the scope of its parent
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testCustomBuilderGetsHandlingAndScope() throws Exception {
+
+    Handling rootHandling = new Handling();
+    rootHandling.setFor("A");
+    Handling childHandling = new Handling();
+    childHandling.setFor("B");
+    Criterion criterion = new Criterion();
+    criterion.setXpath("./@id");
+    childHandling.getCriterion().add(criterion);
+    rootHandling.getHandling().add(childHandling);
+
+    MergeSchemaProvider provider = mock(MergeSchemaProvider.class);
+    when(provider.getDefaultCriterion(ArgumentMatchers.<String> any())).thenReturn(criterion);
+    HandlingPlan plan = HandlingPlan.compile(rootHandling, null, provider);
+    final List<Handling> handlings = new LinkedList<>();
+    final List<List<Handling>> scopes = new LinkedList<>();
+    ElementMergerFactory.setBuilder(new ElementMergerBuilder() {
+
+      @Override
+      public ElementMerger build(Handling handling, MergeSchemaProvider p) {
+
+        return new ElementMergerImpl(handling, p);
+      }
+
+      @Override
+      public ElementMerger build(List<Handling> scope, Handling handling, MergeSchemaProvider p) {
+
+        handlings.add(handling);
+        scopes.add(scope);
+        return new ElementMergerImpl(handling, scope, p);
+      }
+    });
+
+    Element result = new ElementMergerImpl(plan, provider).merge(createSiblings(), createSiblings(),
+        ConflictHandlingType.PATCHOVERWRITE);
+    assertEquals(2, result.getChildren("B").size());
+    assertEquals(2, result.getChildren("C").size());
+    assertTrue(handlings.contains(childHandling));
+    for (List<Handling> scope : scopes) {
+      assertSame(plan.getScope(), scope);
+    }
+  }
+
   /*---------------------Helper----------------------------*/
 
+  /**
+   * Creates an element A with two children B identified by their id and two children C without Handling
+   *
+   * @return the element A
+   */
+  private static Element createSiblings() {
+
+    Element element = new Element("A");
+    element.addContent(new Element("B").setAttribute("id", "1"));
+    element.addContent(new Element("B").setAttribute("id", "2"));
+    element.addContent(new Element("C").setAttribute("id", "1"));
+    element.addContent(new Element("C").setAttribute("id", "2"));
+    return element;
+  }
+
   /**
    * Loads a MergeSchema from specified XML document file
    *
@@ -0,0 +1,177 @@
+package com.github.maybeec.lexeme.merge.element.matcher;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.jdom2.Element;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.maybeec.lexeme.mergeschema.Criterion;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
+
+/**
+ * Tests {@link ComparisonCache} and its usage by {@link ElementComparatorImpl}
+ */
+public class ComparisonCacheTest {
+
+  /**
+   * Mocked provider
+   */
+  MergeSchemaProvider provider;
+
+  /**
+   * Build up method
+   */
+  @Before
+  public void before() {
+
+    this.provider = Mockito.mock(MergeSchemaProvider.class);
+  }
+
+  /**
+   * Releases a cache left open by a failed test
+   */
+  @After
+  public void after() {
+
+    while (ComparisonCache.getCurrent() != null) {
+      ComparisonCache.close();
+    }
+  }
+
+  /**
+   * Tests that nested merges share the cache of the outermost merge, which is released after it
+   */
+  @Test
+  public void testOpenAndClose() {
+
+    assertNull(ComparisonCache.getCurrent());
+    ComparisonCache.open();
+    ComparisonCache cache = ComparisonCache.getCurrent();
+    assertNotNull(cache);
+    ComparisonCache.open();
+    assertSame(cache, ComparisonCache.getCurrent());
+    ComparisonCache.close();
+    assertSame(cache, ComparisonCache.getCurrent());
+    ComparisonCache.close();
+    assertNull(ComparisonCache.getCurrent());
+  }
+
+  /**
+   * Tests that the result of a comparison is computed once per merge
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testResultsAreMemoised() throws Exception {
+
+    ElementComparatorImpl comparator = getComparator("./@a", true);
+    Element base = new Element("A").setAttribute("a", "1");
+    Element patch = new Element("A").setAttribute("a", "1");
+
+    ComparisonCache.open();
+    assertTrue(comparator.compare(base, patch));
+    patch.setAttribute("a", "2");
+    assertTrue(comparator.compare(base, patch));
+    ComparisonCache.close();
+
+    assertFalse(comparator.compare(base, patch));
+  }
+
+  /**
+   * Tests that forgotten and cleared evaluations are computed again
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testForgetAndClear() throws Exception {
+
+    ElementComparatorImpl comparator = getComparator("./@a", true);
+    Element base = new Element("A").setAttribute("a", "1");
+    Element patch = new Element("A").setAttribute("a", "1");
+
+    ComparisonCache.open();
+    try {
+      assertTrue(comparator.compare(base, patch));
+      patch.setAttribute("a", "2");
+      assertTrue(comparator.compare(base, patch));
+      // the result is cached with the base element
+      ComparisonCache.forget(base);
+      assertFalse(comparator.compare(base, patch));
+
+      patch.setAttribute("a", "1");
+      ComparisonCache.clear();
+      assertTrue(comparator.compare(base, patch));
+    } finally {
+      ComparisonCache.close();
+    }
+  }
+
+  /**
+   * Tests that elements with different fingerprints are rejected without comparing nested elements
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testDifferentFingerprintsAreRejected() throws Exception {
+
+    ElementComparatorImpl comparator = getComparator("./*", false);
+    Element base = new Element("A").addContent(new Element("B")).addContent(new Element("C"));
+    Element patch = new Element("A").addContent(new Element("B")).addContent(new Element("D"));
+
+    ComparisonCache.open();
+    try {
+      assertFalse(comparator.compare(base, patch));
+    } finally {
+      ComparisonCache.close();
+    }
+    Mockito.verify(this.provider, Mockito.never()).getDeepCriterion(Mockito.anyString(), Mockito.anyString());
+  }
+
+  /**
+   * Tests that unordered criteria evaluating to the same nodes in another order have equal fingerprints
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testUnorderedFingerprints() throws Exception {
+
+    ElementComparatorImpl comparator = getComparator("./@*", false);
+    Element base = new Element("A").setAttribute("a", "1").setAttribute("b", "2");
+    Element patch = new Element("A").setAttribute("b", "2").setAttribute("a", "1");
+
+    ComparisonCache.open();
+    try {
+      assertTrue(comparator.compare(base, patch));
+      assertFalse(comparator.compare(base, new Element("A").setAttribute("a", "1").setAttribute("b", "3")));
+    } finally {
+      ComparisonCache.close();
+    }
+  }
+
+  /**
+   * Returns an ElementComparatorImpl with a Criterion object containing the given XPath expression
+   *
+   * @param xpath String valid XPath expression
+   * @param ordered whether the Criterion is ordered
+   * @return ElementComparatorImpl
+   */
+  private ElementComparatorImpl getComparator(String xpath, boolean ordered) {
+
+    Criterion criterion = new Criterion();
+    criterion.setXpath(xpath);
+    criterion.setOrdered(ordered);
+    List<Criterion> list = new LinkedList<>();
+    list.add(criterion);
+    return new ElementComparatorImpl(list, this.provider);
+  }
+}
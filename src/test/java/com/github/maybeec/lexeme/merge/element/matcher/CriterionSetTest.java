@@ -0,0 +1,73 @@
+package com.github.maybeec.lexeme.merge.element.matcher;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.maybeec.lexeme.mergeschema.Criterion;
+
+/**
+ * Tests {@link CriterionSet}
+ */
+public class CriterionSetTest {
+
+  /**
+   * Tests that the first node applying to a name in depth-first order wins
+   */
+  @Test
+  public void testFindCriteriaInDepthFirstOrder() {
+
+    List<Criterion> rootCriteria = new LinkedList<>();
+    List<Criterion> deepCriteria = new LinkedList<>();
+    List<Criterion> shallowCriteria = new LinkedList<>();
+    CriterionSet root = new CriterionSet("root", rootCriteria);
+    CriterionSet first = new CriterionSet("first", new LinkedList<Criterion>());
+    first.addChild(new CriterionSet("item", deepCriteria));
+    root.addChild(first);
+    root.addChild(new CriterionSet("item", shallowCriteria));
+    root.addChild(new CriterionSet("root", new LinkedList<Criterion>()));
+
+    assertSame(rootCriteria, root.findCriteria("root"));
+    assertSame(deepCriteria, root.findCriteria("item"));
+    assertNull(root.findCriteria("unknown"));
+  }
+
+  /**
+   * Tests that added children are found after a former lookup
+   */
+  @Test
+  public void testAddChildAfterLookup() {
+
+    CriterionSet root = new CriterionSet("root", new LinkedList<Criterion>());
+    assertNull(root.findCriteria("item"));
+    List<Criterion> criteria = new LinkedList<>();
+    root.addChild(new CriterionSet("item", criteria));
+    assertSame(criteria, root.findCriteria("item"));
+  }
+
+  /**
+   * Tests that names behind a node without name can't be found, like in a depth-first search failing at that node
+   */
+  @Test
+  public void testNodeWithoutName() {
+
+    List<Criterion> criteria = new LinkedList<>();
+    CriterionSet root = new CriterionSet("root", new LinkedList<Criterion>());
+    root.addChild(new CriterionSet("first", criteria));
+    root.addChild(new CriterionSet(null, new LinkedList<Criterion>()));
+    root.addChild(new CriterionSet("last", new LinkedList<Criterion>()));
+
+    assertSame(criteria, root.findCriteria("first"));
+    try {
+      root.findCriteria("last");
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+}
@@ -1,6 +1,9 @@
 package com.github.maybeec.lexeme.merge.element.matcher;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.LinkedList;
@@ -9,6 +12,7 @@ import java.util.List;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPathExpressionException;
 
+import org.jdom2.CDATA;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.Text;
@@ -307,4 +311,59 @@ public class ElementComparatorImplTest {
     assertTrue(test.nodeBasedCompare(doc1.getRootElement(), doc2.getRootElement()));
 
   }
+  /**
+   * Test method for {@link ElementComparatorImpl#getMatchingKey(Element)}
+   * <p>
+   * Elements matching via attributes get equal keys, mismatching elements different ones
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testMatchingKeyConsistentWithCompare() throws Exception {
+
+    ElementComparatorImpl test = getComparatorFromXpath("./@a");
+    Element root1 = new Element("A").setAttribute("a", "1");
+    Element root2 = new Element("A").setAttribute("a", "1");
+    Element root3 = new Element("A").setAttribute("a", "2");
+
+    assertNotNull(test.getMatchingKey(root1));
+    assertEquals(test.compare(root1, root2), test.getMatchingKey(root1).equals(test.getMatchingKey(root2)));
+    assertEquals(test.compare(root1, root3), test.getMatchingKey(root1).equals(test.getMatchingKey(root3)));
+  }
+
+  /**
+   * Test method for {@link ElementComparatorImpl#getMatchingKey(Element)}
+   * <p>
+   * Criteria selecting elements are compared with nested criteria and can't be keyed
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testMatchingKeyOfElementCriterion() throws Exception {
+
+    Element root = new Element("A");
+    root.addContent(new Element("B"));
+    assertNull(getComparatorFromXpath("./*").getMatchingKey(root));
+  }
+
+  /**
+   * Test method for {@link ElementComparatorImpl#getMatchingKey(Element)}
+   * <p>
+   * Text nodes get equal keys iff they match, CDATA sections don't match text nodes of the same text
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testMatchingKeyOfTextNodes() throws Exception {
+
+    ElementComparatorImpl test = getComparatorFromXpath("./text()");
+    Element text = new Element("A").addContent("x < y");
+    Element sameText = new Element("A").addContent("x < y");
+    Element cdata = new Element("A").addContent(new CDATA("x < y"));
+
+    assertTrue(test.compare(text, sameText));
+    assertEquals(test.getMatchingKey(text), test.getMatchingKey(sameText));
+    assertFalse(test.compare(text, cdata));
+    assertFalse(test.getMatchingKey(text).equals(test.getMatchingKey(cdata)));
+  }
 }
@@ -0,0 +1,188 @@
+package com.github.maybeec.lexeme.merge.element.matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jdom2.Attribute;
+import org.jdom2.CDATA;
+import org.jdom2.Comment;
+import org.jdom2.Element;
+import org.jdom2.EntityRef;
+import org.jdom2.Namespace;
+import org.jdom2.ProcessingInstruction;
+import org.jdom2.Text;
+import org.junit.Test;
+
+import com.github.maybeec.lexeme.common.util.JDom2Util;
+
+/**
+ * Tests {@link NodeEquivalence}
+ */
+public class NodeEquivalenceTest {
+
+  /**
+   * Namespace with prefix a
+   */
+  Namespace nsA = Namespace.getNamespace("a", "http://example.org/a");
+
+  /**
+   * The same URI with prefix b
+   */
+  Namespace nsB = Namespace.getNamespace("b", "http://example.org/a");
+
+  /**
+   * Another URI with prefix a
+   */
+  Namespace nsC = Namespace.getNamespace("a", "http://example.org/c");
+
+  /**
+   * Default namespace
+   */
+  Namespace nsDefault = Namespace.getNamespace("http://example.org/a");
+
+  /**
+   * Tests that {@link NodeEquivalence#SERIALIZED} decides exactly like comparing the String representations, for all
+   * pairs of a set of nodes covering prefixes, namespace declarations, attribute order, adjacent and empty text, CDATA
+   * sections, comments and empty elements
+   */
+  @Test
+  public void testSerializedEqualsStringComparison() {
+
+    List<Object> nodes = createNodes();
+    // build the same nodes twice, thus equal nodes aren't identical
+    List<Object> others = createNodes();
+    for (Object base : nodes) {
+      for (Object patch : others) {
+        String baseString = JDom2Util.getInstance().parseString(base);
+        String patchString = JDom2Util.getInstance().parseString(patch);
+        assertEquals(baseString + " vs. " + patchString, baseString.equals(patchString),
+            NodeEquivalence.SERIALIZED.isEquivalent(base, patch));
+      }
+    }
+  }
+
+  /**
+   * Tests the equivalences of nodes which serialize equally, though built differently
+   */
+  @Test
+  public void testSerializedCoalescesText() {
+
+    Element base = new Element("e").addContent("ab").addContent(new Element("x"));
+    Element patch = new Element("e").addContent("a").addContent("").addContent("b").addContent(new Element("x"));
+    assertTrue(NodeEquivalence.SERIALIZED.isEquivalent(base, patch));
+    assertFalse(NodeEquivalence.SERIALIZED.isEquivalent(base,
+        new Element("e").addContent(new CDATA("ab")).addContent(new Element("x"))));
+    assertFalse(NodeEquivalence.SERIALIZED.isEquivalent(new Element("e"), new Element("e").addContent("")));
+  }
+
+  /**
+   * Tests {@link NodeEquivalence#NORMALIZED}
+   */
+  @Test
+  public void testNormalized() {
+
+    Element base = new Element("e", this.nsA).setAttribute("x", "1").setAttribute("y", "2")
+        .addContent(" some  text ").addContent(new Element("c", this.nsA));
+    Element patch = new Element("e", this.nsB).setAttribute("y", "2").setAttribute("x", "1")
+        .addContent(new CDATA("some")).addContent(new Comment("ignored")).addContent("\n text")
+        .addContent(new Element("c", this.nsB)).addContent("  ");
+    assertTrue(NodeEquivalence.NORMALIZED.isEquivalent(base, patch));
+    assertFalse(NodeEquivalence.SERIALIZED.isEquivalent(base, patch));
+
+    assertFalse(NodeEquivalence.NORMALIZED.isEquivalent(base, base.clone().setAttribute("x", "3")));
+    assertFalse(NodeEquivalence.NORMALIZED.isEquivalent(base, base.clone().setNamespace(this.nsC)));
+    assertFalse(NodeEquivalence.NORMALIZED.isEquivalent(base, base.clone().addContent("more")));
+    assertTrue(NodeEquivalence.NORMALIZED.isEquivalent(new Text(" a \t b"), new CDATA("a b ")));
+  }
+
+  /**
+   * Tests the fallback to the String representations for nodes of different types or not supported content
+   */
+  @Test
+  public void testFallback() {
+
+    assertTrue(NodeEquivalence.SERIALIZED.isEquivalent(new Element("e").addContent("&"),
+        new Element("e").addContent(new EntityRef("amp"))));
+    assertTrue(NodeEquivalence.NORMALIZED.isEquivalent(new Element("e").addContent("&"),
+        new Element("e").addContent(new EntityRef("amp"))));
+    assertTrue(NodeEquivalence.SERIALIZED.isEquivalent("1.0", Double.valueOf(1)));
+    assertFalse(NodeEquivalence.SERIALIZED.isEquivalent(Boolean.TRUE, "false"));
+  }
+
+  /**
+   * Creates the nodes compared by {@link #testSerializedEqualsStringComparison()}
+   *
+   * @return List of nodes
+   */
+  private List<Object> createNodes() {
+
+    List<Object> nodes = new ArrayList<>();
+    nodes.add(new Element("e"));
+    nodes.add(new Element("e").addContent(""));
+    nodes.add(new Element("e").addContent("text"));
+    nodes.add(new Element("e").addContent("te").addContent("xt"));
+    nodes.add(new Element("e").addContent("te").addContent(new Comment("c")).addContent("xt"));
+    nodes.add(new Element("e").addContent("te").addContent(new CDATA("xt")));
+    nodes.add(new Element("e").addContent(new CDATA("text")));
+    nodes.add(new Element("e").addContent(new CDATA("te")).addContent(new CDATA("xt")));
+    nodes.add(new Element("e").addContent(new Comment("text")));
+    nodes.add(new Element("e").addContent("a<b&c\r\nd"));
+    nodes.add(new Element("e").addContent("a&lt;b"));
+    nodes.add(new Element("e").addContent(new ProcessingInstruction("pi", "data")));
+    nodes.add(new Element("e").setAttribute("x", "1").setAttribute("y", "2"));
+    nodes.add(new Element("e").setAttribute("y", "2").setAttribute("x", "1"));
+    nodes.add(new Element("e").setAttribute("x", "1\"&"));
+    nodes.add(new Element("e").setAttribute(new Attribute("x", "1", this.nsA)));
+    nodes.add(new Element("e").setAttribute(new Attribute("x", "1", this.nsC)));
+    nodes.add(new Element("e", this.nsA));
+    nodes.add(new Element("e", this.nsB));
+    nodes.add(new Element("e", this.nsC));
+    nodes.add(new Element("e", this.nsDefault));
+    nodes.add(declare(new Element("e", this.nsA), this.nsA));
+    nodes.add(declare(new Element("e", this.nsA), this.nsDefault));
+    nodes.add(declare(new Element("e", this.nsDefault), this.nsA));
+    nodes.add(new Element("e", this.nsDefault).addContent(new Element("c", this.nsDefault)));
+    nodes.add(new Element("e", this.nsDefault).addContent(new Element("c")));
+    nodes.add(new Element("e", this.nsA).addContent(new Element("c", this.nsA)));
+    nodes.add(new Element("e", this.nsA).addContent(declare(new Element("c", this.nsA), this.nsA)));
+    nodes.add(declare(new Element("e"), this.nsA).addContent(new Element("c", this.nsA)));
+    nodes.add(new Element("e").addContent(new Element("c", this.nsA)));
+    nodes.add(new Element("e").addContent(new Element("c", this.nsA).setAttribute(new Attribute("x", "1", this.nsA))));
+    nodes.add(new Element("e").addContent(new Element("c", this.nsB).setAttribute(new Attribute("x", "1", this.nsA))));
+    nodes.add(new Element("e", this.nsA).addContent(new Element("c", this.nsC)));
+    nodes.add(new Element("e").addContent(new Element("c")).addContent(new Element("d")));
+    nodes.add(new Element("e").addContent(new Element("c").addContent("1")).addContent(new Element("d")));
+    nodes.add(new Element("e").addContent(new Element("c").addContent("2")).addContent(new Element("d")));
+    nodes.add(new Text("text"));
+    nodes.add(new Text("te&xt"));
+    nodes.add(new CDATA("text"));
+    nodes.add(new Comment("text"));
+    nodes.add(new Attribute("x", "1"));
+    nodes.add(new Attribute("x", "1", this.nsA));
+    nodes.add(new Attribute("x", "2"));
+    nodes.add("text");
+    nodes.add("x=\"1\"");
+    nodes.add(Double.valueOf(1));
+    nodes.add(Double.valueOf(-0.0));
+    nodes.add(Double.valueOf(0.0));
+    nodes.add(Boolean.TRUE);
+    return nodes;
+  }
+
+  /**
+   * Adds a namespace declaration to an element
+   *
+   * @param element the element
+   * @param namespace the declared namespace
+   * @return the element
+   */
+  private Element declare(Element element, Namespace namespace) {
+
+    element.addNamespaceDeclaration(namespace);
+    return element;
+  }
+}
@@ -0,0 +1,178 @@
+package com.github.maybeec.lexeme.merge.element.matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.jdom2.Element;
+import org.jdom2.Text;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.maybeec.lexeme.mergeschema.Criterion;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
+
+/**
+ * Tests {@link UnorderedMatcher}
+ */
+public class UnorderedMatcherTest {
+
+  /**
+   * Mocked provider, children are compared by their attribute k
+   */
+  MergeSchemaProvider provider;
+
+  /**
+   * Build up method
+   */
+  @Before
+  public void before() {
+
+    this.provider = Mockito.mock(MergeSchemaProvider.class);
+    Criterion criterion = new Criterion();
+    criterion.setXpath("./@k");
+    criterion.setOrdered(true);
+    List<Criterion> criteria = new LinkedList<>();
+    criteria.add(criterion);
+    Mockito.when(this.provider.getDeepCriterion(Mockito.anyString(), Mockito.anyString())).thenReturn(criteria);
+  }
+
+  /**
+   * Tests that the matcher decides like the pairwise matching of every base node with the first unmatched equivalent
+   * patch node, for random lists of elements, text nodes and attributes
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testEqualsPairwiseMatching() throws Exception {
+
+    ElementComparatorImpl comparator = new ElementComparatorImpl(new LinkedList<Criterion>(), this.provider);
+    UnorderedMatcher matcher = new UnorderedMatcher(comparator, this.provider, NodeEquivalence.SERIALIZED);
+    Random random = new Random(42);
+    int matching = 0;
+    for (int i = 0; i < 2000; i++) {
+      int size = 1 + random.nextInt(6);
+      List<Object> base = createNodes(random, size, i % 3);
+      List<Object> patch = random.nextBoolean() ? shuffledCopy(random, base) : createNodes(random, size, i % 3);
+      boolean expected = pairwiseMatches(comparator, base, patch);
+      assertEquals(base + " vs. " + patch, expected, matcher.matches(base, patch));
+      if (expected) {
+        matching++;
+      }
+    }
+    assertTrue(matching > 0);
+  }
+
+  /**
+   * Tests that duplicate plain values keep the semantics of the pairwise matching, which tracks them by value equality
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testDuplicatePlainValues() throws Exception {
+
+    ElementComparatorImpl comparator = new ElementComparatorImpl(new LinkedList<Criterion>(), this.provider);
+    UnorderedMatcher matcher = new UnorderedMatcher(comparator, this.provider, NodeEquivalence.SERIALIZED);
+    List<Object> values = new ArrayList<>();
+    values.add("a");
+    values.add("a");
+    assertFalse(matcher.matches(values, new ArrayList<>(values)));
+
+    List<Object> texts = new ArrayList<>();
+    texts.add(new Text("a"));
+    texts.add(new Text("a"));
+    List<Object> otherTexts = new ArrayList<>();
+    otherTexts.add(new Text("a"));
+    otherTexts.add(new Text("a"));
+    assertTrue(matcher.matches(texts, otherTexts));
+  }
+
+  /**
+   * Creates random nodes of one kind
+   *
+   * @param random source of randomness
+   * @param size number of nodes
+   * @param kind 0 for elements, 1 for text nodes, 2 for attributes
+   * @return List of nodes
+   */
+  private List<Object> createNodes(Random random, int size, int kind) {
+
+    List<Object> nodes = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      String value = String.valueOf(random.nextInt(3));
+      switch (kind) {
+        case 0:
+          Element element = new Element(random.nextInt(4) == 0 ? "b" : "a");
+          if (random.nextInt(4) > 0) {
+            element.setAttribute("k", value);
+          }
+          if (random.nextBoolean()) {
+            element.setAttribute("v", String.valueOf(random.nextInt(2)));
+          }
+          nodes.add(element);
+          break;
+        case 1:
+          nodes.add(new Text(value));
+          break;
+        default:
+          nodes.add(new Element("e").setAttribute("a" + i, value).getAttribute("a" + i));
+      }
+    }
+    return nodes;
+  }
+
+  /**
+   * Copies nodes in random order
+   *
+   * @param random source of randomness
+   * @param nodes the nodes to copy
+   * @return List of copied nodes
+   */
+  private List<Object> shuffledCopy(Random random, List<Object> nodes) {
+
+    List<Object> copy = new ArrayList<>();
+    for (Object node : nodes) {
+      if (node instanceof Element) {
+        copy.add(((Element) node).clone());
+      } else if (node instanceof Text) {
+        copy.add(((Text) node).clone());
+      } else {
+        copy.add(node);
+      }
+    }
+    Collections.shuffle(copy, random);
+    return copy;
+  }
+
+  /**
+   * Matches every base node with the first unmatched equivalent patch node
+   *
+   * @param comparator comparator comparing two nodes
+   * @param base nodes from the base
+   * @param patch nodes from the patch
+   * @return true iff every patch node has been matched
+   * @throws Exception when something somewhere goes wrong
+   */
+  private boolean pairwiseMatches(ElementComparatorImpl comparator, List<Object> base, List<Object> patch)
+      throws Exception {
+
+    List<Object> matches = new LinkedList<>();
+    for (Object baseNode : base) {
+      for (Object patchNode : patch) {
+        if ((comparator.nodeCompare(baseNode, patchNode) || comparator.valueCompare(baseNode, patchNode))
+            && !matches.contains(patchNode)) {
+          matches.add(patchNode);
+          break;
+        }
+      }
+    }
+    return matches.size() == patch.size();
+  }
+}
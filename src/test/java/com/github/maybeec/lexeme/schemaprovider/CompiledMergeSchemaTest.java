@@ -0,0 +1,128 @@
+package com.github.maybeec.lexeme.schemaprovider;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.maybeec.lexeme.mergeschema.MergeSchema;
+
+/**
+ * Tests {@link CompiledMergeSchema}
+ */
+public class CompiledMergeSchemaTest {
+
+  /**
+   * Folder for the MergeSchemas and their binary forms
+   */
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  /**
+   * Tests that the binary forms of the bundled MergeSchemas are read as the MergeSchemas loaded from XML
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testRoundTripOfBundledMergeSchemas() throws Exception {
+
+    Path folder = this.tmp.newFolder().toPath();
+    try (DirectoryStream<Path> dir = Files.newDirectoryStream(Paths.get("src/main/resources/mergeSchemas"), "*.xml")) {
+      for (Path file : dir) {
+        Path source = Files.copy(file, folder.resolve(file.getFileName().toString()));
+        MergeSchema loaded = MergeSchemaProviderImpl.unmarshal(source);
+        CompiledMergeSchema.write(loaded, source);
+        byte[] compiled = Files.readAllBytes(CompiledMergeSchema.getCompiledFile(source));
+
+        MergeSchema read = CompiledMergeSchema.read(source);
+        assertNotNull("Binary form of " + file + " not read", read);
+        assertEquals(loaded.getDefinition().getNamespace(), read.getDefinition().getNamespace());
+        assertEquals(loaded.getHandling().size(), read.getHandling().size());
+        assertEquals(loaded.getDefaultCriterion() == null, read.getDefaultCriterion() == null);
+
+        // everything read is written again
+        CompiledMergeSchema.write(read, source);
+        assertArrayEquals("Binary form of " + file + " changed by a round trip", compiled,
+            Files.readAllBytes(CompiledMergeSchema.getCompiledFile(source)));
+      }
+    }
+  }
+
+  /**
+   * Tests that a binary form created from another XML document isn't used, even if the size of the documents is equal
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testOutdatedBinaryFormIgnored() throws Exception {
+
+    Path source = copySchema();
+    assertNull("Missing binary form read", CompiledMergeSchema.read(source));
+    CompiledMergeSchema.write(MergeSchemaProviderImpl.unmarshal(source), source);
+    assertNotNull(CompiledMergeSchema.read(source));
+
+    FileTime compiled = Files.getLastModifiedTime(CompiledMergeSchema.getCompiledFile(source));
+    Files.setLastModifiedTime(source, FileTime.fromMillis(compiled.toMillis() + 10000));
+    assertNotNull("Binary form of an unchanged XML document ignored", CompiledMergeSchema.read(source));
+
+    byte[] xml = Files.readAllBytes(source);
+    int quote = new String(xml, StandardCharsets.ISO_8859_1).indexOf("\"a\"");
+    xml[quote + 1] = 'b';
+    Files.write(source, xml);
+    Files.setLastModifiedTime(source, FileTime.fromMillis(compiled.toMillis() - 10000));
+    assertNull("Binary form of an XML document of the same size read", CompiledMergeSchema.read(source));
+
+    Files.write(source, "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    assertNull("Binary form of another XML document read", CompiledMergeSchema.read(source));
+  }
+
+  /**
+   * Tests that a corrupt binary form is reported and ignored when loading the MergeSchema
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testCorruptBinaryForm() throws Exception {
+
+    Path source = copySchema();
+    Path compiled = CompiledMergeSchema.getCompiledFile(source);
+    Files.write(compiled, "corrupt".getBytes(StandardCharsets.UTF_8));
+    try {
+      CompiledMergeSchema.read(source);
+      fail("Expected IOException");
+    } catch (IOException e) {
+      // expected
+    }
+    assertNull(CompiledMergeSchema.readIfCurrent(source));
+    assertTrue(CompiledMergeSchema.isCompiledFile(compiled));
+    assertFalse(CompiledMergeSchema.isCompiledFile(source));
+  }
+
+  /**
+   * Copies the MergeSchema for the namespace 'a' into a new folder
+   *
+   * @return the copied MergeSchema
+   * @throws IOException if the MergeSchema can't be copied
+   */
+  private Path copySchema() throws IOException {
+
+    Path source = this.tmp.newFolder().toPath().resolve("namespace_a.xml");
+    return Files.copy(Paths.get("src/test/resources/provider/namespace_a.xml"), source);
+  }
+}
@@ -0,0 +1,60 @@
+package com.github.maybeec.lexeme.schemaprovider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link MergeSchemaIndex}
+ */
+public class MergeSchemaIndexTest {
+
+  /**
+   * Folder for written indexes
+   */
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  /**
+   * Tests that the namespaces of the bundled MergeSchemas are indexed from their definitions
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testCreateIndexOfBundledMergeSchemas() throws Exception {
+
+    MergeSchemaIndex index = MergeSchemaIndex.create(Paths.get("src/main/resources/mergeSchemas"));
+    assertEquals(Arrays.asList("http://www.springframework.org/schema/beans"),
+        index.getNamespaces("springBeans.xml"));
+    assertEquals("xhtml.xml", index.getFileNames().get(index.getFileNames().size() - 1));
+    assertEquals(2, index.getNamespaces("xhtml.xml").size());
+  }
+
+  /**
+   * Tests that a written index is read again and that a folder without index has none
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testWriteAndRead() throws Exception {
+
+    Path folder = this.tmp.newFolder().toPath();
+    assertNull(MergeSchemaIndex.read(folder));
+    Files.copy(Paths.get("src/test/resources/provider/testAdditionalNamespace/namespace_a.xml"),
+        folder.resolve("namespace_a.xml"));
+    Files.write(folder.resolve("other.xml"), "<other/>".getBytes("UTF-8"));
+    MergeSchemaIndex.create(folder).write(folder);
+
+    MergeSchemaIndex index = MergeSchemaIndex.read(folder);
+    assertEquals(Arrays.asList("namespace_a.xml"), index.getFileNames());
+    assertEquals(Arrays.asList("a", "b"), index.getNamespaces("namespace_a.xml"));
+  }
+}
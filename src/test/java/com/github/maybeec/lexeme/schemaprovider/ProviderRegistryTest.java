@@ -0,0 +1,137 @@
+package com.github.maybeec.lexeme.schemaprovider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link ProviderRegistry}
+ */
+public class ProviderRegistryTest {
+
+  /**
+   * Folders for the providers
+   */
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  /**
+   * The tested registry
+   */
+  private ProviderRegistry registry = ProviderRegistry.getInstance();
+
+  /**
+   * Starts every test with an empty registry
+   */
+  @Before
+  public void setUp() {
+
+    this.registry.evictAll();
+    this.registry.getStatistics().reset();
+  }
+
+  /**
+   * Resets the configuration of the registry
+   */
+  @After
+  public void tearDown() {
+
+    this.registry.setMaximumSize(ProviderRegistry.DEFAULT_MAXIMUM_SIZE);
+    this.registry.setIdleTimeout(0, TimeUnit.SECONDS);
+    this.registry.setLazyLoading(false);
+    this.registry.setWritingCompiledSchemas(false);
+    this.registry.evictAll();
+  }
+
+  /**
+   * Tests that different spellings of a path share a provider
+   */
+  @Test
+  public void testPathsAreNormalized() {
+
+    MergeSchemaProvider provider = this.registry.getProvider(Paths.get("src/test/resources/provider"));
+    assertSame(provider, this.registry.getProvider(Paths.get("./src/test/../test/resources/provider")));
+    assertSame(provider, MergeSchemaProviderImpl.getProviderForPath(Paths.get("src/test/resources/provider")
+        .toAbsolutePath()));
+    assertEquals(1, this.registry.size());
+    assertEquals(1, this.registry.getStatistics().getLoadCount());
+    assertEquals(2, this.registry.getStatistics().getHitCount());
+  }
+
+  /**
+   * Tests that the least recently used provider is evicted if the maximum size is exceeded
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testLeastRecentlyUsedEviction() throws Exception {
+
+    Path a = this.tmp.newFolder("a").toPath();
+    Path b = this.tmp.newFolder("b").toPath();
+    Path c = this.tmp.newFolder("c").toPath();
+    this.registry.setMaximumSize(2);
+    MergeSchemaProvider providerA = this.registry.getProvider(a);
+    MergeSchemaProvider providerB = this.registry.getProvider(b);
+    assertSame(providerA, this.registry.getProvider(a));
+    this.registry.getProvider(c);
+
+    assertEquals(2, this.registry.size());
+    assertEquals(1, this.registry.getStatistics().getEvictionCount());
+    assertSame(providerA, this.registry.getProvider(a));
+    assertNotSame(providerB, this.registry.getProvider(b));
+    assertEquals(4, this.registry.getStatistics().getLoadCount());
+    assertEquals(2, this.registry.getStatistics().getHitCount());
+  }
+
+  /**
+   * Tests that providers which haven't been looked up for the idle timeout are evicted
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testIdleEviction() throws Exception {
+
+    Path a = this.tmp.newFolder("a").toPath();
+    this.registry.setIdleTimeout(1, TimeUnit.MILLISECONDS);
+    MergeSchemaProvider provider = this.registry.getProvider(a);
+    Thread.sleep(20);
+    this.registry.evictIdle();
+
+    assertEquals(0, this.registry.size());
+    assertEquals(1, this.registry.getStatistics().getEvictionCount());
+    assertNotSame(provider, this.registry.getProvider(a));
+  }
+
+  /**
+   * Tests that closing a provider removes it from the registry and stops watching its path
+   *
+   * @throws Exception shouldn't happen
+   */
+  @Test
+  public void testCloseRemovesProvider() throws Exception {
+
+    Path a = this.tmp.newFolder("a").toPath();
+    MergeSchemaProviderImpl provider = this.registry.getProvider(a);
+    provider.startWatching();
+    provider.close();
+
+    assertFalse(provider.isWatching());
+    assertEquals(0, this.registry.size());
+    assertEquals(1, this.registry.getStatistics().getRemovalCount());
+    assertNotSame(provider, this.registry.getProvider(a));
+    assertTrue(this.registry.evict(a));
+    assertFalse(this.registry.evict(a));
+  }
+}
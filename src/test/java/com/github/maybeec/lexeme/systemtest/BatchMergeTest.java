@@ -0,0 +1,152 @@
+package com.github.maybeec.lexeme.systemtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.github.maybeec.lexeme.ConflictHandlingType;
+import com.github.maybeec.lexeme.LeXeMerger;
+import com.github.maybeec.lexeme.MergeJob;
+import com.github.maybeec.lexeme.MergeJobResult;
+import com.github.maybeec.lexeme.common.exception.XMLMergeException;
+import com.github.maybeec.lexeme.common.util.JDom2Util;
+import com.github.maybeec.lexeme.schemaprovider.MergeSchemaProvider;
+
+/**
+ * Tests the batch API {@link LeXeMerger#mergeAll(java.util.Collection)}
+ */
+public class BatchMergeTest {
+
+  /**
+   * Path to the used resources folder
+   */
+  String resources = "src/test/resources/systemtests/";
+
+  /**
+   * Documents available as base and patch
+   */
+  String[] documents = { "Beans1.xml", "Beans2.xml", "Beans3.xml" };
+
+  /**
+   * Tests that a batch returns the same results as single merges in the order of the jobs and that a failing job
+   * doesn't abort the batch
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testMergeAll() throws Exception {
+
+    LeXeMerger merger = new LeXeMerger(this.resources + "mergeschemas");
+    List<MergeJob> jobs = new ArrayList<>();
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      for (String document : this.documents) {
+        MergeJob job = createJob(document);
+        jobs.add(job);
+        expected.add(JDom2Util.getInstance().parseString(
+            merger.merge(job.getBase(), job.getPatch(), job.getCharSet(), job.getConflictHandling())));
+      }
+    }
+    MergeJob failing = new MergeJob(new File(this.resources + "bases/NotExisting.xml"), "<a/>", "UTF-8", null);
+    jobs.add(1, failing);
+    expected.add(1, null);
+
+    List<MergeJobResult> results = merger.mergeAll(jobs);
+
+    assertEquals("Not one result per job", jobs.size(), results.size());
+    for (int i = 0; i < jobs.size(); i++) {
+      MergeJobResult result = results.get(i);
+      assertSame("Results not in job order", jobs.get(i), result.getJob());
+      if (expected.get(i) == null) {
+        assertFalse("Failing job reported as successful", result.isSuccessful());
+        assertNull(result.getResult());
+        assertTrue(result.getError() instanceof XMLMergeException);
+      } else {
+        assertTrue("Job failed: " + result.getError(), result.isSuccessful());
+        assertEquals(expected.get(i), JDom2Util.getInstance().parseString(result.getResult()));
+      }
+    }
+  }
+
+  /**
+   * Tests a batch on a given executor, which must not be shut down by the batch
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testMergeAllOnExecutor() throws Exception {
+
+    LeXeMerger merger = new LeXeMerger(this.resources + "mergeschemas");
+    List<MergeJob> jobs = new ArrayList<>();
+    for (String document : this.documents) {
+      jobs.add(createJob(document));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<MergeJobResult> results = merger.mergeAll(jobs, executor);
+      for (MergeJobResult result : results) {
+        assertTrue("Job failed: " + result.getError(), result.isSuccessful());
+      }
+      assertFalse("Executor has been shut down", executor.isShutdown());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Tests that an error of a job isn't reported as a failed job, but rethrown by the batch
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testErrorIsRethrown() throws Exception {
+
+    MergeSchemaProvider provider = mock(MergeSchemaProvider.class, new Answer<Object>() {
+
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+
+        throw new StackOverflowError("provoked");
+      }
+    });
+    LeXeMerger merger = new LeXeMerger(provider);
+    List<MergeJob> jobs = new ArrayList<>();
+    for (String document : this.documents) {
+      jobs.add(createJob(document));
+    }
+    try {
+      merger.mergeAll(jobs);
+      fail("Expected StackOverflowError");
+    } catch (StackOverflowError e) {
+      assertEquals("provoked", e.getMessage());
+    }
+  }
+
+  /**
+   * Creates a job merging the patch of the given document into its base
+   *
+   * @param document file name of base and patch
+   * @return {@link MergeJob}
+   * @throws Exception when the patch can't be read
+   */
+  private MergeJob createJob(String document) throws Exception {
+
+    String patch = JDom2Util.getInstance().readFile(this.resources + "patches/" + document, "UTF-8");
+    return new MergeJob(new File(this.resources + "bases/" + document), patch, "UTF-8",
+        ConflictHandlingType.PATCHOVERWRITE);
+  }
+}
@@ -0,0 +1,108 @@
+package com.github.maybeec.lexeme.systemtest;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.junit.Test;
+
+import com.github.maybeec.lexeme.ConflictHandlingType;
+import com.github.maybeec.lexeme.LeXeMerger;
+import com.github.maybeec.lexeme.common.util.JDom2Util;
+
+/**
+ * Stress test of a LeXeMerger shared between threads
+ */
+public class ConcurrentMergeTest {
+
+  /**
+   * Path to the used resources folder
+   */
+  String resources = "src/test/resources/systemtests/";
+
+  /**
+   * Documents available as base and patch
+   */
+  String[] documents = { "Beans1.xml", "Beans2.xml", "Beans3.xml" };
+
+  /**
+   * Number of threads merging concurrently
+   */
+  int threads = 8;
+
+  /**
+   * Number of merges per thread
+   */
+  int iterations = 30;
+
+  /**
+   * Merges the Spring Beans documents with one LeXeMerger from several threads at once and checks that every result
+   * equals the result of a single threaded merge.
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testSharedMergerUnderContention() throws Exception {
+
+    final LeXeMerger merger = new LeXeMerger(this.resources + "mergeschemas");
+    final String[] expected = new String[this.documents.length];
+    for (int i = 0; i < this.documents.length; i++) {
+      expected[i] = merge(merger, this.documents[i]);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Future<Void>> futures = new ArrayList<>();
+    try {
+      for (int t = 0; t < this.threads; t++) {
+        final int offset = t;
+        futures.add(executor.submit(new Callable<Void>() {
+
+          @Override
+          public Void call() throws Exception {
+
+            start.await();
+            for (int i = 0; i < ConcurrentMergeTest.this.iterations; i++) {
+              int doc = (offset + i) % ConcurrentMergeTest.this.documents.length;
+              assertEquals("Result differs from the single threaded merge", expected[doc],
+                  merge(merger, ConcurrentMergeTest.this.documents[doc]));
+            }
+            return null;
+          }
+        }));
+      }
+      start.countDown();
+      for (Future<Void> future : futures) {
+        // rethrows assertion errors of the worker threads
+        future.get(5, TimeUnit.MINUTES);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Parses base and patch of the given document and merges them
+   *
+   * @param merger the {@link LeXeMerger} to be used
+   * @param document file name of base and patch
+   * @return the merge result as String
+   * @throws Exception when something somewhere goes wrong
+   */
+  private String merge(LeXeMerger merger, String document) throws Exception {
+
+    Document base = JDom2Util.getInstance().getDocument(this.resources + "bases/" + document);
+    Document patch = JDom2Util.getInstance().getDocument(this.resources + "patches/" + document);
+    Element result = merger.merge(base.getRootElement(), patch.getRootElement(), ConflictHandlingType.PATCHOVERWRITE);
+    return JDom2Util.getInstance().parseString(result);
+  }
+}
@@ -0,0 +1,148 @@
+package com.github.maybeec.lexeme.systemtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.maybeec.lexeme.ConflictHandlingType;
+import com.github.maybeec.lexeme.LeXeMerger;
+import com.github.maybeec.lexeme.common.exception.ValidationException;
+import com.github.maybeec.lexeme.common.exception.XMLMergeException;
+
+/**
+ * Tests {@link LeXeMerger#mergeStreaming(File, String, String, ConflictHandlingType, java.io.OutputStream)} against
+ * {@link LeXeMerger#mergeInString(File, String, String, ConflictHandlingType)}
+ */
+public class StreamingMergeTest {
+
+  /**
+   * Path to the used resources folder
+   */
+  String resources = "src/test/resources/systemtests/";
+
+  /**
+   * Pairs of base and patch documents
+   */
+  String[][] documents = { { "Beans1.xml", "Beans1.xml" }, { "Beans2.xml", "Beans2.xml" },
+  { "Beans3.xml", "Beans3.xml" }, { "FirstBase.xml", "FirstPatch.xml" }, { "SecondBase.xml", "SecondPatch.xml" },
+  { "SecondBase.xml", "SecondPatchWithOtherPrefixes.xml" }, { "ThirdBase.xml", "FirstPatch.xml" } };
+
+  /**
+   * Temporary folder for generated bases
+   */
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  /**
+   * Tests that the streaming merge writes the same result as the merge in memory for all documents and conflict
+   * handlings
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testEqualsMergeInString() throws Exception {
+
+    for (String mergeSchemas : new String[] { this.resources + "mergeschemas", "src/main/resources/mergeSchemas" }) {
+      LeXeMerger merger = new LeXeMerger(mergeSchemas);
+      merger.setValidation(false);
+      for (String[] pair : this.documents) {
+        File base = new File(this.resources + "bases/" + pair[0]);
+        String patch = new String(Files.readAllBytes(new File(this.resources + "patches/" + pair[1]).toPath()),
+            StandardCharsets.UTF_8);
+        for (ConflictHandlingType ct : ConflictHandlingType.values()) {
+          assertSameResult(merger, base, patch, ct, pair[0] + "/" + pair[1] + " " + ct + " " + mergeSchemas);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests texts, comments and CDATA sections between and inside the children of the root as well as empty bases and
+   * bases declaring a DOCTYPE
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testMixedContent() throws Exception {
+
+    String ns = "xmlns=\"http://www.springframework.org/schema/beans\"";
+    String mixedBase = "<?xml version=\"1.0\"?>\n<!-- head -->\n<beans " + ns + " default-lazy-init=\"true\">\n"
+        + "  text &amp; more <![CDATA[<raw>]]>\n  <!-- comment -->\n  <bean id=\"a\">\n    <description>x &lt; y"
+        + "<![CDATA[ z ]]>tail</description>\n  </bean>\n  <alias name=\"a\" alias=\"b\"/>\n  <bean id=\"c\"/>\n</beans>";
+    String docTypeBase = "<!DOCTYPE beans PUBLIC \"-//SPRING//DTD BEAN//EN\" \"http://localhost/spring-beans.dtd\">\n"
+        + "<beans><bean id=\"a\"/></beans>";
+    String[] bases = { mixedBase, "<beans " + ns + "/>", "<beans " + ns + ">\n  text only <!-- c -->\n</beans>",
+    docTypeBase };
+    String patch = "<beans " + ns + " default-lazy-init=\"false\">\n  more text\n  <import resource=\"r\"/>\n"
+        + "  <bean id=\"c\"><description>new</description></bean>\n  text &amp; more\n  <bean id=\"d\"/>\n</beans>";
+    LeXeMerger merger = new LeXeMerger("src/main/resources/mergeSchemas");
+    merger.setValidation(false);
+    for (int i = 0; i < bases.length; i++) {
+      File base = this.tmp.newFile("base" + i + ".xml");
+      Files.write(base.toPath(), bases[i].getBytes(StandardCharsets.UTF_8));
+      for (ConflictHandlingType ct : ConflictHandlingType.values()) {
+        assertSameResult(merger, base, patch, ct, "base" + i + " " + ct);
+      }
+    }
+  }
+
+  /**
+   * Tests that the streaming merge validates its result in the default {@link com.github.maybeec.lexeme.ValidationMode}
+   * and doesn't write an invalid result
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testInvalidResult() throws Exception {
+
+    String invalid = "<tns:B xmlns:tns=\"http://www.example.org/FirstSchema\" "
+        + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"http://www.example.org/"
+        + "FirstSchema src/test/resources/validator/FirstSchema.xsd\"><tns:C/></tns:B>";
+    File base = this.tmp.newFile("invalid.xml");
+    Files.write(base.toPath(), invalid.getBytes(StandardCharsets.UTF_8));
+    LeXeMerger merger = new LeXeMerger("src/main/resources/mergeSchemas");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      merger.mergeStreaming(base, invalid, "UTF-8", ConflictHandlingType.PATCHOVERWRITE, out);
+      fail("invalid result not detected");
+    } catch (ValidationException e) {
+      assertEquals(0, out.size());
+    }
+  }
+
+  /**
+   * Asserts that both merges return the same result or fail with the same exception
+   *
+   * @param merger the merger
+   * @param base the base file
+   * @param patch the patch
+   * @param ct the conflict handling
+   * @param message identifies the merge in failure messages
+   */
+  private void assertSameResult(LeXeMerger merger, File base, String patch, ConflictHandlingType ct, String message) {
+
+    String expected;
+    try {
+      expected = merger.mergeInString(base, patch, "UTF-8", ct);
+    } catch (XMLMergeException | RuntimeException e) {
+      expected = e.getClass().getName();
+    }
+    String actual;
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      merger.mergeStreaming(base, patch, "UTF-8", ct, out);
+      actual = new String(out.toByteArray(), StandardCharsets.UTF_8);
+    } catch (XMLMergeException | RuntimeException e) {
+      actual = e.getClass().getName();
+    }
+    assertEquals(message, expected, actual);
+  }
+}
@@ -0,0 +1,89 @@
+package com.github.maybeec.lexeme.validator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.validation.Validator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SchemaCacheTest {
+
+  /**
+   * instance under test
+   */
+  SchemaCache cache;
+
+  /**
+   * system ids of the first and second test schema
+   */
+  List<String> systemIds = Arrays.asList(new File("src/test/resources/validator/FirstSchema.xsd").toURI().toString(),
+      new File("src/test/resources/validator/SecondSchema.xsd").toURI().toString());
+
+  @Before
+  public void setUp() {
+
+    this.cache = SchemaCache.getInstance();
+    this.cache.clear();
+  }
+
+  /**
+   * Tests if a Schema is compiled once per list of schema documents
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testCompileOnce() throws Exception {
+
+    assertSame(this.cache.getSchema(this.systemIds), this.cache.getSchema(this.systemIds));
+    assertNotSame(this.cache.getSchema(this.systemIds), this.cache.getSchema(this.systemIds.subList(0, 1)));
+    assertEquals(2, this.cache.size());
+  }
+
+  /**
+   * Tests if a thread reuses its Validator and other threads get their own
+   *
+   * @throws Exception when something somewhere goes wrong
+   */
+  @Test
+  public void testValidatorPerThread() throws Exception {
+
+    Validator validator = this.cache.getValidator(this.systemIds);
+    assertSame(validator, this.cache.getValidator(this.systemIds));
+
+    final AtomicReference<Validator> other = new AtomicReference<>();
+    Thread thread = new Thread(new Runnable() {
+
+      @Override
+      public void run() {
+
+        try {
+          other.set(SchemaCacheTest.this.cache.getValidator(SchemaCacheTest.this.systemIds));
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+    thread.start();
+    thread.join();
+    assertNotSame(validator, other.get());
+  }
+
+  /**
+   * Tests the retrieval of the target namespace of schema documents
+   */
+  @Test
+  public void testTargetNamespace() {
+
+    assertEquals("http://www.example.org/FirstSchema", this.cache.getTargetNamespace(this.systemIds.get(0)));
+    assertNull(this.cache.getTargetNamespace(new File("notExisting.xsd").toURI().toString()));
+  }
+}